@@ -0,0 +1,502 @@
+package VivinPaliath;
+
+import model.modeling.content;
+import model.modeling.message;
+import view.modeling.ViewableAtomic;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Class that represents the arbiter of one tile of the grid. The arbiter owns the CellStatus instances of its tile: it answers queries about
+ * vacant neighbors from the cells in its tile, reserves cells for their children, and marks cells as vacant when their agents die.
+ *
+ * In a sparse experiment there are no CellStatus instances, and the arbiter only keeps the occupancy of its tile.
+ *
+ * Neighbors that lie in another tile are reserved through the arbiter that owns them. The arbiter treats a foreign neighbor as a candidate and
+ * picks a candidate at random. If it picks a foreign neighbor, it sends a reservation request to the owner and holds the query until a reply
+ * arrives. The owner grants the request if the cell is vacant, and marks it as occupied. If the request is denied, that neighbor is
+ * removed from the candidates and the arbiter picks again. Picking again from the remaining candidates after each denial still gives every
+ * vacant neighbor the same chance of being chosen.
+ */
+public class Arbiter extends ViewableAtomic implements Checkpointable {
+
+    //Offsets of the neighbors of a cell, and the direction of each neighbor
+    private static final Delta[] DELTAS = {
+            new Delta(-1, -1), new Delta(-1, 0), new Delta(-1, 1), new Delta(0, -1),
+            new Delta(0, 1), new Delta(1, -1), new Delta(1, 0), new Delta(1, 1)
+    };
+    private static final Direction[] DIRECTIONS = {
+            Direction.NW, Direction.N, Direction.NE, Direction.W, Direction.E, Direction.SW, Direction.S, Direction.SE
+    };
+
+    //The tile that this arbiter owns
+    private final int tile;
+    private final Tiling tiling;
+    private final int firstRow;
+    private final int firstColumn;
+
+    //The CellStatus instances of this tile, indexed relative to the first row and column of the tile. Null in a sparse experiment.
+    private final CellStatus[][] cellStatus;
+    private final int tileRows;
+    private final int tileColumns;
+    private final int rows;
+    private final int columns;
+
+    //Notified whenever the occupancy or lifespan ratio of a cell changes
+    private final SimulationObserver observer;
+
+    //Counts the messages and reservations that this arbiter processes
+    private final SimulationMetrics metrics;
+
+    //Queues for incoming messages
+    private final Queue<CellMessage> cellMessages = new ArrayDeque<>();
+    private final Queue<ReservationMessage> reservationMessages = new ArrayDeque<>();
+
+    //Queries that are waiting on a reservation request to another arbiter, keyed by the row-major index of the querying cell in the grid
+    private final Map<Integer, PendingQuery> pendingQueries = new HashMap<>();
+
+    //The content that carries the response to the queries of each cell in this tile, keyed by the address that the cell sends with all of
+    //its messages. It is created the first time the agent in a cell queries and is reused for every query after that, until the agent dies.
+    private final Map<CellAddress, content> responseContents = new IdentityHashMap<>();
+
+    //The occupancy of the grid, which is shared by all arbiters. The arbiter only ever writes the cells of its own tile, but tiles that are not
+    //aligned to 64 columns share words of the board, and writes to it are not atomic. This is only safe because ParallelCoordinator makes the
+    //transitions of the arbiters one at a time, on the calling thread. The CellStatus instances are kept in step for the visualizer.
+    private final OccupancyBitboard occupancy;
+
+    //Messages to send the next time we produce output
+    private final List<QueryResponse> queryResponses = new ArrayList<>();
+    private final List<ReservationMessage> outgoingReservations = new ArrayList<>();
+
+    private static final double processingTime = 0;
+
+    //The simulation time of the last transition of this arbiter
+    private double clock = 0;
+
+    private final RandomStream random;
+
+    //Ports for this model
+    public static enum Port {
+
+        IN("in"),
+        QUERY_RESPONSE("query_response"),
+        RESERVATION_IN("reservation_in"),
+        RESERVATION_OUT("reservation_out");
+
+        private String portName;
+
+        private Port(String portName) {
+            this.portName = portName;
+        }
+
+        public String portName() {
+            return this.portName;
+        }
+    }
+
+    //Phases for this model
+    public static enum Phase {
+
+        PASSIVE("passive"),
+        PROCESSING("processing"),
+        RESPOND("respond");
+
+        private String phaseName;
+
+        private Phase(String phaseName) {
+            this.phaseName = phaseName;
+        }
+
+        public String phaseName() {
+            return this.phaseName;
+        }
+    }
+
+    //A query whose chosen neighbor is being reserved through another arbiter
+    private static class PendingQuery {
+
+        private final CellAddress cellAddress;
+        private final int deniedNeighbors;
+        private final int requestedNeighbor;
+
+        private PendingQuery(CellAddress cellAddress, int deniedNeighbors, int requestedNeighbor) {
+            this.cellAddress = cellAddress;
+            this.deniedNeighbors = deniedNeighbors;
+            this.requestedNeighbor = requestedNeighbor;
+        }
+    }
+
+    public Arbiter(int tile, Tiling tiling, CellStatus[][] grid, SimulationObserver observer, RandomStream random) {
+        this(tile, tiling, grid, new OccupancyBitboard(grid), observer, random);
+    }
+
+    //Creates an arbiter that shares the occupancy of the grid with the arbiters of the other tiles. The grid is null in a sparse experiment.
+    public Arbiter(int tile, Tiling tiling, CellStatus[][] grid, OccupancyBitboard occupancy, SimulationObserver observer, RandomStream random) {
+        this(tile, tiling, grid, occupancy, observer, random, new SimulationMetrics());
+    }
+
+    public Arbiter(int tile, Tiling tiling, CellStatus[][] grid, OccupancyBitboard occupancy, SimulationObserver observer, RandomStream random,
+                   SimulationMetrics metrics) {
+        super("Arbiter(" + tile + ")");
+
+        this.tile = tile;
+        this.random = random;
+        this.tiling = tiling;
+        this.firstRow = tiling.firstRow(tile);
+        this.firstColumn = tiling.firstColumn(tile);
+        this.observer = observer;
+        this.metrics = metrics;
+
+        this.tileRows = tiling.rowsIn(tile);
+        this.tileColumns = tiling.columnsIn(tile);
+
+        //Take ownership of the slice of the grid that belongs to this tile
+        if(grid != null) {
+            this.cellStatus = new CellStatus[tileRows][tileColumns];
+            for(int i = 0; i < cellStatus.length; i++) {
+                System.arraycopy(grid[firstRow + i], firstColumn, cellStatus[i], 0, cellStatus[i].length);
+            }
+        } else {
+            this.cellStatus = null;
+        }
+
+        this.rows = tiling.getRows();
+        this.columns = tiling.getColumns();
+        this.occupancy = occupancy;
+
+        addInport(Port.IN.portName);
+        addInport(Port.RESERVATION_IN.portName);
+        addOutport(Port.QUERY_RESPONSE.portName);
+        addOutport(Port.RESERVATION_OUT.portName);
+
+        phase = Phase.PASSIVE.phaseName;
+        sigma = INFINITY;
+    }
+
+    @Override
+    public void deltint() {
+        clock = clock + sigma;
+
+        if(phaseIs(Phase.PROCESSING.phaseName)) {
+            metrics.arbiterQueue(cellMessages.size());
+
+            //Process everything that has been queued up. Any responses and reservation messages are sent in a single output.
+            while(!reservationMessages.isEmpty()) {
+                processReservationMessage(reservationMessages.remove());
+            }
+
+            //Rest messages go first, so that the cells of agents that died in this instant are vacant for the queries of the same instant. A
+            //cell sends its query along with its rest message.
+            for(CellMessage cellMessage : cellMessages) {
+                if(cellMessage.isRestMessage()) {
+                    processCellMessage(cellMessage);
+                }
+            }
+
+            for(CellMessage cellMessage : cellMessages) {
+                if(!cellMessage.isRestMessage()) {
+                    processCellMessage(cellMessage);
+                }
+            }
+
+            cellMessages.clear();
+
+            if(!queryResponses.isEmpty() || !outgoingReservations.isEmpty()) {
+                holdIn(Phase.RESPOND.phaseName, processingTime);
+            } else {
+                holdIn(Phase.PASSIVE.phaseName, INFINITY);
+            }
+        } else if(phaseIs(Phase.RESPOND.phaseName)) {
+            //We just sent our output. If more messages arrived in the meantime, process them. Otherwise transition to the PASSIVE phase.
+            queryResponses.clear();
+            outgoingReservations.clear();
+
+            if(!cellMessages.isEmpty() || !reservationMessages.isEmpty()) {
+                holdIn(Phase.PROCESSING.phaseName, processingTime);
+            } else {
+                holdIn(Phase.PASSIVE.phaseName, INFINITY);
+            }
+        }
+    }
+
+    @Override
+    public message out() {
+        message m = new message();
+
+        if(phaseIs(Phase.RESPOND.phaseName)) {
+            for(int i = 0; i < queryResponses.size(); i++) {
+                m.add(responseContents.get(queryResponses.get(i).getCellAddress()));
+            }
+
+            for(ReservationMessage reservationMessage : outgoingReservations) {
+                content c = makeContent(Port.RESERVATION_OUT.portName, reservationMessage);
+                m.add(c);
+            }
+        }
+
+        return m;
+    }
+
+    @Override
+    public void deltext(double e, message x) {
+        clock = clock + e;
+        Continue(e);
+
+        for(int i = 0; i < x.getLength(); i++) {
+            if(messageOnPort(x, Port.IN.portName, i)) {
+                cellMessages.add((CellMessage) x.getValOnPort(Port.IN.portName, i));
+            } else if(messageOnPort(x, Port.RESERVATION_IN.portName, i)) {
+                ReservationMessage reservationMessage = (ReservationMessage) x.getValOnPort(Port.RESERVATION_IN.portName, i);
+
+                //Reservation messages are sent to all neighboring arbiters, so only keep the ones that concern this tile
+                if(isAddressedToThisTile(reservationMessage)) {
+                    reservationMessages.add(reservationMessage);
+                }
+            }
+        }
+
+        //If we are PASSIVE and have something to do, transition to the PROCESSING phase. Otherwise the messages are processed once we are done
+        //with the current phase.
+        if(phaseIs(Phase.PASSIVE.phaseName) && (!cellMessages.isEmpty() || !reservationMessages.isEmpty())) {
+            holdIn(Phase.PROCESSING.phaseName, processingTime);
+        }
+    }
+
+    @Override
+    public void deltcon(double e, message x) {
+        deltint();
+        deltext(0, x);
+    }
+
+    private boolean isAddressedToThisTile(ReservationMessage reservationMessage) {
+        if(reservationMessage.getType() == ReservationMessage.Type.REQUEST) {
+            return owns(reservationMessage.getTarget().getRow(), reservationMessage.getTarget().getColumn());
+        } else {
+            return reservationMessage.getRequestingTile() == tile;
+        }
+    }
+
+    private void processCellMessage(CellMessage cellMessage) {
+        if(cellMessage.isQueryMessage()) {
+            metrics.queryMessage();
+            processQuery(cellMessage.getQueryContext().getCellAddress(), 0);
+        } else if(cellMessage.isRestMessage()) {
+            //If this is a rest message then we need to update the grid based on the status of the agent
+            metrics.restMessage();
+            CellMessage.RestContext restContext = cellMessage.getRestContext();
+            CellAddress cellAddress = restContext.getCellAddress();
+
+            if(Bacterium.isDead(restContext.getLifespan(), restContext.getFreeEnergy())) {
+                markDeadCell(cellAddress.getRow(), cellAddress.getColumn()); //if the agent is dead mark its location as vacant
+                responseContents.remove(cellAddress);
+            } else {
+                paintLiveCell(restContext); //paint the cell based on its current lifespan in relation to its maximum lifespan.
+            }
+        }
+    }
+
+    private void processReservationMessage(ReservationMessage reservationMessage) {
+        CellAddress target = reservationMessage.getTarget();
+
+        if(reservationMessage.getType() == ReservationMessage.Type.REQUEST) {
+            //Another arbiter wants to reserve a cell in this tile
+            boolean granted = !isCellOccupied(target.getRow(), target.getColumn());
+            if(granted) {
+                markOccupiedCell(target.getRow(), target.getColumn());
+            }
+
+            outgoingReservations.add(reservationMessage.reply(granted));
+        } else {
+            //The reply may come from another partition, with a copy of the address of the requester. The response goes out with the address
+            //that the cell sent, since responses are routed by it.
+            CellAddress requester = reservationMessage.getRequester();
+            PendingQuery pendingQuery = pendingQueries.remove(key(requester.getRow(), requester.getColumn()));
+
+            if(reservationMessage.getType() == ReservationMessage.Type.GRANT) {
+                queryResponses.add(respond(pendingQuery.cellAddress, DIRECTIONS[pendingQuery.requestedNeighbor]));
+            } else {
+                processQuery(pendingQuery.cellAddress, pendingQuery.deniedNeighbors | (1 << pendingQuery.requestedNeighbor));
+            }
+        }
+    }
+
+    //Picks a vacant neighbor for a cell that wants to reproduce. Neighbors in the bitmask of denied neighbors are not considered.
+    private void processQuery(CellAddress cellAddress, int deniedNeighbors) {
+        int neighbor = getEmptyNeighborDelta(cellAddress.getRow(), cellAddress.getColumn(), deniedNeighbors);
+
+        //If we don't have any vacant neighbors we send a direction of NONE.
+        if(neighbor < 0) {
+            queryResponses.add(respond(cellAddress, Direction.NONE));
+            return;
+        }
+
+        int row = wrap(cellAddress.getRow() + DELTAS[neighbor].getDr(), rows);
+        int column = wrap(cellAddress.getColumn() + DELTAS[neighbor].getDc(), columns);
+
+        if(owns(row, column)) {
+            //Reserve the location in the grid by marking it as occupied
+            markOccupiedCell(row, column);
+            queryResponses.add(respond(cellAddress, DIRECTIONS[neighbor]));
+        } else {
+            //Ask the owner of the neighbor to reserve it for us
+            pendingQueries.put(key(cellAddress.getRow(), cellAddress.getColumn()), new PendingQuery(cellAddress, deniedNeighbors, neighbor));
+            outgoingReservations.add(ReservationMessage.createRequest(tile, cellAddress, new CellAddress(row, column)));
+        }
+    }
+
+    //Returns the response to a query of a cell in this tile, updated with the direction of the chosen neighbor
+    private QueryResponse respond(CellAddress cellAddress, Direction direction) {
+        metrics.reservation(direction != Direction.NONE);
+
+        content c = responseContents.get(cellAddress);
+        if(c == null) {
+            c = makeContent(Port.QUERY_RESPONSE.portName, new QueryResponse(cellAddress, direction));
+            responseContents.put(cellAddress, c);
+        }
+
+        return ((QueryResponse) c.getValue()).update(direction);
+    }
+
+    //Helper function that choses a neighbor at random from the candidates: vacant neighbors in this tile, and neighbors in other tiles that
+    //have not been denied. Returns the index of the neighbor, or -1 if there are no candidates.
+    int getEmptyNeighborDelta(int row, int column, int deniedNeighbors) {
+        int owned = ownedNeighbors(row, column);
+        int candidates = ((~occupancy.occupiedNeighbors(row, column) & owned) | (~owned & ~deniedNeighbors)) & 0xFF;
+
+        if(candidates == 0) {
+            return -1;
+        }
+
+        return OccupancyBitboard.select(candidates, random.nextInt(Integer.bitCount(candidates)));
+    }
+
+    //Bitmask of the neighbors of a cell in this tile that lie in this tile as well
+    private int ownedNeighbors(int row, int column) {
+        //Every neighbor of a cell away from the edges of the tile is in the tile
+        if(row > firstRow && row < firstRow + tileRows - 1 && column > firstColumn && column < firstColumn + tileColumns - 1) {
+            return 0xFF;
+        }
+
+        int owned = 0;
+        for(int k = 0; k < DELTAS.length; k++) {
+            if(owns(wrap(row + DELTAS[k].getDr(), rows), wrap(column + DELTAS[k].getDc(), columns))) {
+                owned |= 1 << k;
+            }
+        }
+
+        return owned;
+    }
+
+    //Checkpoints are only taken between instants. Queries and reservations are always settled within the instant in which they are made, so
+    //a checkpointed arbiter is passive and its queues are empty. Only the cells of its tile, its clock and its random stream are written. In a
+    //sparse experiment, only the occupied cells of the tile are written.
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        if(!phaseIs(Phase.PASSIVE.phaseName) || !cellMessages.isEmpty() || !reservationMessages.isEmpty() || !pendingQueries.isEmpty()) {
+            throw new IllegalStateException(getName() + " cannot be checkpointed while it has messages in flight");
+        }
+
+        if(cellStatus != null) {
+            for(CellStatus[] row : cellStatus) {
+                for(CellStatus status : row) {
+                    out.writeBoolean(status.isOccupied());
+                    out.writeDouble(status.getRatio());
+                }
+            }
+        } else {
+            for(int i = 0; i < tileRows; i++) {
+                int lastColumn = firstColumn + tileColumns;
+                out.writeInt(occupancy.count(firstRow + i, firstColumn, lastColumn));
+                for(int j = occupancy.nextOccupied(firstRow + i, firstColumn, lastColumn); j < lastColumn; j = occupancy.nextOccupied(firstRow + i, j + 1, lastColumn)) {
+                    out.writeInt(j - firstColumn);
+                }
+            }
+        }
+
+        out.writeDouble(clock);
+        out.writeLong(random.getCounter());
+    }
+
+    @Override
+    public void readCheckpoint(ByteBuffer in) {
+        if(cellStatus != null) {
+            for(int i = 0; i < cellStatus.length; i++) {
+                for(int j = 0; j < cellStatus[i].length; j++) {
+                    cellStatus[i][j].setOccupied(in.get() != 0);
+                    occupancy.set(firstRow + i, firstColumn + j, cellStatus[i][j].isOccupied());
+                    cellStatus[i][j].setRatio(in.getDouble());
+                    observer.cellChanged(firstRow + i, firstColumn + j);
+                }
+            }
+        } else {
+            for(int i = 0; i < tileRows; i++) {
+                occupancy.vacate(firstRow + i, firstColumn, firstColumn + tileColumns);
+                for(int occupied = in.getInt(); occupied > 0; occupied--) {
+                    int column = firstColumn + in.getInt();
+                    occupancy.occupy(firstRow + i, column);
+                    observer.cellChanged(firstRow + i, column);
+                }
+            }
+        }
+
+        clock = in.getDouble();
+        random.reset(random.getKey(), in.getLong());
+    }
+
+    private void markDeadCell(int row, int column) {
+        if(cellStatus != null) {
+            cellStatus[row - firstRow][column - firstColumn].setOccupied(false);
+        }
+        occupancy.vacate(row, column);
+        observer.cellChanged(row, column);
+    }
+
+    private void markOccupiedCell(int row, int column) {
+        if(cellStatus != null) {
+            cellStatus[row - firstRow][column - firstColumn].setOccupied(true);
+        }
+        occupancy.occupy(row, column);
+        observer.cellChanged(row, column);
+        observer.cellReserved(clock, row, column);
+    }
+
+    private void paintLiveCell(CellMessage.RestContext restContext) {
+        if(cellStatus == null) {
+            return;
+        }
+
+        int row = restContext.getCellAddress().getRow();
+        int column = restContext.getCellAddress().getColumn();
+
+        double ratio = ((double) restContext.getLifespan() / (double) restContext.getMaximumLifespan());
+        cellStatus[row - firstRow][column - firstColumn].setRatio(ratio);
+        observer.cellChanged(row, column);
+    }
+
+    private boolean isCellOccupied(int row, int column) {
+        return occupancy.isOccupied(row, column);
+    }
+
+    private boolean owns(int row, int column) {
+        return tiling.tileOf(row, column) == tile;
+    }
+
+    private int key(int row, int column) {
+        return (row * columns) + column;
+    }
+
+    public int getTile() {
+        return tile;
+    }
+
+    private int wrap(int index, int size) {
+        if(index < 0) {
+            return (size + index) % size;
+        } else {
+            return (index % size);
+        }
+    }
+}
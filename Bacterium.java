@@ -1,6 +1,5 @@
 package VivinPaliath;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -9,29 +8,25 @@ import java.util.Random;
  */
 public class Bacterium {
 
-    //agent attributes
-    private String genome = "";
-    private int maximumLifespan = 0;
+    //agent attributes. Everything that is decoded from the genome lives in the genotype, which is shared with other agents of the same genome.
+    private Genotype genotype = null;
     private int lifespan = 0;
+
+    //Id of the agent in the lineage of its experiment, or -1 if its lineage is not recorded
+    private long id = -1;
     private double freeEnergy = 0;
-    private double maximumFreeEnergy = 0;
-    private double reproductionThreshold = 0;
-    private double metabolicEnergy = 0;
-    private List<Enzyme> enzymes = new ArrayList<Enzyme>();
 
     //offsets into genome
-    private static final int LIFESPAN_OFFSET = 0;
-    private static final int LIFESPAN_SIZE = 8;
-    private static final int FREE_ENERGY_OFFSET = LIFESPAN_OFFSET + LIFESPAN_SIZE;
-    private static final int FREE_ENERGY_SIZE = 16;
-    private static final int REPRODUCTION_THRESHOLD_OFFSET = FREE_ENERGY_OFFSET + FREE_ENERGY_SIZE;
-    private static final int REPRODUCTION_THRESHOLD_SIZE = 16;
-    private static final int METABOLIC_ENERGY_OFFSET = REPRODUCTION_THRESHOLD_OFFSET + REPRODUCTION_THRESHOLD_SIZE;
-    private static final int METABOLIC_ENERGY_SIZE = 8;
-    private static final int ENZYMES_OFFSET = METABOLIC_ENERGY_OFFSET + METABOLIC_ENERGY_SIZE;
-    private static final int ENZYME_SIZE = 16;
-
-    private final Random random = new Random(Double.doubleToLongBits(Math.random()));
+    static final int LIFESPAN_OFFSET = 0;
+    static final int LIFESPAN_SIZE = 8;
+    static final int FREE_ENERGY_OFFSET = LIFESPAN_OFFSET + LIFESPAN_SIZE;
+    static final int FREE_ENERGY_SIZE = 16;
+    static final int REPRODUCTION_THRESHOLD_OFFSET = FREE_ENERGY_OFFSET + FREE_ENERGY_SIZE;
+    static final int REPRODUCTION_THRESHOLD_SIZE = 16;
+    static final int METABOLIC_ENERGY_OFFSET = REPRODUCTION_THRESHOLD_OFFSET + REPRODUCTION_THRESHOLD_SIZE;
+    static final int METABOLIC_ENERGY_SIZE = 8;
+    static final int ENZYMES_OFFSET = METABOLIC_ENERGY_OFFSET + METABOLIC_ENERGY_SIZE;
+    static final int ENZYME_SIZE = 16;
 
     //constants that represent mutation types
     private static final int DELETION = 0;
@@ -39,14 +34,14 @@ public class Bacterium {
     private static final int INVERSION = 2;
     private static final int INSERTION = 3;
 
-    //Controls the maximum number of bits that can be modified at a time:
-    //
-    // DELETION: 4 bits is the maximum that may be deleted from parent's genome.
-    // REPETITION: a bit from the parent may be repeated a maximum of 4 times.
-    // INVERSION: a maximum of 4 consecutive bits from the parent may be inverted.
-    // INSERTION: a maximum of 4 random-bits may be inserted.
+    private static final int MUTATION_TYPES = 4;
 
-    private static final int maxModifiedBits = 4;
+    //The number of bits that a mutation modifies is drawn from the size distribution of the MutationParameters:
+    //
+    // DELETION: that many bits are deleted from parent's genome.
+    // REPETITION: a bit from the parent is repeated that many times.
+    // INVERSION: that many consecutive bits from the parent are inverted.
+    // INSERTION: that many random-bits are inserted.
 
     private Bacterium() {}
 
@@ -55,234 +50,227 @@ public class Bacterium {
         if(lifespan <= 0 || lifespan > 255) {
             throw new IllegalArgumentException("Lifespan needs to be greater than 0 and lesser than 256");
         }
-        this.lifespan = lifespan;
-        this.maximumLifespan = lifespan;
 
         if(freeEnergy <= 0 || freeEnergy > 65535) {
             throw new IllegalArgumentException("Free energy needs to be greater than 0 and lesser than 65536");
         }
-        this.freeEnergy = freeEnergy;
-        this.maximumFreeEnergy = freeEnergy;
 
         if(reproductionThreshold <= 0 || reproductionThreshold > 65535) {
             throw new IllegalArgumentException("Reproduction threshold needs to be greater than 0 and lesser than 65536");
         }
-        this.reproductionThreshold = reproductionThreshold;
 
         if(metabolicEnergy <= 0 || metabolicEnergy > 255) {
             throw new IllegalArgumentException("Metabolic energy needs to be greater than 0 and lesser than 256");
         }
-        this.metabolicEnergy = metabolicEnergy;
-
-        this.enzymes = enzymes;
 
-        this.genome = pad(Integer.toBinaryString(lifespan), LIFESPAN_SIZE) +
-                pad(Integer.toBinaryString(freeEnergy), FREE_ENERGY_SIZE) +
-                pad(Integer.toBinaryString(reproductionThreshold), REPRODUCTION_THRESHOLD_SIZE) +
-                pad(Integer.toBinaryString(metabolicEnergy), METABOLIC_ENERGY_SIZE);
+        Genome.Builder builder = new Genome.Builder(ENZYMES_OFFSET + (enzymes.size() * ENZYME_SIZE))
+                .appendBits(lifespan, LIFESPAN_SIZE)
+                .appendBits(freeEnergy, FREE_ENERGY_SIZE)
+                .appendBits(reproductionThreshold, REPRODUCTION_THRESHOLD_SIZE)
+                .appendBits(metabolicEnergy, METABOLIC_ENERGY_SIZE);
 
         for(Enzyme enzyme : enzymes) {
-            this.genome += enzyme.getBitPattern();
+            builder.appendBits(enzyme.getValue(), enzyme.getSize());
         }
+
+        this.genotype = Genotype.decode(builder.build());
+        this.lifespan = lifespan;
+        this.freeEnergy = freeEnergy;
     }
 
-    //Pads short strings with leading zeroes.
-    private String pad(String bitPattern, int size) {
-        int numZeroes = size - bitPattern.length();
-        StringBuilder builder = new StringBuilder();
+    //Another way to instantiate an agent is from the genome
+    public Bacterium(String genome) {
+        this(Genome.fromBitPattern(genome));
+    }
 
-        for(int i = 0; i < numZeroes; i++) {
-            builder.append("0");
-        }
+    public Bacterium(Genome genome) {
+        this(Genotype.decode(genome));
+    }
 
-        return builder.append(bitPattern).toString();
+    //Agents that are part of an experiment are created from a genotype in the experiment's registry
+    public Bacterium(Genotype genotype) {
+        this.genotype = genotype;
+        this.lifespan = genotype.getMaximumLifespan();
+        this.freeEnergy = genotype.getMaximumFreeEnergy();
     }
 
-    //Another way to instantiate an agent is from the genome
-    public Bacterium(String genome) {
-        this.genome = genome.replaceAll(" ", "");
-
-        initializeLifespan();
-        initializeFreeEnergy();
-        initializeReproductionThreshold();
-        initializeMetabolicEnergy();
-        initializeEnzymes();
-    }
-
-    private void initializeLifespan() {
-        if(genome.length() >= LIFESPAN_OFFSET + LIFESPAN_SIZE) {
-            this.lifespan = Integer.parseInt(genome.substring(LIFESPAN_OFFSET, LIFESPAN_OFFSET + LIFESPAN_SIZE), 2);
-            this.maximumLifespan = this.lifespan;
-        } else if(genome.length() > LIFESPAN_OFFSET) {
-            this.lifespan = Integer.parseInt(genome.substring(LIFESPAN_OFFSET));
-            this.maximumLifespan = this.lifespan;
-        }
+    //Restores an agent from its genotype and the state that changes over its life
+    Bacterium(Genotype genotype, int lifespan, double freeEnergy) {
+        this.genotype = genotype;
+        this.lifespan = lifespan;
+        this.freeEnergy = freeEnergy;
     }
 
-    private void initializeFreeEnergy() {
-        if(genome.length() >= FREE_ENERGY_OFFSET + FREE_ENERGY_SIZE) {
-            this.freeEnergy = Integer.parseInt(genome.substring(FREE_ENERGY_OFFSET, FREE_ENERGY_OFFSET + FREE_ENERGY_SIZE), 2);
-            this.maximumFreeEnergy = freeEnergy;
-        } else if(genome.length() > FREE_ENERGY_OFFSET) {
-            this.freeEnergy = Integer.parseInt(genome.substring(FREE_ENERGY_OFFSET), 2);
-            this.maximumFreeEnergy = freeEnergy;
-        }
+    //Implements the feeding behavior. The nutrient is metabolized by each enzyme and the most efficient enzyme is the one that is used. The
+    //outcome only depends on the genotype and the nutrient, so it is worked out once per genotype and nutrient and then looked up.
+    public MetabolysisResult feed(Nutrient nutrient) {
+        Genotype.Yield yield = genotype.yield(nutrient);
+
+        freeEnergy += yield.getEnergy();
+        return yield.getMetabolysisResult();
     }
 
-    private void initializeReproductionThreshold() {
-        if(genome.length() >= REPRODUCTION_THRESHOLD_OFFSET + REPRODUCTION_THRESHOLD_SIZE) {
-            this.reproductionThreshold = Integer.parseInt(genome.substring(REPRODUCTION_THRESHOLD_OFFSET, REPRODUCTION_THRESHOLD_OFFSET + REPRODUCTION_THRESHOLD_SIZE), 2);
-        } else if(genome.length() > REPRODUCTION_THRESHOLD_OFFSET) {
-            this.reproductionThreshold = Integer.parseInt(genome.substring(REPRODUCTION_THRESHOLD_OFFSET), 2);
-        }
+    //Feeds on a nutrient that is only left at a fraction of its full concentration
+    public MetabolysisResult feed(Nutrient nutrient, double concentration) {
+        Genotype.Yield yield = genotype.yield(nutrient);
+
+        freeEnergy += energyAt(yield.getEnergy(), concentration);
+        return yield.getMetabolysisResult();
     }
 
-    private void initializeMetabolicEnergy() {
-        if(genome.length() >= METABOLIC_ENERGY_OFFSET + METABOLIC_ENERGY_SIZE) {
-            this.metabolicEnergy = Integer.parseInt(genome.substring(METABOLIC_ENERGY_OFFSET, METABOLIC_ENERGY_OFFSET + METABOLIC_ENERGY_SIZE), 2);
-        } else if(genome.length() > METABOLIC_ENERGY_OFFSET) {
-            this.metabolicEnergy = Integer.parseInt(genome.substring(METABOLIC_ENERGY_OFFSET), 2);
-        }
+    //The energy gained from a nutrient at a fraction of its full concentration. An agent without enzymes loses its unit of energy however
+    //much nutrient there is.
+    static double energyAt(double energy, double concentration) {
+        return energy > 0 ? energy * concentration : energy;
     }
 
-    private void initializeEnzymes() {
-        if(genome.length() > ENZYMES_OFFSET) {
-            String enzymesBitPattern = genome.substring(ENZYMES_OFFSET);
+    //The metabolysis kernel: the number of bits that differ between the nutrient and the enzyme.
+    static int metabolize(int nutrientBits, int enzymeBits) {
+        return Integer.bitCount(nutrientBits ^ enzymeBits);
+    }
 
-            while(enzymesBitPattern.length() >= ENZYME_SIZE) {
-                enzymes.add(new Enzyme(enzymesBitPattern.substring(0, ENZYME_SIZE)));
+    //Implements the rest behavior
+    public void rest() {
+        freeEnergy = getFreeEnergyAfterRest();
+        lifespan = getLifespanAfterRest();
+    }
 
-                if(enzymesBitPattern.length() > ENZYME_SIZE) {
-                    enzymesBitPattern = enzymesBitPattern.substring(ENZYME_SIZE);
-                } else {
-                    enzymesBitPattern = "";
-                }
-            }
+    //The lifespan and free energy that the agent will be left with when it next rests. The cell reports these to its arbiter before the rest
+    //itself, so both have to be worked out the same way as rest() does.
+    public int getLifespanAfterRest() {
+        return lifespan - 1;
+    }
 
-            if(enzymesBitPattern.length() > 0) {
-                enzymes.add(new Enzyme(enzymesBitPattern));
-            }
-        }
+    public double getFreeEnergyAfterRest() {
+        return freeEnergy - getRestingCost();
     }
 
-    //Implements the feeding behavior.
-    public MetabolysisResult feed(Nutrient nutrient) {
-        MetabolysisResult metabolysisResult = null;
+    //Whether the agent dies when it next rests
+    public boolean diesAfterRest() {
+        return isDead(getLifespanAfterRest(), getFreeEnergyAfterRest());
+    }
 
-        double maxEnergy = -1;
-        String nutrientBitPattern = nutrient.getBitPattern();
-        double nutrientEnergyContent = Integer.parseInt(nutrientBitPattern, 2);
-        double efficiency = 0;
-        Enzyme efficientEnzyme = null;
+    //Whether the agent will be alive and have enough free energy to reproduce once it has next rested
+    public boolean willReproduceAfterRest() {
+        return !diesAfterRest() && getFreeEnergyAfterRest() >= getReproductionThreshold();
+    }
 
-        for(Enzyme enzyme : enzymes) {
-            String enzymeBitPattern = enzyme.getBitPattern();
-            if(nutrientBitPattern.length() > enzymeBitPattern.length()) {
-                //If the enzyme is not long enough, we will only extract the matching number of bits from the nutrient, starting with the LSB
-                nutrientBitPattern = nutrientBitPattern.substring(nutrientBitPattern.length() - enzymeBitPattern.length());
-            }
+    //An agent dies when it runs out of lifespan or free energy
+    static boolean isDead(int lifespan, double freeEnergy) {
+        return lifespan == 0 || freeEnergy <= 0;
+    }
 
-            String xorResult = Integer.toBinaryString(Integer.parseInt(nutrientBitPattern, 2) ^ Integer.parseInt(enzymeBitPattern, 2));
+    //The free energy that the agent uses up every time it rests
+    public double getRestingCost() {
+        int numberOfEnzymes = genotype.enzymes().length == 0 ? 1 : genotype.enzymes().length; //we want to use up energy even if we have no enzymes
+        return numberOfEnzymes * genotype.getMetabolicEnergy();
+    }
 
-            int numOnes = 0;
-            for(int i = 0; i < xorResult.length(); i++) {
-                if(xorResult.charAt(i) == '1') {
-                    numOnes++;
-                }
-            }
+    //Implements the reproduce behavior. Mutations are drawn from the random stream of the cell that the agent lives in.
+    public Genome reproduce(Random random) {
+        return reproduce(random, MutationParameters.DEFAULT);
+    }
 
-            //Calculate the energy extracted. If we have more than one enzyme, we will check to see which enzyme is most efficient.
-            double energyFromMetabolysis = (numOnes / 16.0) * nutrientEnergyContent;
-            if(energyFromMetabolysis > maxEnergy) {
-                maxEnergy = energyFromMetabolysis;
-                efficientEnzyme = enzyme;
-                efficiency = (numOnes / 16.0);
-            }
-        }
+    public Genome reproduce(Random random, MutationParameters mutation) {
+        return apply(getGenome(), reproduceMutations(random, mutation));
+    }
 
-        if(efficientEnzyme != null) {
-            metabolysisResult = new MetabolysisResult(nutrient, efficientEnzyme, efficiency);
-        }
+    //Reproduces without building the child's genome. The child is described by the mutations that turn this agent's genome into its own.
+    public MutationDelta reproduceMutations(Random random, MutationParameters mutation) {
+        MutationDelta mutations = mutations(getGenome(), random, mutation);
 
-        freeEnergy += maxEnergy;
-        return metabolysisResult;
+        freeEnergy -= (0.5 * getReproductionThreshold());
+        return mutations;
     }
 
-    //Implements the rest behavior
-    public void rest() {
-        int numberOfEnzymes = enzymes.size() == 0 ? 1 : enzymes.size(); //we want to use up energy even if we have no enzymes
-        freeEnergy -= (numberOfEnzymes * metabolicEnergy);
-        lifespan--;
+    //Creates the genome of a child from the genome of its parent.
+    static Genome mutate(Genome genome, Random random, MutationParameters mutation) {
+        return apply(genome, mutations(genome, random, mutation));
     }
 
-    //Implements the reproduce behavior
-    public String reproduce() {
-        StringBuilder genomeBuilder = new StringBuilder();
+    //Draws the mutations that a child of the genome undergoes. Every position from bit 48 onwards that is not already being deleted or
+    //inverted may start a mutation.
+    static MutationDelta mutations(Genome genome, Random random, MutationParameters mutation) {
+        MutationDelta.Builder mutations = new MutationDelta.Builder();
 
-        //Flags that say whether we are inverting or deleting bits
-        boolean invert = false;
-        boolean delete = false;
-        int numModify = 0; //total number of bits to modify for this mutation
+        //Number of bits that are still being deleted or inverted by the last mutation
+        int numModify = 0;
 
         //We start at bit 48 because we only want to mutate the enzymes
         for(int i = 48; i < genome.length(); i++) {
+            if(numModify > 0) {
+                numModify--;
+            } else if(random.nextDouble() < mutation.getRate()) { //Check to see if a mutation is happening
+
+                //Figure out how many bits to modify, and the type of mutation
+                int size = mutation.size(random.nextInt(100));
+                int mutationType = (random.nextInt(MUTATION_TYPES));
+                mutations.add(i, mutationType, size);
+
+                if(mutationType == DELETION || mutationType == INVERSION) {
+                    numModify = Math.max(1, size);
+                } else if(mutationType == INSERTION) {
+                    mutations.insertions().appendRandom(random, size);
+                }
+            }
+        }
 
-            //Check to see if we are inverting or deleting.
-            if(invert || delete) {
-                 if(invert) {
-                    genomeBuilder.append(genome.charAt(i) == '1' ? '0' : '1');
-                    numModify--;
-                    invert = (numModify > 0);
+        return mutations.build();
+    }
 
-                } else {
-                    numModify--;
-                    delete = (numModify > 0);
-                }
-            } else {
-                //Check to see if a mutation is happening
-                boolean mutate = (random.nextInt(100) == 49); //1% mutation rate
-                if(mutate) {
-
-                    //1 bit 55% of the time, 2 bits 30% of the time, 3 bits 10% of the time, and 4 bits 5% of the time.
-                    numModify = 0;
-                    int rand = random.nextInt(100);
-                    if(rand <= 54) {
-                        numModify = 1;
-                    } else if(rand <= 84) {
-                        numModify = 2;
-                    } else if(rand <= 94) {
-                        numModify = 3;
-                    } else if(rand <= 99) {
-                        numModify = 4;
-                    }
-
-                    //Figure out the type of mutation
-                    int mutationType = (random.nextInt(maxModifiedBits));
-                    if(mutationType == DELETION) {
-                        delete = true;
-                    } else if(mutationType == REPETITION) {
-                        for(int j = 0; j < numModify; j++) {
-                            genomeBuilder.append(genome.charAt(i));
-                        }
-                    } else if(mutationType == INVERSION) {
-                        invert = true;
-                    } else if(mutationType == INSERTION) {
-                        for(int j = 0; j < numModify; j++) {
-                            genomeBuilder.append(random.nextInt(2));
-                        }
-                    }
-                } else {
-                    genomeBuilder.append(genome.charAt(i));
-                }
+    //Builds the genome of a child from the genome of its parent and the mutations it underwent. The bit at the position of a mutation is
+    //replaced: a deletion drops it and the bits after it, an inversion drops it and inverts the bits after it, a repetition repeats it,
+    //and an insertion replaces it with random bits.
+    static Genome apply(Genome genome, MutationDelta mutations) {
+        int length = genome.length();
+        Genome.Builder genomeBuilder = new Genome.Builder(length + mutations.getInsertions().length());
+
+        //The child inherits bits 0 through 46 verbatim. Bit 47 is skipped and mutation starts at bit 48.
+        genomeBuilder.appendRange(genome, 0, Math.min(47, length));
+
+        int inserted = 0;
+        int next = Math.min(48, length); //the first bit of the parent that has not been dealt with yet
+        for(int m = 0; m < mutations.size(); m++) {
+            int position = mutations.position(m);
+            int size = mutations.size(m);
+
+            //The bits between mutations are inherited verbatim
+            genomeBuilder.appendRange(genome, next, position);
+            next = position + 1;
+
+            int mutationType = mutations.type(m);
+            if(mutationType == DELETION) {
+                next = Math.min(length, next + Math.max(1, size));
+            } else if(mutationType == REPETITION) {
+                genomeBuilder.appendRepeated(genome.bit(position), size);
+            } else if(mutationType == INVERSION) {
+                int end = Math.min(length, next + Math.max(1, size));
+                genomeBuilder.appendInverted(genome, next, end);
+                next = end;
+            } else if(mutationType == INSERTION) {
+                genomeBuilder.appendRange(mutations.getInsertions(), inserted, inserted + size);
+                inserted += size;
             }
         }
 
-        freeEnergy -= (0.5 * reproductionThreshold);
-        return genome.substring(0, 47) + genomeBuilder.toString();
+        genomeBuilder.appendRange(genome, next, length);
+        return genomeBuilder.build();
+    }
+
+    public Genotype getGenotype() {
+        return genotype;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
     }
 
-    public String getGenome() {
-        return genome;
+    public Genome getGenome() {
+        return genotype.getGenome();
     }
 
     public int getLifespan() {
@@ -290,7 +278,7 @@ public class Bacterium {
     }
 
     public int getMaximumLifespan() {
-        return maximumLifespan;
+        return genotype.getMaximumLifespan();
     }
 
     public double getFreeEnergy() {
@@ -298,18 +286,18 @@ public class Bacterium {
     }
 
     public double getMaximumFreeEnergy() {
-        return maximumFreeEnergy;
+        return genotype.getMaximumFreeEnergy();
     }
 
     public double getReproductionThreshold() {
-        return reproductionThreshold;
+        return genotype.getReproductionThreshold();
     }
 
     public double getMetabolicEnergy() {
-        return metabolicEnergy;
+        return genotype.getMetabolicEnergy();
     }
 
     public List<Enzyme> getEnzymes() {
-        return enzymes;
+        return genotype.getEnzymes();
     }
 }
@@ -2,34 +2,87 @@ package VivinPaliath;
 
 import GenCol.entity;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * This class maintains information about a child agent that is being sent to another cell.
+ *
+ * A cell sends all of its children in the same message, updated in place for each child. The receiving cell interns the child's genotype as
+ * soon as the message arrives, and does not hold on to the message.
  */
 public class BacteriumMessage extends entity {
 
     //Address of the destination cell
     private CellAddress cellAddress;
 
-    //Genome of the child agent
-    private String genome;
+    //Genotype of the parent agent, and the mutations that turn the parent's genome into the child's. The receiving cell interns the child's
+    //genotype from these, which for most children does not involve building a genome at all.
+    private Genotype parentGenotype;
+    private MutationDelta mutations;
+
+    //Id of the parent agent in the lineage of the experiment
+    private long parentId;
 
     //Nutrient in the parent cell - we use this to accurately calculate efficiencies for some cases. For example, we don't care about
     //cells that have crossed over from the non-novel region into the novel region with an enzymatic efficiency of 0. But we do care
     //about agents that move within the novel region
     private Nutrient parentCellNutrient;
 
-    public BacteriumMessage(CellAddress cellAddress, String genome, Nutrient nutrient) {
+    public BacteriumMessage(CellAddress cellAddress, long parentId, Genotype parentGenotype, MutationDelta mutations, Nutrient nutrient) {
         this.cellAddress = cellAddress;
-        this.genome = genome;
+        this.parentId = parentId;
+        this.parentGenotype = parentGenotype;
+        this.mutations = mutations;
+        this.parentCellNutrient = nutrient;
+    }
+
+    //Updates the message in place for the next child
+    BacteriumMessage update(long parentId, Genotype parentGenotype, MutationDelta mutations, Nutrient nutrient) {
+        this.parentId = parentId;
+        this.parentGenotype = parentGenotype;
+        this.mutations = mutations;
         this.parentCellNutrient = nutrient;
+
+        return this;
+    }
+
+    //Writes the message for a cell in another partition: the address of the parent cell, the genome of the parent, the mutations and the
+    //nutrient of the parent cell. The lineage of the parent stays behind.
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(cellAddress.getRow());
+        out.writeInt(cellAddress.getColumn());
+        parentGenotype.getGenome().writeTo(out);
+        mutations.writeTo(out);
+        out.writeInt(parentCellNutrient.getValue());
+        out.writeByte(parentCellNutrient.getSize());
+    }
+
+    //Reads a message that another partition wrote. The genotype of the parent is acquired from the registry, and must be released once the
+    //message has been delivered. The child starts a lineage of its own.
+    static BacteriumMessage readFrom(ByteBuffer in, GenotypeRegistry genotypes) {
+        CellAddress cellAddress = new CellAddress(in.getInt(), in.getInt());
+        Genotype parentGenotype = genotypes.acquire(Genome.readFrom(in));
+        MutationDelta mutations = MutationDelta.readFrom(in);
+
+        return new BacteriumMessage(cellAddress, LineageRecorder.NONE, parentGenotype, mutations, new Nutrient(in.getInt(), in.get()));
     }
 
     public CellAddress getCellAddress() {
         return cellAddress;
     }
 
-    public String getGenome() {
-        return genome;
+    public long getParentId() {
+        return parentId;
+    }
+
+    public Genotype getParentGenotype() {
+        return parentGenotype;
+    }
+
+    public MutationDelta getMutations() {
+        return mutations;
     }
 
     public Nutrient getParentCellNutrient() {
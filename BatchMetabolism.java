@@ -0,0 +1,69 @@
+package VivinPaliath;
+
+/**
+ * Metabolizes many nutrients with many enzymes in one pass. The pairs of a nutrient and an enzyme are packed into two arrays, and the pairs of
+ * each agent that feeds make up a segment of them. For every pair the kernel counts the bits that differ between the nutrient and the enzyme,
+ * and for every segment it finds the pair with the most such bits, which is the most efficient enzyme.
+ *
+ * This class is the scalar kernel. When the jdk.incubator.vector module is present, the shared instance is a VectorizedMetabolism instead,
+ * which counts the bits of a whole vector of pairs at a time. The two give the same results.
+ */
+public class BatchMetabolism {
+
+    private static final BatchMetabolism INSTANCE = load();
+
+    protected BatchMetabolism() {
+    }
+
+    //The kernel to use: the vectorized one if the Vector API is available, the scalar one otherwise
+    public static BatchMetabolism get() {
+        return INSTANCE;
+    }
+
+    //VectorizedMetabolism is only loaded by name, so that this class can be compiled and run without the incubator module
+    private static BatchMetabolism load() {
+        if(!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return new BatchMetabolism();
+        }
+
+        try {
+            return (BatchMetabolism) Class.forName(BatchMetabolism.class.getPackage().getName() + ".VectorizedMetabolism")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch(ReflectiveOperationException | LinkageError e) {
+            return new BatchMetabolism();
+        }
+    }
+
+    //Metabolizes packed pairs of nutrients and enzymes. The pairs of segment s run from offsets[s] up to, but not including, offsets[s + 1].
+    //The number of differing bits of each pair is written to ones, and for each segment, the index of the first pair with the most of them is
+    //written to best. The index is -1 if the segment is empty.
+    public final void metabolize(int[] nutrients, int[] enzymes, int[] offsets, int segments, int[] ones, int[] best) {
+        countOnes(nutrients, enzymes, ones, offsets[segments]);
+
+        for(int segment = 0; segment < segments; segment++) {
+            int most = -1;
+            int index = -1;
+            for(int pair = offsets[segment]; pair < offsets[segment + 1]; pair++) {
+                if(ones[pair] > most) {
+                    most = ones[pair];
+                    index = pair;
+                }
+            }
+
+            best[segment] = index;
+        }
+    }
+
+    //Counts the bits that differ between the nutrient and the enzyme of each of the first count pairs
+    protected void countOnes(int[] nutrients, int[] enzymes, int[] ones, int count) {
+        for(int pair = 0; pair < count; pair++) {
+            ones[pair] = Bacterium.metabolize(nutrients[pair], enzymes[pair]);
+        }
+    }
+
+    //Whether the bits are counted a vector at a time
+    public boolean isVectorized() {
+        return false;
+    }
+}
@@ -0,0 +1,521 @@
+package VivinPaliath;
+
+import GenCol.entity;
+import genDevs.simulation.coordinator;
+
+import javax.management.JMException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Command-line entry point that runs the experiment without a GUI. The DEVS coordinator is driven as fast as possible until the simulated
+ * time limit is reached, a stop condition is met, or the population dies out. The efficiency time series is written to a CSV file.
+ *
+ * The --engine lockstep option runs the fixed-step LockstepEngine instead of the DEVS model. The lockstep engine supports larger grids, whose
+ * size can be set with --rows, --columns and --bacteria.
+ *
+ * The DEVS model is simulated by the standard DEVS coordinator, unless --threads is given, in which case the ParallelCoordinator executes
+ * the transitions of simultaneous cells on that many threads.
+ *
+ * With --sparse, the DEVS model only has cells for the squares that hold an agent, so that grids much larger than the population can be
+ * simulated. Its size is set with --rows, --columns, --bacteria and --tile-size, the number of rows and columns of the tile of each arbiter.
+ * A sparse model is always simulated by the ParallelCoordinator.
+ *
+ * With --partitions n, a sparse model is split into n bands of rows of tiles, each simulated by a process of its own. This process runs the
+ * first band and starts the others with the same arguments. The partitions talk over loopback TCP on n consecutive ports from
+ * --partition-port, and their output is the same as that of a single process. The efficiency time series is written by the first
+ * partition. Checkpoints, telemetry, the visualizer and the stop conditions are not available with partitions.
+ *
+ * With --checkpoint-directory, the DEVS model is checkpointed every --checkpoint-interval units of simulated time. Every
+ * --full-checkpoint-every-th checkpoint is a full one, and the others only hold the cells that changed since the last full one. A run is
+ * resumed from any of its checkpoints with --resume. Checkpoints need the ParallelCoordinator, which is used with one thread if --threads is
+ * not given.
+ *
+ * Usage: BatchRunner [--time t] [--output file] [--until-efficiency e] [--until-functional-enzyme] [--gui]
+ *                    [--engine devs|lockstep] [--threads n] [--rows r] [--columns c] [--bacteria n] [--seed s]
+ *                    [--sparse] [--tile-size n] [--partitions n] [--partition-port p]
+ *                    [--checkpoint-directory dir] [--checkpoint-interval t] [--full-checkpoint-every n] [--resume checkpoint]
+ *                    [--nutrient-uptake u] [--nutrient-diffusion d] [--nutrient-inflow r]
+ *                    [--telemetry dir] [--frame-rate fps] [--lineage] [--jmx]
+ *
+ * With --nutrient-uptake u, each agent that feeds takes up the fraction u of the nutrient in its square, and gains energy in proportion to
+ * the concentration it found. The nutrient diffuses between neighboring squares with --nutrient-diffusion, and fresh medium flows in with
+ * --nutrient-inflow. Nutrients never run out by default. Nutrients that run out need the ParallelCoordinator or the lockstep engine, and
+ * are not available with partitions.
+ *
+ * With --telemetry, interval averages, peaks, the first functional enzyme, births, deaths and reservations are recorded to compressed files in
+ * the directory by a TelemetrySink, and can be read back with TelemetryReplay.
+ *
+ * With --jmx, the SimulationMetrics of the DEVS model are registered with the platform MBean server, and sampled about once a second, so that
+ * message rates, queue depths, reservations, the population and the phases of the cells can be followed with a JMX client such as jconsole.
+ *
+ * With --lineage, the most recent common ancestor of the surviving population is reported at the end of the run, along with the first
+ * ancestor of a surviving agent that carried a functional enzyme and the mutations that led to it. Lineages are only recorded when they are
+ * reported.
+ *
+ * Every random stream in the model is derived from the seed, so two runs with the same seed produce the same output.
+ */
+public class BatchRunner {
+
+    private double endTime = 10000;
+    private File output = new File("efficiency.csv");
+    private double targetEfficiency = -1;
+    private boolean stopOnFunctionalEnzyme = false;
+    private boolean visualize = false;
+    private String engine = "devs";
+    private int rows = 30;
+    private int columns = 30;
+    private int numBacteria = 50;
+    private int threads = 0;
+    private boolean sparse = false;
+    private int tileSize = 10;
+    private long seed = Double.doubleToLongBits(Math.random());
+    private File checkpointDirectory = null;
+    private double checkpointInterval = 1000;
+    private int fullCheckpointEvery = 10;
+    private File resume = null;
+    private File telemetryDirectory = null;
+    private int frameRate = Visualization.DEFAULT_FRAME_RATE;
+    private boolean reportLineage = false;
+    private boolean jmx = false;
+    private int partitions = 1;
+    private int partition = 0;
+    private int partitionPort = 7400;
+    private double nutrientUptake = 0;
+    private double nutrientDiffusion = 0;
+    private double nutrientInflow = 0;
+
+    //The arguments that this runner was started with, which are passed on to the other partitions
+    private String[] arguments = new String[0];
+
+    public static void main(String[] args) throws IOException {
+        BatchRunner runner = new BatchRunner();
+        runner.parseArguments(args);
+        runner.run();
+    }
+
+    private void parseArguments(String[] args) {
+        arguments = args.clone();
+
+        for(int i = 0; i < args.length; i++) {
+            String argument = args[i];
+
+            if(argument.equals("--time")) {
+                endTime = Double.parseDouble(value(args, ++i, argument));
+            } else if(argument.equals("--output")) {
+                output = new File(value(args, ++i, argument));
+            } else if(argument.equals("--until-efficiency")) {
+                targetEfficiency = Double.parseDouble(value(args, ++i, argument));
+            } else if(argument.equals("--until-functional-enzyme")) {
+                stopOnFunctionalEnzyme = true;
+            } else if(argument.equals("--gui")) {
+                visualize = true;
+            } else if(argument.equals("--engine")) {
+                engine = value(args, ++i, argument);
+            } else if(argument.equals("--threads")) {
+                threads = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--seed")) {
+                seed = Long.parseLong(value(args, ++i, argument));
+            } else if(argument.equals("--checkpoint-directory")) {
+                checkpointDirectory = new File(value(args, ++i, argument));
+            } else if(argument.equals("--checkpoint-interval")) {
+                checkpointInterval = Double.parseDouble(value(args, ++i, argument));
+            } else if(argument.equals("--full-checkpoint-every")) {
+                fullCheckpointEvery = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--resume")) {
+                resume = new File(value(args, ++i, argument));
+            } else if(argument.equals("--telemetry")) {
+                telemetryDirectory = new File(value(args, ++i, argument));
+            } else if(argument.equals("--frame-rate")) {
+                frameRate = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--lineage")) {
+                reportLineage = true;
+            } else if(argument.equals("--jmx")) {
+                jmx = true;
+            } else if(argument.equals("--rows")) {
+                rows = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--columns")) {
+                columns = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--bacteria")) {
+                numBacteria = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--sparse")) {
+                sparse = true;
+            } else if(argument.equals("--tile-size")) {
+                tileSize = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--partitions")) {
+                partitions = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--partition-port")) {
+                partitionPort = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--partition")) {
+                partition = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--nutrient-uptake")) {
+                nutrientUptake = Double.parseDouble(value(args, ++i, argument));
+            } else if(argument.equals("--nutrient-diffusion")) {
+                nutrientDiffusion = Double.parseDouble(value(args, ++i, argument));
+            } else if(argument.equals("--nutrient-inflow")) {
+                nutrientInflow = Double.parseDouble(value(args, ++i, argument));
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + argument);
+            }
+        }
+    }
+
+    private static String value(String[] args, int index, String argument) {
+        if(index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + argument);
+        }
+
+        return args[index];
+    }
+
+    public void run() throws IOException {
+        if(resume == null && partition == 0) {
+            System.out.println("Seed: " + seed);
+        }
+
+        if(engine.equals("lockstep")) {
+            runLockstep();
+        } else if(engine.equals("devs")) {
+            runDevs();
+        } else {
+            throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    private void runLockstep() throws IOException {
+        LockstepEngine lockstepEngine = LockstepEngine.createExperiment(withNutrients(ExperimentParameters.builder()
+                .rows(rows)
+                .columns(columns)
+                .bacteria(numBacteria)
+                .seed(seed)), reportLineage);
+
+        try(EfficiencyTimeSeriesWriter timeSeries = new EfficiencyTimeSeriesWriter(output);
+            TelemetrySink telemetry = createTelemetrySink()) {
+
+            lockstepEngine.addObserver(timeSeries);
+            if(telemetry != null) {
+                lockstepEngine.addObserver(telemetry);
+            }
+
+            long start = System.currentTimeMillis();
+            while(lockstepEngine.getTick() < endTime && lockstepEngine.getPopulation() > 0 && !stopConditionMet(timeSeries)) {
+                lockstepEngine.step();
+            }
+
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            System.out.println("Simulation stopped at time " + lockstepEngine.getTick() + " after " + elapsed + "ms (" +
+                    ((lockstepEngine.getAgentSteps() * 1000) / elapsed) + " agent-steps/s)");
+            printNutrientField(lockstepEngine.getNutrientField());
+            printGenotypes(lockstepEngine.getGenotypes());
+            printLineage(lockstepEngine.getLineage());
+        }
+    }
+
+    private void runDevs() throws IOException {
+        if(partitions > 1) {
+            runPartition();
+            return;
+        }
+
+        if(threads > 0 || sparse || checkpointDirectory != null || resume != null || nutrientUptake > 0) {
+            runParallel();
+            return;
+        }
+
+        Evolution evolution = new Evolution(false, denseParameters(), null, reportLineage);
+        attachVisualization(evolution);
+        registerMetrics(evolution);
+
+        try(EfficiencyTimeSeriesWriter timeSeries = new EfficiencyTimeSeriesWriter(output);
+            TelemetrySink telemetry = createTelemetrySink()) {
+
+            evolution.addObserver(timeSeries);
+            if(telemetry != null) {
+                evolution.addObserver(telemetry);
+            }
+
+            coordinator coordinator = new coordinator(evolution);
+            coordinator.initialize();
+            coordinator.simInject(0, Evolution.Port.START.portName(), new entity("start"));
+
+            long start = System.currentTimeMillis();
+            while(coordinator.getTN() <= endTime && !stopConditionMet(timeSeries)) {
+                coordinator.simulate(1);
+                sampleMetrics(evolution, coordinator.getTN());
+            }
+
+            System.out.println("Simulation stopped at time " + coordinator.getTN() + " after " + (System.currentTimeMillis() - start) + "ms");
+            printGenotypes(evolution.getGenotypes());
+            printLineage(evolution.getLineage());
+        }
+    }
+
+    private void runParallel() throws IOException {
+        Evolution evolution;
+        ParallelCoordinator coordinator;
+        long firstSequence = 0;
+
+        if(resume != null) {
+            CheckpointReader checkpoint = CheckpointReader.restore(resume, false, Math.max(1, threads), reportLineage);
+            evolution = checkpoint.getEvolution();
+            coordinator = checkpoint.getCoordinator();
+            firstSequence = checkpoint.getSequence() + 1;
+            System.out.println("Resumed from " + resume + " at time " + coordinator.getClock() + " (seed " + evolution.getSeed() + ")");
+        } else {
+            evolution = new Evolution(false, sparse ? sparseParameters() : denseParameters(), null, reportLineage);
+            coordinator = new ParallelCoordinator(evolution, Math.max(1, threads));
+            coordinator.initialize();
+            coordinator.inject(Evolution.Port.START.portName(), new entity("start"));
+        }
+
+        attachVisualization(evolution);
+        registerMetrics(evolution);
+
+        try(EfficiencyTimeSeriesWriter timeSeries = new EfficiencyTimeSeriesWriter(output);
+            TelemetrySink telemetry = createTelemetrySink();
+            CheckpointWriter checkpoints = checkpointDirectory == null ? null :
+                    new CheckpointWriter(evolution, coordinator, checkpointDirectory, fullCheckpointEvery, firstSequence)) {
+
+            evolution.addObserver(timeSeries);
+            if(telemetry != null) {
+                evolution.addObserver(telemetry);
+            }
+
+            long start = System.currentTimeMillis();
+            double nextCheckpoint = coordinator.getClock() + checkpointInterval;
+            while(coordinator.getTN() <= endTime && !stopConditionMet(timeSeries)) {
+                coordinator.step();
+                sampleMetrics(evolution, coordinator.getClock());
+
+                if(checkpoints != null && coordinator.getClock() >= nextCheckpoint && coordinator.isQuiescent()) {
+                    checkpoints.checkpoint();
+                    nextCheckpoint = coordinator.getClock() + checkpointInterval;
+                }
+            }
+
+            System.out.println("Simulation stopped at time " + coordinator.getTN() + " after " + (System.currentTimeMillis() - start) + "ms (" +
+                    coordinator.getTransitions() + " transitions)");
+            printCellEvents(evolution);
+            printNutrientField(evolution.getNutrientField());
+            printGenotypes(evolution.getGenotypes());
+            printLineage(evolution.getLineage());
+        } finally {
+            coordinator.shutdown();
+        }
+    }
+
+    //Runs one partition of a sparse model that is split between several processes. The first partition starts the others and writes the
+    //efficiency time series.
+    private void runPartition() throws IOException {
+        if(visualize || checkpointDirectory != null || resume != null || telemetryDirectory != null || targetEfficiency >= 0 || stopOnFunctionalEnzyme ||
+                nutrientUptake > 0) {
+            throw new IllegalArgumentException("Checkpoints, telemetry, the visualizer, stop conditions and nutrients that run out are not " +
+                    "available with --partitions");
+        }
+
+        ExperimentParameters parameters = sparseParameters();
+        List<Process> processes = partition == 0 ? startPartitions() : Collections.<Process>emptyList();
+
+        try(Partition band = new Partition(partition, partitions, parameters)) {
+            band.connect(partitionPort);
+
+            Evolution evolution = new Evolution(false, parameters, band);
+            ParallelCoordinator coordinator = new ParallelCoordinator(evolution, Math.max(1, threads), band);
+            registerMetrics(evolution);
+
+            try(EfficiencyTimeSeriesWriter timeSeries = partition == 0 ? new EfficiencyTimeSeriesWriter(output) : null) {
+                coordinator.initialize();
+                coordinator.inject(Evolution.Port.START.portName(), new entity("start"));
+
+                if(timeSeries != null) {
+                    evolution.addObserver(timeSeries);
+                }
+
+                long start = System.currentTimeMillis();
+                while(coordinator.getTN() <= endTime) {
+                    coordinator.step();
+                    sampleMetrics(evolution, coordinator.getClock());
+                }
+
+                System.out.println("Partition " + partition + " of " + partitions + " stopped at time " + coordinator.getTN() + " after " +
+                        (System.currentTimeMillis() - start) + "ms (" + coordinator.getTransitions() + " transitions, " +
+                        evolution.getPopulation() + " agents alive)");
+            } finally {
+                coordinator.shutdown();
+            }
+        }
+
+        for(Process process : processes) {
+            try {
+                if(process.waitFor() != 0) {
+                    throw new IOException("A partition exited with status " + process.exitValue());
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the other partitions", e);
+            }
+        }
+    }
+
+    //Starts every partition but the first as a process of its own, with the arguments, class path and JVM options of this one. The seed is
+    //passed on explicitly, since it may have been drawn at random.
+    private List<Process> startPartitions() throws IOException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        List<Process> processes = new ArrayList<>();
+
+        for(int i = 1; i < partitions; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), BatchRunner.class.getName()));
+            command.addAll(Arrays.asList(arguments));
+            command.addAll(Arrays.asList("--seed", Long.toString(seed), "--partition", Integer.toString(i)));
+
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        }
+
+        return processes;
+    }
+
+    //Internal transitions are the events of the lifecycle of the agents. External transitions are the children, START messages and the
+    //responses of the arbiters that cells receive.
+    private static void printCellEvents(Evolution evolution) {
+        long internal = evolution.getInternalCellEvents();
+        long steps = evolution.getLifecycleSteps();
+
+        System.out.println("Cells made " + internal + " internal and " + evolution.getExternalCellEvents() + " external transitions for " + steps +
+                " lifecycle steps" + (steps == 0 ? "" : String.format(" (%.2f internal transitions per step)", (double) internal / steps)));
+    }
+
+    //Prints how much nutrient is left, if nutrients run out at all
+    private static void printNutrientField(NutrientField field) {
+        if(field != null) {
+            System.out.println(String.format("Mean nutrient concentration %.4f", field.getMeanConcentration()));
+        }
+    }
+
+    //Prints the number of distinct genotypes that are alive, and the most common one
+    private static void printGenotypes(GenotypeRegistry genotypes) {
+        Genotype mostCommon = null;
+        for(Genotype genotype : genotypes.getGenotypes()) {
+            if(mostCommon == null || genotype.getPopulation() > mostCommon.getPopulation()) {
+                mostCommon = genotype;
+            }
+        }
+
+        System.out.println(genotypes.size() + " distinct genotypes alive" + (mostCommon == null ? "" :
+                ", the most common carried by " + mostCommon.getPopulation() + " agents: " + mostCommon.getGenome()));
+    }
+
+    private void printLineage(LineageRecorder lineage) {
+        if(!reportLineage) {
+            return;
+        }
+
+        System.out.println("Lineage: " + lineage.size() + " of " + lineage.getRecorded() + " records kept");
+
+        LineageRecorder.Record ancestor = lineage.getMostRecentCommonAncestor();
+        System.out.println("Most recent common ancestor: " + (ancestor == null ? "none" : ancestor));
+
+        for(long agent : lineage.getLivingAgents()) {
+            LineageRecorder.Record first = lineage.getFirstFunctionalAncestor(agent);
+            if(first == null) {
+                continue;
+            }
+
+            System.out.println("First functional ancestor of agent " + agent + ": " + first);
+            List<LineageRecorder.Record> ancestry = lineage.getAncestry(first.getId());
+            for(int i = ancestry.size() - 1; i >= 0; i--) {
+                if(ancestry.get(i).getMutations() > 0) {
+                    System.out.println("    " + ancestry.get(i));
+                }
+            }
+            return;
+        }
+
+        System.out.println("No surviving agent descends from a carrier of a functional enzyme");
+    }
+
+    //Parameters of a dense DEVS model, which always has the default grid and tiles of 10 by 10 cells
+    private ExperimentParameters denseParameters() {
+        return withNutrients(ExperimentParameters.builder()
+                .tileRows(10)
+                .tileColumns(10)
+                .seed(seed));
+    }
+
+    //Parameters of a sparse model. A partitioned model is always sparse.
+    private ExperimentParameters sparseParameters() {
+        return withNutrients(ExperimentParameters.builder()
+                .rows(rows)
+                .columns(columns)
+                .bacteria(numBacteria)
+                .tileRows(tileSize)
+                .tileColumns(tileSize)
+                .sparse(true)
+                .seed(seed));
+    }
+
+    private ExperimentParameters withNutrients(ExperimentParameters.Builder builder) {
+        return builder.nutrientUptake(nutrientUptake)
+                .nutrientDiffusion(nutrientDiffusion)
+                .nutrientInflow(nutrientInflow)
+                .build();
+    }
+
+    //Publishes the metrics of the experiment through JMX, if --jmx was given
+    private void registerMetrics(Evolution evolution) {
+        if(!jmx) {
+            return;
+        }
+
+        try {
+            evolution.getMetrics().register();
+        } catch(JMException e) {
+            throw new IllegalStateException("Could not register the simulation metrics", e);
+        }
+    }
+
+    private void sampleMetrics(Evolution evolution, double time) {
+        if(jmx && evolution.getMetrics().isSampleDue()) {
+            evolution.getMetrics().sample(time, evolution);
+        }
+    }
+
+    private void attachVisualization(Evolution evolution) {
+        if(visualize) {
+            evolution.attachVisualization(frameRate);
+        }
+    }
+
+    //Creates the telemetry sink, or returns null if telemetry was not asked for. Records that the sink had to drop are reported when the
+    //simulation stops.
+    private TelemetrySink createTelemetrySink() throws IOException {
+        if(telemetryDirectory == null) {
+            return null;
+        }
+
+        return new TelemetrySink(telemetryDirectory) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if(getDropped() > 0) {
+                    System.out.println("Telemetry dropped " + getDropped() + " records");
+                }
+            }
+        };
+    }
+
+    private boolean stopConditionMet(EfficiencyTimeSeriesWriter timeSeries) {
+        if(stopOnFunctionalEnzyme && timeSeries.getFirstFunctionalEnzymeTime() >= 0) {
+            return true;
+        }
+
+        return targetEfficiency >= 0 && timeSeries.getLatestAverageEfficiency() >= targetEfficiency;
+    }
+}
@@ -1,20 +1,24 @@
 package VivinPaliath;
 
-import model.modeling.content;
+import GenCol.entity;
 import model.modeling.message;
 import view.modeling.ViewableAtomic;
 
-import java.util.HashMap;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
  * This class implements the cell model and the bacterial agent's lifecycle.
  */
-public class Cell extends ViewableAtomic {
+public class Cell extends ViewableAtomic implements Checkpointable {
 
     //The row and colum that identifies this cell's location in the grid.
     private int row = -1;
     private int column = -1;
+    private final CellAddress address;
 
     //Nutrient in the cell
     private Nutrient nutrient = null;
@@ -25,20 +29,80 @@ public class Cell extends ViewableAtomic {
     //The agent in this cell
     private Bacterium bacterium = null;
 
-    //The genome of the child agent that we will send to a vacant neighbor
-    private String childGenome = null;
+    //The mutations of the child agent that we are sending to a vacant neighbor. They are drawn, and the agent pays for the child, on the
+    //transition into the REPRODUCE phase, so that out() only has to send them.
+    private MutationDelta childMutations = null;
 
-    //The result of metabolysis that we'll send to the transducer
+    //The result of the last metabolysis of the agent
     private MetabolysisResult metabolysisResult = null;
 
-    //The response from the transducer regarding a query about spaces available.
-    private QueryResponse queryResponse = null;
+    //The direction of the vacant neighbor from the last response of the arbiter to a query about spaces available. Responses are reused by
+    //the arbiter, so only the direction is kept.
+    private Direction queryResponse = null;
+
+    //The random stream of this cell. Agents that live in this cell draw their mutations from it.
+    private RandomStream random = null;
+
+    //How the genomes of children are mutated
+    private MutationParameters mutation = MutationParameters.DEFAULT;
+
+    //Notified of births, deaths and reservations in this cell
+    private SimulationObserver observer = null;
+
+    //The genotypes of the experiment. The agent in this cell holds on to its genotype for as long as it lives.
+    private GenotypeRegistry genotypes = null;
+
+    //Records the birth and death of every agent in this cell, or null if the lineage of the experiment is not recorded
+    private LineageRecorder lineage = null;
+
+    //Whether births and deaths are held on to until recordLineage is called, instead of being recorded by the transition that made them. The
+    //death and the birth that are held on to, if any; a cell whose agent dies can receive a child in the same transition.
+    private boolean lineageDeferred = false;
+    private long pendingDeath = LineageRecorder.NONE;
+    private long pendingParent = LineageRecorder.NONE;
+    private MutationDelta pendingMutations = null;
+
+    //How much nutrient is left in each square, or null if nutrients never run out
+    private NutrientField field = null;
+
+    //The simulation time of the last transition of this cell
+    private double clock = 0;
 
     //The time to transition between states
     private double stateTransitionTime = 1;
 
+    //Number of internal and external transitions this cell has made, and number of lifecycle steps (rest, feed or reproduce) its agents
+    //have taken. Every lifecycle step takes a single internal transition.
+    private long internalEvents = 0;
+    private long externalEvents = 0;
+    private long lifecycleSteps = 0;
+
     //Maps direction to the appropriate output port. This is how we can identify neighboring cells based on the direction from the current cell.
-    private Map<Direction, Port> directionToPort = new HashMap<>();
+    //It is the same for every cell, so it is shared.
+    private static final Map<Direction, Port> directionToPort = new EnumMap<>(Direction.class);
+
+    //The messages this cell sends. Each one is created once and updated in place every time it is sent, and the output that carries it is
+    //built once as well, so that the lifecycle of an agent does not allocate anything.
+    private final CellMessage queryMessage;
+    private final CellMessage restMessage;
+    private final CellMessage feedMessage;
+    private final BacteriumMessage childMessage;
+    private final message restOutput;
+    private final message restAndQueryOutput;
+    private final message feedOutput;
+    private final message[] childOutputs = new message[Direction.values().length];
+    private final message noOutput = new message();
+
+    static {
+        directionToPort.put(Direction.N, Port.OUTPUT_N);
+        directionToPort.put(Direction.NW, Port.OUTPUT_NW);
+        directionToPort.put(Direction.NE, Port.OUTPUT_NE);
+        directionToPort.put(Direction.S, Port.OUTPUT_S);
+        directionToPort.put(Direction.SW, Port.OUTPUT_SW);
+        directionToPort.put(Direction.SE, Port.OUTPUT_SE);
+        directionToPort.put(Direction.E, Port.OUTPUT_E);
+        directionToPort.put(Direction.W, Port.OUTPUT_W);
+    }
 
     //An enum that represents the ports on this model
     public static enum Port {
@@ -53,6 +117,7 @@ public class Cell extends ViewableAtomic {
         OUTPUT_W("output_W"),
         QUERY("query"),
         CELL_STATUS("cell_status"),
+        FEED_STATUS("feed_status"),
 
         START("start"),
         INPUT_BACTERIUM("input_bacterium"),
@@ -69,17 +134,14 @@ public class Cell extends ViewableAtomic {
         }
     }
 
-    //An enum that represents the phases of this model.
+    //An enum that represents the phases of this model. Each timed phase sends its message in the same event that ends it, so there are no
+    //phases that only exist to send a message.
     public static enum Phase {
 
         FEED("feed"),
-        SEND_FEED_MESSAGE("send_feed_message"),
         REST("rest"),
-        SEND_REST_MESSAGE("send_rest_message"),
         REPRODUCE("reproduce"),
-        SEND_CHILD("send_child"),
         DEAD("dead"),
-        QUERY("query"),
         WAIT("wait");
 
         private String phaseName;
@@ -94,25 +156,51 @@ public class Cell extends ViewableAtomic {
     }
 
     public Cell() {
-        this(0, 0, new Nutrient("0111101010001111"), new Bacterium(
+        this(0, 0, new Nutrient("0111101010001111"), Genome.fromBitPattern(
                 "0000011100000011101100010000110010110001000011000110011110011100"
         ));
     }
 
+    //Creates a cell whose resident agent is decoded from a packed genome. A null genome creates an empty cell.
+    public Cell(int row, int column, Nutrient nutrient, Genome genome) {
+        this(row, column, nutrient, genome == null ? null : new Bacterium(genome));
+    }
+
     public Cell(int row, int column, Nutrient nutrient, Bacterium bacterium) {
+        this(row, column, nutrient, bacterium, new RandomStream(Double.doubleToLongBits(Math.random()), 0));
+    }
+
+    public Cell(int row, int column, Nutrient nutrient, Bacterium bacterium, RandomStream random) {
+        this(row, column, nutrient, bacterium, random, MutationParameters.DEFAULT);
+    }
+
+    public Cell(int row, int column, Nutrient nutrient, Bacterium bacterium, RandomStream random, MutationParameters mutation) {
+        this(row, column, nutrient, bacterium, random, mutation, new SimulationObservers());
+    }
+
+    public Cell(int row, int column, Nutrient nutrient, Bacterium bacterium, RandomStream random, MutationParameters mutation,
+                SimulationObserver observer) {
+        this(row, column, nutrient, bacterium, random, mutation, observer, new GenotypeRegistry(), null);
+    }
+
+    public Cell(int row, int column, Nutrient nutrient, Bacterium bacterium, RandomStream random, MutationParameters mutation,
+                SimulationObserver observer, GenotypeRegistry genotypes, LineageRecorder lineage) {
+        this(row, column, nutrient, bacterium, random, mutation, observer, genotypes, lineage, null);
+    }
+
+    public Cell(int row, int column, Nutrient nutrient, Bacterium bacterium, RandomStream random, MutationParameters mutation,
+                SimulationObserver observer, GenotypeRegistry genotypes, LineageRecorder lineage, NutrientField field) {
         super("Cell(" + row + "," + column + ")");
 
         this.row = row;
         this.column = column;
-
-        directionToPort.put(Direction.N, Port.OUTPUT_N);
-        directionToPort.put(Direction.NW, Port.OUTPUT_NW);
-        directionToPort.put(Direction.NE, Port.OUTPUT_NE);
-        directionToPort.put(Direction.S, Port.OUTPUT_S);
-        directionToPort.put(Direction.SW, Port.OUTPUT_SW);
-        directionToPort.put(Direction.SE, Port.OUTPUT_SE);
-        directionToPort.put(Direction.E, Port.OUTPUT_E);
-        directionToPort.put(Direction.W, Port.OUTPUT_W);
+        this.address = new CellAddress(row, column);
+        this.random = random;
+        this.mutation = mutation;
+        this.observer = observer;
+        this.genotypes = genotypes;
+        this.lineage = lineage;
+        this.field = field;
 
         addOutport(Port.OUTPUT_N.portName);
         addOutport(Port.OUTPUT_NW.portName);
@@ -124,59 +212,90 @@ public class Cell extends ViewableAtomic {
         addOutport(Port.OUTPUT_W.portName);
         addOutport(Port.QUERY.portName);
         addOutport(Port.CELL_STATUS.portName);
+        addOutport(Port.FEED_STATUS.portName);
 
         addInport(Port.START.portName);
         addInport(Port.INPUT_BACTERIUM.portName);
         addInport(Port.QUERY_RESPONSE.portName);
 
+        queryMessage = CellMessage.createQueryMessage(address);
+        restMessage = CellMessage.createRestMessage(address, 0, 0, 0, 0);
+        feedMessage = CellMessage.createFeedMessage(address, null, null);
+        childMessage = new BacteriumMessage(address, -1, null, MutationDelta.NONE, nutrient);
+
+        restOutput = output(Port.CELL_STATUS, restMessage);
+        restAndQueryOutput = output(Port.CELL_STATUS, restMessage);
+        restAndQueryOutput.add(makeContent(Port.QUERY.portName, queryMessage));
+        feedOutput = output(Port.FEED_STATUS, feedMessage);
+        for(Map.Entry<Direction, Port> entry : directionToPort.entrySet()) {
+            childOutputs[entry.getKey().ordinal()] = output(entry.getValue(), childMessage);
+        }
+
         this.nutrient = nutrient;
         this.parentCellNutrient = nutrient;
-        this.bacterium = bacterium;
+
+        //The resident agent is moved onto the interned genotype of its genome, and founds a lineage
+        if(bacterium != null) {
+            this.bacterium = new Bacterium(genotypes.acquire(bacterium.getGenome()), bacterium.getLifespan(), bacterium.getFreeEnergy());
+            if(lineage != null) {
+                this.bacterium.setId(lineage.recordFounder(0, row, column, this.bacterium.getGenotype()));
+            }
+        }
 
         //We initially start in the DEAD phase even if we have a resident agent. We will not start until we get a START message.
         phase = Phase.DEAD.phaseName;
         sigma = INFINITY;
     }
 
+    //Every timed phase ends with a single event. Its output, which out() works out from the state the transition below is about to leave
+    //the agent in, is sent at the same time as the transition moves on to the next timed phase.
     @Override
     public void deltint() {
+        clock = clock + sigma;
+        internalEvents++;
 
-        if(phaseIs(Phase.REST.phaseName)) {  //If we are in the REST phase, invoke the rest behavior and then transition to the SEND_REST_MESSAGE phase immediately
+        if(phaseIs(Phase.REST.phaseName)) { //If we are in the REST phase, invoke the rest behavior. The rest message has just been sent. Check to see if the agent is still alive.
+            //The rest message was worked out with the same tests, so the phase we move to always matches what the arbiter was told
+            boolean dies = bacterium.diesAfterRest();
+            boolean reproduces = bacterium.willReproduceAfterRest();
             bacterium.rest();
-            holdIn(Phase.SEND_REST_MESSAGE.phaseName, 0);
+            lifecycleSteps++;
 
-        } else if(phaseIs(Phase.SEND_REST_MESSAGE.phaseName)) { //If we are in the SEND_REST_MESSAGE phase it means we just sent a mesage. Check to see if the agent is still alive.
-            if(bacterium.getLifespan() == 0 || bacterium.getFreeEnergy() <= 0) {
+            if(dies) {
+                genotypes.release(bacterium.getGenotype());
+                if(lineage != null) {
+                    pendingDeath = bacterium.getId();
+                }
                 bacterium = null;
+                observer.bacteriumDied(clock, row, column);
                 holdIn(Phase.DEAD.phaseName, INFINITY); //transition into the DEAD (passive) phase since agent is dead
-            } else if(bacterium.getFreeEnergy() >= bacterium.getReproductionThreshold()) {
-                holdIn(Phase.QUERY.phaseName, 0); //transition to the QUERY phase to send a query to the transducer about vacant neighbors
+            } else if(reproduces) {
+                holdIn(Phase.WAIT.phaseName, INFINITY); //a query about vacant neighbors went out with the rest message, so wait for the arbiter to respond
             } else {
                 holdIn(Phase.FEED.phaseName, stateTransitionTime); //transition to the FEED phase.
             }
 
-        } else if(phaseIs(Phase.FEED.phaseName)) { //If we are in the FEED phase, invoke feeding behavior and transition to the SEND_FEED_MESSAGE phase immediately
-            metabolysisResult = bacterium.feed(nutrient);
-            holdIn(Phase.SEND_FEED_MESSAGE.phaseName, 0);
-
-        } else if(phaseIs(Phase.SEND_FEED_MESSAGE.phaseName)) { //We just sent a message regarding feeding behavior, so transition to the REST phase.
+        } else if(phaseIs(Phase.FEED.phaseName)) { //If we are in the FEED phase, invoke feeding behavior. The feed message has just been sent, so transition to the REST phase.
+            metabolysisResult = field == null ? bacterium.feed(nutrient) : bacterium.feed(nutrient, field.consume(row, column));
+            lifecycleSteps++;
             holdIn(Phase.REST.phaseName, stateTransitionTime);
 
-        } else if(phaseIs(Phase.QUERY.phaseName)) { //If we are in the QUERY phase, we need to wait for a response from the transducer, so transition to the passive WAIT phase.
-            holdIn(Phase.WAIT.phaseName, INFINITY);
-
-        } else if(phaseIs(Phase.REPRODUCE.phaseName)) { //If we are in the REPRODUCE phase, invoke the reproduce behavior and transition to the SEND_CHILD
-            childGenome = bacterium.reproduce();
-            holdIn(Phase.SEND_CHILD.phaseName, 0);
-
-        } else if(phaseIs(Phase.SEND_CHILD.phaseName)) { //We just sent a child to a vacant neighbor so transition to the REST phase.
+        } else if(phaseIs(Phase.REPRODUCE.phaseName)) { //If we are in the REPRODUCE phase, we just sent a child to a vacant neighbor so transition to the REST phase.
+            childMutations = null;
+            lifecycleSteps++;
             holdIn(Phase.REST.phaseName, stateTransitionTime);
 
         }
+
+        if(!lineageDeferred) {
+            recordLineage();
+        }
     }
 
     @Override
     public void deltext(double e, message x) {
+        clock = clock + e;
+        externalEvents++;
         Continue(e);
 
         if(phaseIs(Phase.DEAD.phaseName)) { //If we are in the DEAD (passive) phase
@@ -185,21 +304,31 @@ public class Cell extends ViewableAtomic {
                     holdIn(Phase.REST.phaseName, stateTransitionTime); //If we got a START message, start the lifecycle of the agent by transitioning to the REST phase
                 } else if(messageOnPort(x, Port.INPUT_BACTERIUM.portName, i)) { //If we got a bacterium message, we got a child agent from another cell. So let's instantiate and assign it to this cell
                     BacteriumMessage bacteriumMessage = (BacteriumMessage) x.getValOnPort(Port.INPUT_BACTERIUM.portName, i);
-                    bacterium = new Bacterium(bacteriumMessage.getGenome());
+                    Genotype genotype = genotypes.inherit(bacteriumMessage.getParentGenotype(), bacteriumMessage.getMutations());
+                    bacterium = new Bacterium(genotype);
+                    if(lineage != null) {
+                        pendingParent = bacteriumMessage.getParentId();
+                        pendingMutations = bacteriumMessage.getMutations();
+                    }
                     parentCellNutrient = bacteriumMessage.getParentCellNutrient();
+                    observer.bacteriumBorn(clock, row, column);
 
+                    //The child rests right away, so that it reports to the arbiter in the same instant that it arrives
                     holdIn(Phase.REST.phaseName, 0);
                 }
             }
         } else if(phaseIs(Phase.WAIT.phaseName)) { //If we are in the WAIT (passive) phase
             for(int i = 0; i < x.getLength(); i++) {
-                if(messageOnPort(x, Port.QUERY_RESPONSE.portName, i)) { //If we got a response from the transducer, let's process it.
-                    queryResponse = (QueryResponse) x.getValOnPort(Port.QUERY_RESPONSE.portName, i);
-                    CellAddress queryResponseCellAddress = queryResponse.getCellAddress();
+                if(messageOnPort(x, Port.QUERY_RESPONSE.portName, i)) { //If we got a response from the arbiter, let's process it.
+                    QueryResponse response = (QueryResponse) x.getValOnPort(Port.QUERY_RESPONSE.portName, i);
+                    CellAddress queryResponseCellAddress = response.getCellAddress();
 
+                    //A single message can carry responses for several cells. Only keep ours.
                     //If no room is available, transition to the REST phase. Otherwise transition to the REPRODUCE phase.
                     if(queryResponseCellAddress.getRow() == row && queryResponseCellAddress.getColumn() == column) {
-                        if(queryResponse.emptyCellAvailable()) {
+                        queryResponse = response.getDirection();
+                        if(response.emptyCellAvailable()) {
+                            childMutations = bacterium.reproduceMutations(random, mutation);
                             holdIn(Phase.REPRODUCE.phaseName, stateTransitionTime);
                         } else {
                             holdIn(Phase.REST.phaseName, stateTransitionTime);
@@ -208,6 +337,10 @@ public class Cell extends ViewableAtomic {
                 }
             }
         }
+
+        if(!lineageDeferred) {
+            recordLineage();
+        }
     }
 
     @Override
@@ -216,30 +349,125 @@ public class Cell extends ViewableAtomic {
         deltext(0, x);
     }
 
+    //The outputs are shared between calls, so nothing that receives them may modify them. Each output is the message of the phase that is
+    //ending, as of the state that deltint() leaves the agent in.
     @Override
     public message out() {
+        if(phaseIs(Phase.REST.phaseName)) { //Send a rest-message to the arbiter of our tile, along with a query about vacant neighbors if the agent will reproduce
+            restMessage.updateRestMessage(bacterium.getMaximumLifespan(), bacterium.getLifespanAfterRest(), bacterium.getMaximumFreeEnergy(),
+                    bacterium.getFreeEnergyAfterRest());
+
+            return bacterium.willReproduceAfterRest() ? restAndQueryOutput : restOutput;
+        } else if(phaseIs(Phase.FEED.phaseName)) { //Send a feed-message to the transducer
+            feedMessage.updateFeedMessage(bacterium.getGenotype().yield(nutrient).getMetabolysisResult(), parentCellNutrient);
+            return feedOutput;
+        } else if(phaseIs(Phase.REPRODUCE.phaseName)) { //Send a bacterium-message to a vacant neighbor, with the mutations drawn on entering the REPRODUCE phase
+            childMessage.update(bacterium.getId(), bacterium.getGenotype(), childMutations, nutrient);
+            return childOutputs[queryResponse.ordinal()];
+        }
+
+        return noOutput;
+    }
+
+    //Builds an output that carries a single message on a port
+    private message output(Port port, entity value) {
         message m = new message();
+        m.add(makeContent(port.portName, value));
+        return m;
+    }
 
-        if(phaseIs(Phase.QUERY.phaseName)) { //Send a query to the transducer if we are in the QUERY phase
-            content c = makeContent(Port.QUERY.portName, CellMessage.createQueryMessage(new CellAddress(row, column)));
-            m.add(c);
-        } else if(phaseIs(Phase.SEND_CHILD.phaseName)) { //Send a bacterium-message to a vacant neighbor if we are in the SEND_CHILD phase
-            Port port = directionToPort.get(queryResponse.getDirection());
-            content c = makeContent(port.portName, new BacteriumMessage(new CellAddress(row, column), childGenome, nutrient));
-            m.add(c);
-        } else if(phaseIs(Phase.SEND_REST_MESSAGE.phaseName)) { //Send a rest-message to the transducer if we are in the SEND_REST_MESSAGE phase
-            content c = makeContent(Port.CELL_STATUS.portName, CellMessage.createRestMessage(new CellAddress(row, column), bacterium.getMaximumLifespan(), bacterium.getLifespan(), bacterium.getMaximumFreeEnergy(), bacterium.getFreeEnergy()));
-            m.add(c);
-        } else if(phaseIs(Phase.SEND_FEED_MESSAGE.phaseName)) { //Send a feed-message to the transducer if we are in the SEND_FEED_MESSAGE phase
-            content c = makeContent(Port.CELL_STATUS.portName, CellMessage.createFeedMessage(new CellAddress(row, column), metabolysisResult, parentCellNutrient));
-            m.add(c);
+    //Checkpoints are only taken between instants. The metabolysis result has been sent by then, so it is not written. A cell in the
+    //REPRODUCE phase has already drawn the mutations of its child and paid for it, so those mutations are written.
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        out.writeByte(Phase.valueOf(phase.toUpperCase()).ordinal());
+        out.writeDouble(sigma);
+        out.writeDouble(clock);
+
+        out.writeBoolean(bacterium != null);
+        if(bacterium != null) {
+            bacterium.getGenome().writeTo(out);
+            out.writeInt(bacterium.getLifespan());
+            out.writeDouble(bacterium.getFreeEnergy());
         }
 
-        return m;
+        out.writeInt(parentCellNutrient.getValue());
+        out.writeByte(parentCellNutrient.getSize());
+        out.writeByte(queryResponse == null ? -1 : queryResponse.ordinal());
+        out.writeLong(random.getCounter());
+
+        out.writeBoolean(childMutations != null);
+        if(childMutations != null) {
+            childMutations.writeTo(out);
+        }
+    }
+
+    @Override
+    public void readCheckpoint(ByteBuffer in) {
+        Phase checkpointedPhase = Phase.values()[in.get()];
+        holdIn(checkpointedPhase.phaseName, in.getDouble());
+        clock = in.getDouble();
+        removeBacterium();
+
+        //Lineages are not part of checkpoints. The agents of a restored checkpoint found new lineages at the time of the checkpoint.
+        if(in.get() != 0) {
+            Genotype genotype = genotypes.acquire(Genome.readFrom(in));
+            bacterium = new Bacterium(genotype, in.getInt(), in.getDouble());
+            if(lineage != null) {
+                bacterium.setId(lineage.recordFounder(clock, row, column, genotype));
+            }
+        }
+
+        parentCellNutrient = new Nutrient(in.getInt(), in.get());
+
+        int direction = in.get();
+        queryResponse = direction < 0 ? null : Direction.values()[direction];
+        random.reset(random.getKey(), in.getLong());
+
+        childMutations = in.get() != 0 ? MutationDelta.readFrom(in) : null;
+        metabolysisResult = null;
+    }
+
+    //Holds on to the births and deaths of this cell until recordLineage is called. Used by a coordinator that makes transitions on several
+    //threads, so that it can record them in an order that does not depend on the threads.
+    void deferLineage() {
+        lineageDeferred = true;
+    }
+
+    //Records the death and the birth that the transitions of this cell have held on to. A birth is recorded at the time of the last
+    //transition, which is when the child arrived.
+    void recordLineage() {
+        if(pendingDeath != LineageRecorder.NONE) {
+            lineage.recordDeath(pendingDeath);
+            pendingDeath = LineageRecorder.NONE;
+        }
+
+        if(pendingMutations != null) {
+            bacterium.setId(lineage.recordBirth(pendingParent, clock, row, column, bacterium.getGenotype(), pendingMutations));
+            pendingMutations = null;
+        }
+    }
+
+    //Removes the agent from this cell and leaves the cell passive. Used to drop a cell whose state is not part of a checkpoint that is being
+    //restored.
+    void clear() {
+        removeBacterium();
+        childMutations = null;
+        holdIn(Phase.DEAD.phaseName, INFINITY);
+    }
+
+    private void removeBacterium() {
+        if(bacterium != null) {
+            genotypes.release(bacterium.getGenotype());
+            if(lineage != null) {
+                lineage.recordDeath(bacterium.getId());
+            }
+            bacterium = null;
+        }
     }
 
     public CellAddress getAddress() {
-        return new CellAddress(row, column);
+        return address;
     }
 
     public Nutrient getNutrient() {
@@ -253,4 +481,16 @@ public class Cell extends ViewableAtomic {
     public MetabolysisResult metabolysisResult() {
         return this.metabolysisResult;
     }
+
+    public long getInternalEvents() {
+        return internalEvents;
+    }
+
+    public long getExternalEvents() {
+        return externalEvents;
+    }
+
+    public long getLifecycleSteps() {
+        return lifecycleSteps;
+    }
 }
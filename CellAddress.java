@@ -1,11 +1,12 @@
 package VivinPaliath;
 
 /**
- * Class that represents the address of a cell in the 2D grid.
+ * Class that represents the address of a cell in the 2D grid. Addresses are immutable, so each cell creates its own once and sends it with
+ * every message.
  */
 public class CellAddress {
-    private int row;
-    private int column;
+    private final int row;
+    private final int column;
 
     public CellAddress(int row, int column) {
         this.row = row;
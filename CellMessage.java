@@ -2,8 +2,16 @@ package VivinPaliath;
 
 import GenCol.entity;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * A utility class that lets us construct different kinds of messages we can send from a cell to the transducer or other cells
+ *
+ * A cell creates one message of each kind when it is constructed, and updates it in place every time it sends it. A message is therefore
+ * only valid until the end of the simulation instant in which it was sent: receivers read what they need from it during that instant and do
+ * not hold on to it.
  */
 public class CellMessage extends entity {
 
@@ -19,7 +27,7 @@ public class CellMessage extends entity {
             this.cellAddress = cellAddress;
             this.maximumLifespan = maximumLifespan;
             this.lifespan = lifespan;
-            this.maximumFreeEnergy = freeEnergy;
+            this.maximumFreeEnergy = maximumFreeEnergy;
             this.freeEnergy = freeEnergy;
         }
 
@@ -118,6 +126,86 @@ public class CellMessage extends entity {
         return cellMessage;
     }
 
+    //Updates a rest message in place
+    CellMessage updateRestMessage(int maximumLifespan, int lifespan, double maximumFreeEnergy, double freeEnergy) {
+        RestContext restContext = getRestContext();
+        restContext.maximumLifespan = maximumLifespan;
+        restContext.lifespan = lifespan;
+        restContext.maximumFreeEnergy = maximumFreeEnergy;
+        restContext.freeEnergy = freeEnergy;
+
+        return this;
+    }
+
+    //Updates a feed message in place
+    CellMessage updateFeedMessage(MetabolysisResult metabolysisResult, Nutrient parentCellNutrient) {
+        FeedContext feedContext = getFeedContext();
+        feedContext.metabolysisResult = metabolysisResult;
+        feedContext.parentCellNutrient = parentCellNutrient;
+
+        return this;
+    }
+
+    //Writes the message for a model in another partition
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+
+        if(isQueryMessage()) {
+            writeAddress(out, queryContext.cellAddress);
+        } else if(isRestMessage()) {
+            writeAddress(out, restContext.cellAddress);
+            out.writeInt(restContext.maximumLifespan);
+            out.writeInt(restContext.lifespan);
+            out.writeDouble(restContext.maximumFreeEnergy);
+            out.writeDouble(restContext.freeEnergy);
+        } else {
+            MetabolysisResult metabolysisResult = feedContext.metabolysisResult;
+
+            writeAddress(out, feedContext.cellAddress);
+            out.writeBoolean(metabolysisResult != null);
+            if(metabolysisResult != null) {
+                writeNutrient(out, metabolysisResult.getNutrient());
+                out.writeBoolean(metabolysisResult.getEnzyme() != null);
+                if(metabolysisResult.getEnzyme() != null) {
+                    out.writeInt(metabolysisResult.getEnzyme().getValue());
+                    out.writeByte(metabolysisResult.getEnzyme().getSize());
+                }
+                out.writeDouble(metabolysisResult.getEfficiency());
+            }
+            writeNutrient(out, feedContext.parentCellNutrient);
+        }
+    }
+
+    static CellMessage readFrom(ByteBuffer in) {
+        Type type = Type.values()[in.get()];
+        CellAddress cellAddress = new CellAddress(in.getInt(), in.getInt());
+
+        if(type == Type.QUERY) {
+            return createQueryMessage(cellAddress);
+        } else if(type == Type.REST_STATUS) {
+            return createRestMessage(cellAddress, in.getInt(), in.getInt(), in.getDouble(), in.getDouble());
+        }
+
+        MetabolysisResult metabolysisResult = null;
+        if(in.get() != 0) {
+            Nutrient nutrient = new Nutrient(in.getInt(), in.get());
+            Enzyme enzyme = in.get() != 0 ? new Enzyme(in.getInt(), in.get()) : null;
+            metabolysisResult = new MetabolysisResult(nutrient, enzyme, in.getDouble());
+        }
+
+        return createFeedMessage(cellAddress, metabolysisResult, new Nutrient(in.getInt(), in.get()));
+    }
+
+    private static void writeAddress(DataOutput out, CellAddress cellAddress) throws IOException {
+        out.writeInt(cellAddress.getRow());
+        out.writeInt(cellAddress.getColumn());
+    }
+
+    private static void writeNutrient(DataOutput out, Nutrient nutrient) throws IOException {
+        out.writeInt(nutrient.getValue());
+        out.writeByte(nutrient.getSize());
+    }
+
     public boolean isQueryMessage() {
         return this.type == Type.QUERY;
     }
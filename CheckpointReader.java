@@ -0,0 +1,133 @@
+package VivinPaliath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Restores a simulation from a checkpoint written by CheckpointWriter. The experiment is recreated from the parameters in the checkpoint,
+ * and the state of every model is then read back into it. An incremental checkpoint is restored on top of the full checkpoint that it is
+ * based on, which has to be in the same directory. The cells of a sparse experiment are replaced by the cells in the checkpoint. Every
+ * checkpoint holds the whole nutrient field, if there is one.
+ *
+ * Checkpoints are read through memory-mapped buffers, so the operating system pages the file straight into the buffer that the models read
+ * their state from.
+ */
+public class CheckpointReader {
+
+    private final Evolution evolution;
+    private final ParallelCoordinator coordinator;
+    private final long sequence;
+
+    private CheckpointReader(Evolution evolution, ParallelCoordinator coordinator, long sequence) {
+        this.evolution = evolution;
+        this.coordinator = coordinator;
+        this.sequence = sequence;
+    }
+
+    //Restores the checkpoint into a new experiment that is simulated by a ParallelCoordinator with the given number of threads.
+    public static CheckpointReader restore(File checkpoint, boolean visualize, int threads) throws IOException {
+        return restore(checkpoint, visualize, threads, false);
+    }
+
+    //Restores the checkpoint, recording the lineage of the agents from the time of the checkpoint on if asked to
+    public static CheckpointReader restore(File checkpoint, boolean visualize, int threads, boolean recordLineage) throws IOException {
+        ByteBuffer in = map(checkpoint);
+        Header header = new Header(in, checkpoint);
+
+        ByteBuffer base = in;
+        if(header.type == CheckpointWriter.INCREMENTAL) {
+            File baseCheckpoint = new File(checkpoint.getAbsoluteFile().getParentFile(), CheckpointWriter.fileName(header.base, true));
+            base = map(baseCheckpoint);
+
+            Header baseHeader = new Header(base, baseCheckpoint);
+            if(baseHeader.type != CheckpointWriter.FULL || baseHeader.sequence != header.base) {
+                throw new IOException(baseCheckpoint + " is not the full checkpoint that " + checkpoint + " is based on");
+            }
+        }
+
+        ExperimentParameters parameters = ExperimentParameters.readFrom(base);
+        Evolution evolution = new Evolution(visualize, parameters, null, recordLineage);
+        ParallelCoordinator coordinator = new ParallelCoordinator(evolution, threads);
+        coordinator.initialize();
+
+        apply(base, coordinator, evolution.getNutrientField(), parameters.isSparse());
+        if(base != in) {
+            ExperimentParameters.readFrom(in);
+            apply(in, coordinator, evolution.getNutrientField(), false);
+        }
+
+        return new CheckpointReader(evolution, coordinator, header.sequence);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    //Reads the state of the coordinator, of the nutrient field and of the models in the checkpoint. The buffer must be positioned after the
+    //parameters.
+    private static void apply(ByteBuffer in, ParallelCoordinator coordinator, NutrientField field, boolean replaceCells) throws IOException {
+        coordinator.restore(in.getDouble(), in.getLong());
+        if(field != null) {
+            field.readFrom(in);
+        }
+
+        int modelCount = in.getInt();
+        if(modelCount != coordinator.getRankCount()) {
+            throw new IOException("Checkpoint has " + modelCount + " models but the experiment has " + coordinator.getRankCount());
+        }
+
+        if(replaceCells) {
+            coordinator.clearCells();
+        }
+
+        int records = in.getInt();
+        for(int i = 0; i < records; i++) {
+            int model = coordinator.modelOfRank(in.getInt());
+            coordinator.restoreModel(model, in.getDouble(), in.getDouble());
+            ((Checkpointable) coordinator.getModel(model)).readCheckpoint(in);
+        }
+    }
+
+    public Evolution getEvolution() {
+        return evolution;
+    }
+
+    public ParallelCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    //Sequence number of the restored checkpoint
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The header at the start of every checkpoint.
+     */
+    private static class Header {
+
+        private final byte type;
+        private final long sequence;
+        private final long base;
+
+        private Header(ByteBuffer in, File file) throws IOException {
+            if(in.remaining() < 4 || in.getInt() != CheckpointWriter.MAGIC) {
+                throw new IOException(file + " is not a checkpoint");
+            }
+
+            short version = in.getShort();
+            if(version != CheckpointWriter.VERSION) {
+                throw new IOException(file + " is a version " + version + " checkpoint, but only version " + CheckpointWriter.VERSION + " is supported");
+            }
+
+            this.type = in.get();
+            this.sequence = in.getLong();
+            this.base = in.getLong();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package VivinPaliath;
+
+import view.modeling.ViewableAtomic;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes checkpoints of a simulation that is driven by the ParallelCoordinator. A full checkpoint holds the state of every model. An
+ * incremental checkpoint only holds the models that have made a transition since the last full checkpoint, and is restored on top of it.
+ * The cells of a sparse experiment come and go, so every checkpoint of a sparse experiment is a full one, and only holds the cells that exist.
+ *
+ * The state is encoded into memory on the simulation thread, which is quick, and written to disk by a background thread while the simulation
+ * carries on. If the previous checkpoint is still being written, the next one waits for it, so at most one checkpoint is ever held in memory.
+ *
+ * Every checkpoint has the following layout. All values are big-endian.
+ *
+ *     int     magic ("LNSK")
+ *     short   version
+ *     byte    type (FULL or INCREMENTAL)
+ *     long    sequence number
+ *     long    sequence number of the full checkpoint that this checkpoint is based on (its own for a full checkpoint)
+ *     ...     ExperimentParameters
+ *     double  clock
+ *     long    transitions
+ *     ...     NutrientField, if the nutrients of the experiment run out
+ *     int     number of models in a dense experiment with the same parameters
+ *     int     number of model records, followed by each record:
+ *         int     rank of the model, which is its index in a dense experiment
+ *         double  time of the last event
+ *         double  time of the next event
+ *         ...     state of the model
+ */
+public class CheckpointWriter implements Closeable {
+
+    static final int MAGIC = 0x4C4E534B;
+    static final short VERSION = 7;
+    static final byte FULL = 0;
+    static final byte INCREMENTAL = 1;
+
+    private final Evolution evolution;
+    private final ParallelCoordinator coordinator;
+    private final File directory;
+
+    //Number of checkpoints after a full checkpoint before the next full checkpoint is taken
+    private final int fullEvery;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending = null;
+
+    private long sequence;
+    private long lastFull = -1;
+
+    public CheckpointWriter(Evolution evolution, ParallelCoordinator coordinator, File directory, int fullEvery) {
+        this(evolution, coordinator, directory, fullEvery, 0);
+    }
+
+    //Creates a writer whose first checkpoint has the given sequence number. This is used to carry on from a restored checkpoint. The first
+    //checkpoint is always a full one.
+    public CheckpointWriter(Evolution evolution, ParallelCoordinator coordinator, File directory, int fullEvery, long firstSequence) {
+        if(fullEvery <= 0) {
+            throw new IllegalArgumentException("There needs to be at least one checkpoint per full checkpoint");
+        }
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create checkpoint directory " + directory);
+        }
+
+        this.evolution = evolution;
+        this.coordinator = coordinator;
+        this.directory = directory;
+        this.fullEvery = fullEvery;
+        this.sequence = firstSequence;
+    }
+
+    static String fileName(long sequence, boolean full) {
+        return String.format("checkpoint-%08d.%s", sequence, full ? "full" : "incr");
+    }
+
+    //Takes a checkpoint of the current state and hands it to the background thread. Must be called from the thread that drives the
+    //coordinator, at a point where the coordinator is quiescent. Returns the file that the checkpoint will be written to.
+    public synchronized File checkpoint() throws IOException {
+        if(!coordinator.isQuiescent()) {
+            throw new IllegalStateException("Checkpoints can only be taken once every event of the current instant has been executed");
+        }
+
+        boolean full = lastFull < 0 || (sequence - lastFull) >= fullEvery || evolution.getParameters().isSparse();
+
+        List<Integer> records = new ArrayList<>();
+        for(int model = 0; model < coordinator.getModelCount(); model++) {
+            if(coordinator.getModel(model) != null && (full || coordinator.isChanged(model))) {
+                records.add(model);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes));
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(full ? FULL : INCREMENTAL);
+        out.writeLong(sequence);
+        out.writeLong(full ? sequence : lastFull);
+
+        evolution.getParameters().writeTo(out);
+        out.writeDouble(coordinator.getClock());
+        out.writeLong(coordinator.getTransitions());
+        if(evolution.getNutrientField() != null) {
+            evolution.getNutrientField().writeTo(out);
+        }
+        out.writeInt(coordinator.getRankCount());
+
+        out.writeInt(records.size());
+        for(int model : records) {
+            ViewableAtomic atomic = coordinator.getModel(model);
+            out.writeInt(coordinator.getRank(model));
+            out.writeDouble(coordinator.getTimeOfLastEvent(model));
+            out.writeDouble(coordinator.getTimeOfNextEvent(model));
+            ((Checkpointable) atomic).writeCheckpoint(out);
+        }
+        out.flush();
+
+        if(full) {
+            coordinator.clearChanged();
+            lastFull = sequence;
+        }
+
+        final File file = new File(directory, fileName(sequence, full));
+        final byte[] checkpoint = bytes.toByteArray();
+        sequence++;
+
+        awaitPending();
+        pending = executor.submit(() -> {
+            write(file, checkpoint);
+            return null;
+        });
+
+        return file;
+    }
+
+    //Writes the checkpoint to a temporary file first, so that a crash while writing never leaves a truncated checkpoint behind
+    private static void write(File file, byte[] checkpoint) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try(FileOutputStream out = new FileOutputStream(temporary)) {
+            out.write(checkpoint);
+            out.getFD().sync();
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //Waits for the checkpoint that is being written, if any, and reports any failure to write it
+    private void awaitPending() throws IOException {
+        if(pending == null) {
+            return;
+        }
+
+        try {
+            pending.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a checkpoint to be written");
+        } catch(ExecutionException e) {
+            throw new IOException("Could not write checkpoint", e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            awaitPending();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package VivinPaliath;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A part of the simulation whose state can be written to a checkpoint and read back from one. State is always read back into an instance
+ * that was created from the same ExperimentParameters as the instance that was checkpointed, so only the state that changes as the
+ * simulation runs needs to be written.
+ */
+public interface Checkpointable {
+
+    void writeCheckpoint(DataOutput out) throws IOException;
+
+    void readCheckpoint(ByteBuffer in);
+}
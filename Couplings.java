@@ -0,0 +1,131 @@
+package VivinPaliath;
+
+import GenCol.entity;
+import model.modeling.content;
+import view.modeling.ViewableAtomic;
+
+import java.util.*;
+
+/**
+ * A record of the couplings of a coupled model, in a form that a coordinator can route messages with. Sources are matched by identity,
+ * since entities compare equal by name.
+ *
+ * A port whose messages are each meant for a single one of the models coupled to it can be given a Router, which picks that model out for
+ * every message, so that the message is not delivered to all of them.
+ */
+public class Couplings {
+
+    /**
+     * The input port of an atomic model that a coupling delivers messages to.
+     */
+    public static class Destination {
+
+        private final ViewableAtomic model;
+        private final String port;
+
+        //The value that was last delivered through this coupling, and the content that carried it. Cells send the same message every time,
+        //so the content can be reused until a different value comes along.
+        private entity lastValue = null;
+        private content lastContent = null;
+
+        private Destination(ViewableAtomic model, String port) {
+            this.model = model;
+            this.port = port;
+        }
+
+        public ViewableAtomic getModel() {
+            return model;
+        }
+
+        public String getPort() {
+            return port;
+        }
+
+        //Returns the content that delivers a value to the destination. Must only be used by one thread at a time.
+        content contentFor(entity value) {
+            if(value != lastValue) {
+                lastContent = model.makeContent(port, value);
+                lastValue = value;
+            }
+
+            return lastContent;
+        }
+    }
+
+    /**
+     * Picks the destinations of a message sent on a port.
+     */
+    public interface Router {
+
+        List<Destination> destinations(entity value);
+    }
+
+    private final Map<Object, Map<String, List<Destination>>> couplings = new IdentityHashMap<>();
+    private final Map<Object, Map<String, Router>> routers = new IdentityHashMap<>();
+
+    //Creates a destination that is not coupled to any port. Routers hand these out.
+    public static Destination destination(ViewableAtomic model, String port) {
+        return new Destination(model, port);
+    }
+
+    public void add(Object source, String sourcePort, ViewableAtomic destination, String destinationPort) {
+        Map<String, List<Destination>> ports = couplings.get(source);
+        if(ports == null) {
+            ports = new HashMap<>();
+            couplings.put(source, ports);
+        }
+
+        List<Destination> destinations = ports.get(sourcePort);
+        if(destinations == null) {
+            destinations = new ArrayList<>();
+            ports.put(sourcePort, destinations);
+        }
+
+        destinations.add(new Destination(destination, destinationPort));
+    }
+
+    //Routes the messages sent on a port of a source through a router, instead of to every destination coupled to the port
+    public void route(Object source, String sourcePort, Router router) {
+        Map<String, Router> ports = routers.get(source);
+        if(ports == null) {
+            ports = new HashMap<>();
+            routers.put(source, ports);
+        }
+
+        ports.put(sourcePort, router);
+    }
+
+    //Removes every coupling from a source
+    public void removeSource(Object source) {
+        couplings.remove(source);
+    }
+
+    //Removes the couplings from a port of a source to a model
+    public void removeDestination(Object source, String sourcePort, ViewableAtomic destination) {
+        List<Destination> destinations = destinations(source, sourcePort);
+        for(int i = destinations.size() - 1; i >= 0; i--) {
+            if(destinations.get(i).model == destination) {
+                destinations.remove(i);
+            }
+        }
+    }
+
+    //Returns the destinations of a port of a model, in the order in which they were coupled.
+    public List<Destination> destinations(Object source, String sourcePort) {
+        Map<String, List<Destination>> ports = couplings.get(source);
+        if(ports == null) {
+            return Collections.emptyList();
+        }
+
+        List<Destination> destinations = ports.get(sourcePort);
+        return destinations == null ? Collections.<Destination>emptyList() : destinations;
+    }
+
+    //Returns the destinations of a message sent on a port of a model. These are picked by the router of the port if it has one.
+    public List<Destination> destinations(Object source, String sourcePort, entity value) {
+        Map<String, Router> ports = routers.get(source);
+        Router router = ports == null ? null : ports.get(sourcePort);
+
+        return router == null ? destinations(source, sourcePort) : router.destinations(value);
+    }
+}
@@ -0,0 +1,179 @@
+package VivinPaliath;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A history of average efficiencies with a fixed footprint. Samples are summed and counted per sampling interval, and are rolled up at the
+ * same time into intervals that are 10 and 100 times as long. Each resolution keeps its most recent intervals in a ring of the same size, so
+ * a long run can be looked at in detail over the last few intervals, or as a whole at the coarsest resolution.
+ *
+ * The history has a single writer, and any number of readers that never block it. The writer makes the version odd while it updates the
+ * history, and even again when it is done. A reader copies what it needs and starts over if the version was odd or changed in the meantime.
+ */
+public class EfficiencyHistory implements Checkpointable {
+
+    //Number of resolutions, and how many intervals of a resolution make up one interval of the next
+    public static final int RESOLUTIONS = 3;
+    public static final int ROLLUP = 10;
+
+    //Each slot is the interval, the sum of its samples as the bits of a double, and the number of samples
+    private static final int SLOT_SIZE = 3;
+
+    private final int capacity;
+
+    //The ring of each resolution, and the number of slots that have ever been written to it. The latest slot is the one before the next
+    //slot that would be written.
+    private final AtomicLongArray[] slots = new AtomicLongArray[RESOLUTIONS];
+    private final AtomicLongArray written = new AtomicLongArray(RESOLUTIONS);
+
+    private final AtomicLong version = new AtomicLong();
+
+    public EfficiencyHistory(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity needs to be greater than 0");
+        }
+
+        this.capacity = capacity;
+        for(int i = 0; i < RESOLUTIONS; i++) {
+            slots[i] = new AtomicLongArray(capacity * SLOT_SIZE);
+        }
+    }
+
+    //Adds a sample to an interval of the finest resolution. Intervals must not go backwards, and only one thread may add samples.
+    public void add(int interval, double efficiency) {
+        long start = version.get();
+        version.set(start + 1);
+
+        long coarseInterval = interval;
+        for(int resolution = 0; resolution < RESOLUTIONS; resolution++) {
+            add(resolution, coarseInterval, efficiency);
+            coarseInterval = Math.floorDiv(coarseInterval, ROLLUP);
+        }
+
+        //Publishes everything that was written above
+        version.lazySet(start + 2);
+    }
+
+    private void add(int resolution, long interval, double efficiency) {
+        AtomicLongArray ring = slots[resolution];
+        long count = written.get(resolution);
+
+        int slot = slot(count - 1);
+        if(count > 0 && ring.get(slot) == interval) {
+            ring.lazySet(slot + 1, Double.doubleToRawLongBits(Double.longBitsToDouble(ring.get(slot + 1)) + efficiency));
+            ring.lazySet(slot + 2, ring.get(slot + 2) + 1);
+        } else {
+            slot = slot(count);
+            ring.lazySet(slot, interval);
+            ring.lazySet(slot + 1, Double.doubleToRawLongBits(efficiency));
+            ring.lazySet(slot + 2, 1);
+            written.lazySet(resolution, count + 1);
+        }
+    }
+
+    //Copies the latest intervals of a resolution and their averages, oldest first, and returns how many were copied. Copies as many as the
+    //arrays hold, or as many as the resolution has if that is fewer.
+    public int latest(int resolution, long[] intervals, double[] averages) {
+        int maximum = Math.min(Math.min(intervals.length, averages.length), capacity);
+
+        while(true) {
+            long start = version.get();
+            if((start & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+
+            AtomicLongArray ring = slots[resolution];
+            long count = written.get(resolution);
+            int copied = (int) Math.min(count, maximum);
+
+            for(int i = 0; i < copied; i++) {
+                int slot = slot(count - copied + i);
+                intervals[i] = ring.get(slot);
+                averages[i] = Double.longBitsToDouble(ring.get(slot + 1)) / ring.get(slot + 2);
+            }
+
+            if(version.get() == start) {
+                return copied;
+            }
+        }
+    }
+
+    //Average of the latest interval of a resolution, or 0 if there is none. Only meant for the writer.
+    double latestAverage(int resolution) {
+        long count = written.get(resolution);
+        if(count == 0) {
+            return 0;
+        }
+
+        int slot = slot(count - 1);
+        return Double.longBitsToDouble(slots[resolution].get(slot + 1)) / slots[resolution].get(slot + 2);
+    }
+
+    public boolean isEmpty() {
+        return written.get(0) == 0;
+    }
+
+    //Number of sampling intervals in one interval of a resolution
+    public static long getIntervalLength(int resolution) {
+        long length = 1;
+        for(int i = 0; i < resolution; i++) {
+            length *= ROLLUP;
+        }
+
+        return length;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int slot(long index) {
+        return (int) (index % capacity) * SLOT_SIZE;
+    }
+
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        for(int resolution = 0; resolution < RESOLUTIONS; resolution++) {
+            AtomicLongArray ring = slots[resolution];
+            long count = written.get(resolution);
+            int kept = (int) Math.min(count, capacity);
+
+            out.writeLong(count);
+            out.writeInt(kept);
+            for(int i = 0; i < kept; i++) {
+                int slot = slot(count - kept + i);
+                out.writeLong(ring.get(slot));
+                out.writeLong(ring.get(slot + 1));
+                out.writeLong(ring.get(slot + 2));
+            }
+        }
+    }
+
+    @Override
+    public void readCheckpoint(ByteBuffer in) {
+        long start = version.get();
+        version.set(start + 1);
+
+        for(int resolution = 0; resolution < RESOLUTIONS; resolution++) {
+            AtomicLongArray ring = slots[resolution];
+            long count = in.getLong();
+            int kept = in.getInt();
+
+            for(int i = 0; i < kept; i++) {
+                int slot = slot(count - kept + i);
+                ring.lazySet(slot, in.getLong());
+                ring.lazySet(slot + 1, in.getLong());
+                ring.lazySet(slot + 2, in.getLong());
+            }
+
+            written.lazySet(resolution, count);
+        }
+
+        version.lazySet(start + 2);
+    }
+}
@@ -0,0 +1,154 @@
+package VivinPaliath;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Aggregates the efficiency with which agents metabolize the target nutrient. Samples are averaged over sampling intervals, and the most
+ * recent intervals are kept at several resolutions in an EfficiencyHistory that the visualizer reads from. Both the transducer of the DEVS
+ * model and the lockstep engine record their samples here.
+ */
+public class EfficiencyStatistics implements Checkpointable {
+
+    //The nutrient whose metabolysis we are interested in measuring
+    private final Nutrient targetNutrient;
+
+    //Sampling interval, number of samples, and data related to average efficiencies, and efficient enzymes
+    private final int maximumSamples;
+    private final double samplingInterval;
+    private int lastInterval = -1;
+    private final EfficiencyHistory history;
+    private double maxEfficiency = 0;
+    private Enzyme maxEfficientEnzyme = null;
+    private boolean firstFunctionalEnzymeFound = false;
+    private double firstFunctionalEnzymeTime = -1;
+    private double peakAverageEfficiency = 0;
+    private double peakInterval = -1;
+
+    private final SimulationObserver observer;
+
+    public EfficiencyStatistics(Nutrient targetNutrient, int maximumSamples, double samplingInterval, SimulationObserver observer) {
+        this.targetNutrient = targetNutrient;
+        this.maximumSamples = maximumSamples;
+        this.samplingInterval = samplingInterval;
+        this.history = new EfficiencyHistory(maximumSamples);
+        this.observer = observer;
+    }
+
+    //Records the outcome of a feed. We only need to record information if we have a metabolysis result (the enzyme is not null), if the
+    //nutrient that was metabolized is the one we are interested in, and if the enzyme is functional or the agent came from a parent who was
+    //also in a cell with the target nutrient.
+    public void record(double clock, Nutrient nutrient, Enzyme enzyme, double efficiency, Nutrient parentCellNutrient) {
+        if(enzyme == null || !nutrient.equals(targetNutrient) || (efficiency <= 0 && !parentCellNutrient.equals(targetNutrient))) {
+            return;
+        }
+
+        int interval = (int) Math.round(clock / samplingInterval);
+
+        if(efficiency > maxEfficiency) {
+            maxEfficiency = efficiency;
+            maxEfficientEnzyme = enzyme;
+        }
+
+        //The history rolls the sample up into the coarser resolutions by itself. The visualizer reads from it without locking.
+        if(history.isEmpty()) {
+            history.add(interval, efficiency);
+        } else if(interval > lastInterval) {
+            completeInterval(lastInterval);
+            history.add(interval, efficiency);
+        } else if(interval == lastInterval) {
+            history.add(interval, efficiency);
+        }
+
+        lastInterval = interval;
+
+        if(!firstFunctionalEnzymeFound && efficiency > 0) {
+            firstFunctionalEnzymeFound = true;
+            firstFunctionalEnzymeTime = clock;
+            observer.firstFunctionalEnzymeFound(clock, enzyme, efficiency);
+        }
+    }
+
+    //Closes out an interval: updates the peak average efficiency and reports the average of the interval.
+    private void completeInterval(int interval) {
+        double averageEfficiency = history.latestAverage(0);
+
+        if(averageEfficiency > peakAverageEfficiency) {
+            peakAverageEfficiency = averageEfficiency;
+            peakInterval = interval;
+            observer.peakAverageEfficiencyFound(interval, interval * samplingInterval, averageEfficiency);
+        }
+
+        observer.intervalCompleted(interval, interval * samplingInterval, averageEfficiency);
+    }
+
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        out.writeInt(lastInterval);
+        history.writeCheckpoint(out);
+
+        out.writeDouble(maxEfficiency);
+        out.writeByte(maxEfficientEnzyme == null ? -1 : maxEfficientEnzyme.getSize());
+        out.writeInt(maxEfficientEnzyme == null ? 0 : maxEfficientEnzyme.getValue());
+        out.writeBoolean(firstFunctionalEnzymeFound);
+        out.writeDouble(firstFunctionalEnzymeTime);
+        out.writeDouble(peakAverageEfficiency);
+        out.writeDouble(peakInterval);
+    }
+
+    @Override
+    public void readCheckpoint(ByteBuffer in) {
+        lastInterval = in.getInt();
+        history.readCheckpoint(in);
+
+        maxEfficiency = in.getDouble();
+        int enzymeSize = in.get();
+        int enzymeValue = in.getInt();
+        maxEfficientEnzyme = enzymeSize < 0 ? null : new Enzyme(enzymeValue, enzymeSize);
+        firstFunctionalEnzymeFound = in.get() != 0;
+        firstFunctionalEnzymeTime = in.getDouble();
+        peakAverageEfficiency = in.getDouble();
+        peakInterval = in.getDouble();
+    }
+
+    public Nutrient getTargetNutrient() {
+        return targetNutrient;
+    }
+
+    public int getMaximumSamples() {
+        return maximumSamples;
+    }
+
+    public double getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public EfficiencyHistory getHistory() {
+        return history;
+    }
+
+    public double getMaxEfficiency() {
+        return maxEfficiency;
+    }
+
+    public Enzyme getMaxEfficientEnzyme() {
+        return maxEfficientEnzyme;
+    }
+
+    public boolean isFirstFunctionalEnzymeFound() {
+        return firstFunctionalEnzymeFound;
+    }
+
+    public double getFirstFunctionalEnzymeTime() {
+        return firstFunctionalEnzymeTime;
+    }
+
+    public double getPeakAverageEfficiency() {
+        return peakAverageEfficiency;
+    }
+
+    public double getPeakInterval() {
+        return peakInterval;
+    }
+}
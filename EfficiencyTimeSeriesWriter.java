@@ -0,0 +1,64 @@
+package VivinPaliath;
+
+import java.io.*;
+
+/**
+ * Observer that writes the average efficiency of each sampling interval to a CSV file.
+ */
+public class EfficiencyTimeSeriesWriter implements SimulationObserver, Closeable {
+
+    private final PrintWriter writer;
+
+    //Latest values seen by this observer. The batch runner uses these to evaluate its stop conditions.
+    private double latestAverageEfficiency = 0;
+    private double firstFunctionalEnzymeTime = -1;
+
+    public EfficiencyTimeSeriesWriter(File file) throws IOException {
+        this.writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        this.writer.println("interval,time,average_efficiency");
+    }
+
+    @Override
+    public void cellChanged(int row, int column) {
+    }
+
+    @Override
+    public void intervalCompleted(int interval, double time, double averageEfficiency) {
+        writer.println(interval + "," + time + "," + averageEfficiency);
+        latestAverageEfficiency = averageEfficiency;
+    }
+
+    @Override
+    public void firstFunctionalEnzymeFound(double time, Enzyme enzyme, double efficiency) {
+        firstFunctionalEnzymeTime = time;
+    }
+
+    @Override
+    public void peakAverageEfficiencyFound(int interval, double time, double averageEfficiency) {
+    }
+
+    @Override
+    public void cellReserved(double time, int row, int column) {
+    }
+
+    @Override
+    public void bacteriumBorn(double time, int row, int column) {
+    }
+
+    @Override
+    public void bacteriumDied(double time, int row, int column) {
+    }
+
+    public double getLatestAverageEfficiency() {
+        return latestAverageEfficiency;
+    }
+
+    public double getFirstFunctionalEnzymeTime() {
+        return firstFunctionalEnzymeTime;
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+}
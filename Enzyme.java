@@ -2,18 +2,44 @@ package VivinPaliath;
 
 public class Enzyme {
 
-    private String bitPattern = null;
+    public static final int MAXIMUM_SIZE = 16;
+
+    //The enzyme in packed form: the bits of the enzyme are the lowest `size` bits of the bit pattern.
+    private int bitPattern = 0;
+    private int size = 0;
 
     private Enzyme() {}
 
     public Enzyme(String bitPattern) {
-        if(bitPattern.replaceAll(" ", "").length() > 16) {
+        this(Genome.fromBitPattern(bitPattern));
+    }
+
+    private Enzyme(Genome genome) {
+        this(genome.bits(0, Math.min(genome.length(), 32)), genome.length());
+    }
+
+    public Enzyme(int bitPattern, int size) {
+        if(size < 0 || size > MAXIMUM_SIZE) {
             throw new IllegalArgumentException("Enzyme must be a 16-bit string");
         }
-        this.bitPattern = bitPattern.replaceAll(" ", "");
+        this.bitPattern = bitPattern & ((1 << size) - 1);
+        this.size = size;
     }
 
-    public String getBitPattern() {
+    public int getValue() {
         return this.bitPattern;
     }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public String getBitPattern() {
+        StringBuilder builder = new StringBuilder(size);
+        for(int i = size - 1; i >= 0; i--) {
+            builder.append(((bitPattern >>> i) & 1) == 1 ? '1' : '0');
+        }
+
+        return builder.toString();
+    }
 }
@@ -1,26 +1,39 @@
 package VivinPaliath;
 
 import GenCol.entity;
+import model.modeling.IODevs;
+import view.modeling.ViewableAtomic;
 import view.modeling.ViewableComponent;
 import view.modeling.ViewableDigraph;
 
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.function.ToLongFunction;
 
 /**
  * This is the coupled model that represents the entire experiment.
+ *
+ * In a sparse experiment, only the squares of the grid that hold an agent have a cell. The other squares are only a bit in the occupancy of
+ * the grid, and their nutrient follows from their column. The ParallelCoordinator creates a cell when a child is sent to a square, and
+ * removes it once its agent dies, so memory and work grow with the population instead of the size of the grid. A sparse experiment can be split
+ * between several processes, each of which only creates the cells of its own Partition.
  */
 public class Evolution extends ViewableDigraph {
 
-    //Random number generator
-    private final Random random = new Random(Double.doubleToLongBits(Math.random()));
+    //The configuration of this experiment. Every random stream in the model is derived from its seed, so two runs with the same parameters
+    //produce the same output.
+    private final ExperimentParameters parameters;
 
     //Maps direction to its appropriate delta.
     private static final Map<Direction, Delta> deltaToDirection = new HashMap<>();
 
-    //Maps direction to the appropriate output port on a cell
+    //Maps direction to the appropriate output port on a cell, and the name of that port back to the direction
     private static final Map<Direction, Cell.Port> directionToCellPort = new HashMap<>();
+    private static final Map<String, Direction> cellPortToDirection = new HashMap<>();
+
+    //Maps direction to the direction that points back from the neighbor in that direction
+    private static final Map<Direction, Direction> opposite = new HashMap<>();
 
     //Static block that initializes the above maps.
     static {
@@ -41,6 +54,19 @@ public class Evolution extends ViewableDigraph {
         directionToCellPort.put(Direction.SW, Cell.Port.OUTPUT_SW);
         directionToCellPort.put(Direction.S, Cell.Port.OUTPUT_S);
         directionToCellPort.put(Direction.SE, Cell.Port.OUTPUT_SE);
+
+        for(Map.Entry<Direction, Cell.Port> entry : directionToCellPort.entrySet()) {
+            cellPortToDirection.put(entry.getValue().portName(), entry.getKey());
+        }
+
+        for(Direction direction : deltaToDirection.keySet()) {
+            for(Direction other : deltaToDirection.keySet()) {
+                if(deltaToDirection.get(other).getDr() == -deltaToDirection.get(direction).getDr() &&
+                        deltaToDirection.get(other).getDc() == -deltaToDirection.get(direction).getDc()) {
+                    opposite.put(direction, other);
+                }
+            }
+        }
     }
 
     //Enum that represents the ports on this model
@@ -59,90 +85,482 @@ public class Evolution extends ViewableDigraph {
         }
     }
 
+    //The transducer that records statistics for this experiment, and the arbiters that arbitrate occupancy for each tile of the grid
+    private Transducer transducer;
+    private Arbiter[] arbiters;
+
+    //The occupancy of the grid, shared by the arbiters
+    private OccupancyBitboard occupancy;
+
+    //The size of the grid and its division into tiles
+    private final int rows;
+    private final int columns;
+    private Tiling tiling;
+
+    //The cells of a sparse experiment that currently exist, keyed by the row-major index of their square. Empty in a dense experiment, whose
+    //cells are all models from the start.
+    private final Map<Integer, Cell> sparseCells = new HashMap<>();
+
+    //Transitions and lifecycle steps of the cells that have been removed from a sparse experiment
+    private long removedInternalEvents = 0;
+    private long removedExternalEvents = 0;
+    private long removedLifecycleSteps = 0;
+
+    //The atomic models in this experiment and the couplings between them, recorded so that the ParallelCoordinator can route messages
+    private final List<ViewableAtomic> models = new ArrayList<>();
+    private final Couplings couplings = new Couplings();
+
+    //The destination of the query responses of each cell, by the address of the cell. A response is only routed to the cell that it answers,
+    //instead of to every cell of the tile.
+    private final Map<CellAddress, List<Couplings.Destination>> responseDestinations = new IdentityHashMap<>();
+
+    //Observers that follow the progress of the simulation
+    private final SimulationObservers observers = new SimulationObservers();
+
+    //Counters of the messages, reservations, births and deaths in the experiment, which are published through JMX
+    private final SimulationMetrics metrics = new SimulationMetrics();
+
+    //The genotypes of all the agents in the experiment
+    private final GenotypeRegistry genotypes = new GenotypeRegistry();
+
+    //The lineage of all the agents in the experiment, or null if it is not recorded. Recording it is only worth its cost when it is reported.
+    private final LineageRecorder lineage;
+
+    //How much nutrient is left in each square, or null if nutrients never run out. The ParallelCoordinator diffuses it between instants.
+    private final NutrientField field;
+
     public Evolution() {
+        this(true);
+    }
+
+    public Evolution(boolean visualize) {
+        this(visualize, 10, 10, Double.doubleToLongBits(Math.random()));
+    }
+
+    public Evolution(boolean visualize, int tileRows, int tileColumns, long seed) {
+        this(visualize, ExperimentParameters.builder().tileRows(tileRows).tileColumns(tileColumns).seed(seed).build());
+    }
+
+    //Creates the experiment. When visualize is false no Swing components are created, which lets the model run on headless machines. The
+    //grid is divided into tiles of the size given by the parameters, and each tile gets its own arbiter.
+    public Evolution(boolean visualize, ExperimentParameters parameters) {
+        this(visualize, parameters, null);
+    }
+
+    //Creates the part of a sparse experiment that a partition simulates. Only the founders in the squares of the partition get cells. The
+    //transducer and every arbiter are created all the same, so that models keep their ranks, but the ParallelCoordinator only runs the ones
+    //that the partition owns.
+    public Evolution(boolean visualize, ExperimentParameters parameters, Partition partition) {
+        this(visualize, parameters, partition, false);
+    }
+
+    //Creates the experiment, or the part of it that a partition simulates, recording the lineage of every agent if asked to
+    public Evolution(boolean visualize, ExperimentParameters parameters, Partition partition, boolean recordLineage) {
+        this(visualize, parameters, partition, recordLineage, false);
+    }
+
+    //Creates a dense experiment in which every square holds a founder, whatever its nutrient and however many bacteria the parameters ask
+    //for. Used by benchmarks that need a grid without room for children.
+    static Evolution filled(ExperimentParameters parameters) {
+        return new Evolution(false, parameters, null, false, true);
+    }
+
+    private Evolution(boolean visualize, ExperimentParameters parameters, Partition partition, boolean recordLineage, boolean filled) {
         super("Evolution");
 
+        this.parameters = parameters;
+        this.lineage = recordLineage ? new LineageRecorder(parameters.getTargetNutrient()) : null;
+        this.field = NutrientField.create(parameters);
+        observers.add(metrics);
+        long seed = parameters.getSeed();
+        RandomStream random = new RandomStream(seed, RandomStream.PLACEMENT_STREAM);
+
         //Set the rows, columns, and number of bacteria.
-        int rows = 30;
-        int columns = 30;
-        int numBacteria = 50;
+        this.rows = parameters.getRows();
+        this.columns = parameters.getColumns();
+        int numBacteria = parameters.getNumBacteria();
+        boolean sparse = parameters.isSparse();
+
+        if(sparse && visualize) {
+            throw new IllegalArgumentException("A sparse experiment cannot be visualized");
+        }
+
+        if(partition != null && !sparse) {
+            throw new IllegalArgumentException("Only a sparse experiment can be partitioned");
+        }
+
+        if(partition != null && field != null) {
+            throw new IllegalArgumentException("An experiment whose nutrients run out cannot be partitioned");
+        }
 
         addInport(Port.START.portName);
         addTestInput(Port.START.portName, new entity("start"));
 
         //Define the nutrients used
-        Nutrient first = new Nutrient("1100 0110 1100 0111");
-        Nutrient second = new Nutrient("0011 1001 0011 1000");
+        Nutrient first = parameters.getFirstNutrient();
+        Nutrient second = parameters.getTargetNutrient();
 
         List<Nutrient> nutrients = new ArrayList<>();
         nutrients.add(first);
         nutrients.add(second);
 
-        //Define the properties of all, initial bacterial agents.
-        int lifespan = 20;
-        int freeEnergy = 20000;
-        int reproductionThreshold = 50000;
-        int metabolicEnergy = 255;
-        List<Enzyme> enzymes = Collections.singletonList(new Enzyme("0011 1001 0011 1000"));
-
-        //Initialize the grid. Here we also take care of the seeding the grid with bacteria at random locations
-        Cell[][] cells = new Cell[rows][columns];
-        CellStatus[][] cellStatus = new CellStatus[rows][columns];
-        for(int i = 0; i < rows; i++) {
+        //Initialize the grid. Here we also take care of the seeding the grid with bacteria at random locations. A sparse experiment only
+        //keeps the agents, which get their cells once the arbiters exist.
+        Cell[][] cells = sparse ? null : new Cell[rows][columns];
+        CellStatus[][] cellStatus = sparse ? null : new CellStatus[rows][columns];
+        Map<Integer, Bacterium> founders = new LinkedHashMap<>();
+        for(int i = 0; i < rows && !(sparse && numBacteria == 0); i++) {
             for(int j = 0; j < columns; j++) {
                 Nutrient nutrient = (j >= (columns / (nutrients.size()))) ? second : first;
 
                 Bacterium bacterium = null;
-                if(numBacteria > 0 && nutrient == first) {
-                    bacterium = random.nextInt(4) == 3 ? new Bacterium(lifespan, freeEnergy, reproductionThreshold, metabolicEnergy, enzymes) : null;
+                if(filled && !sparse) {
+                    bacterium = parameters.createFounder();
+                } else if(numBacteria > 0 && nutrient == first) {
+                    bacterium = random.nextInt(4) == 3 ? parameters.createFounder() : null;
 
                     if(bacterium != null) {
                         numBacteria--;
                     }
                 }
 
-                if(bacterium != null) {
+                if(sparse) {
+                    if(bacterium != null && (partition == null || partition.ownsSquare(i, j))) {
+                        founders.put((i * columns) + j, bacterium);
+                    }
+                } else if(bacterium != null) {
                     cellStatus[i][j] = new CellStatus(true, nutrient);
-                    cells[i][j] = new Cell(i, j, nutrient, bacterium);
+                    cells[i][j] = new Cell(i, j, nutrient, bacterium, new RandomStream(seed, (i * columns) + j), parameters.getMutation(), observers, genotypes, lineage, field);
                 } else {
                     cellStatus[i][j] = new CellStatus(false, nutrient);
-                    cells[i][j] = new Cell(i, j, nutrient, null);
+                    cells[i][j] = new Cell(i, j, nutrient, null, new RandomStream(seed, (i * columns) + j), parameters.getMutation(), observers, genotypes, lineage, field);
                 }
             }
         }
 
         //Sampling interval and samples for the transducer
-        int maximumSamples = 50;
-        double samplingInterval = 10;
-        Transducer transducer = new Transducer(cellStatus, second, maximumSamples, samplingInterval);
-        add(transducer);
+        EfficiencyStatistics statistics = new EfficiencyStatistics(second, parameters.getMaximumSamples(), parameters.getSamplingInterval(), observers);
+        transducer = new Transducer(cellStatus, statistics, metrics);
+        if(visualize) {
+            attachVisualization();
+        }
+        addModel(transducer);
+
+        //Create an arbiter for each tile. The arbiters share the occupancy of the grid, each one looking after the cells of its own tile.
+        occupancy = sparse ? new OccupancyBitboard(rows, columns) : new OccupancyBitboard(cellStatus);
+        tiling = new Tiling(rows, columns, parameters.getTileRows(), parameters.getTileColumns());
+        arbiters = new Arbiter[tiling.tileCount()];
+        for(int tile = 0; tile < arbiters.length; tile++) {
+            arbiters[tile] = new Arbiter(tile, tiling, cellStatus, occupancy, observers, new RandomStream(seed, RandomStream.ARBITER_STREAMS - tile), metrics);
+            addModel(arbiters[tile]);
+        }
 
-        for(int i = 0; i < rows; i++) {
+        for(int i = 0; i < rows && !sparse; i++) {
             for(int j = 0; j < columns; j++) {
-                add(cells[i][j]);
+                addModel(cells[i][j]);
             }
         }
 
-        //Couple the cells to each other and to the transducer
-        for(int i = 0; i < rows; i++) {
+        //Couple each arbiter to the arbiters of the tiles that border its tile, so that they can reserve cells for each other
+        for(Arbiter arbiter : arbiters) {
+            Set<Integer> neighboringTiles = new TreeSet<>();
+            int firstRow = tiling.firstRow(arbiter.getTile());
+            int firstColumn = tiling.firstColumn(arbiter.getTile());
+
+            for(int i = firstRow - 1; i <= firstRow + tiling.rowsIn(arbiter.getTile()); i++) {
+                for(int j = firstColumn - 1; j <= firstColumn + tiling.columnsIn(arbiter.getTile()); j++) {
+                    neighboringTiles.add(tiling.tileOf(wrap(i, rows), wrap(j, columns)));
+                }
+            }
+            neighboringTiles.remove(arbiter.getTile());
+
+            for(int neighboringTile : neighboringTiles) {
+                couple(arbiter, Arbiter.Port.RESERVATION_OUT.portName(), arbiters[neighboringTile], Arbiter.Port.RESERVATION_IN.portName());
+            }
+
+            couplings.route(arbiter, Arbiter.Port.QUERY_RESPONSE.portName(), value -> responseDestinations.get(((QueryResponse) value).getCellAddress()));
+        }
+
+        //Couple the cells to each other, to the arbiter of their tile, and to the transducer. The cells of a sparse experiment are coupled as
+        //they are created.
+        for(Map.Entry<Integer, Bacterium> founder : founders.entrySet()) {
+            occupancy.occupy(founder.getKey() / columns, founder.getKey() % columns);
+            createCell(founder.getKey() / columns, founder.getKey() % columns, founder.getValue(), 0);
+        }
+
+        for(int i = 0; i < rows && !sparse; i++) {
             for(int j = 0; j < columns; j++) {
 
                 Cell cell = cells[i][j];
-                addCoupling(this, Port.START.portName, cell, Cell.Port.START.portName());
-                addCoupling(cell, Cell.Port.CELL_STATUS.portName(), transducer, Transducer.Port.IN.portName());
-                addCoupling(cell, Cell.Port.QUERY.portName(), transducer, Transducer.Port.IN.portName());
-                addCoupling(transducer, Transducer.Port.QUERY_RESPONSE.portName(), cell, Cell.Port.QUERY_RESPONSE.portName());
+                Arbiter arbiter = arbiters[tiling.tileOf(i, j)];
+                couple(this, Port.START.portName, cell, Cell.Port.START.portName());
+                couple(cell, Cell.Port.CELL_STATUS.portName(), arbiter, Arbiter.Port.IN.portName());
+                couple(cell, Cell.Port.QUERY.portName(), arbiter, Arbiter.Port.IN.portName());
+                addCoupling(arbiter, Arbiter.Port.QUERY_RESPONSE.portName(), cell, Cell.Port.QUERY_RESPONSE.portName());
+                addResponseDestination(cell);
+                couple(cell, Cell.Port.FEED_STATUS.portName(), transducer, Transducer.Port.IN.portName());
 
                 for(Direction direction : deltaToDirection.keySet()) {
                     Delta delta = deltaToDirection.get(direction);
 
                     Cell neighbor = cells[wrap(i + delta.getDr(), rows)][wrap(j + delta.getDc(), columns)];
-                    addCoupling(cell, directionToCellPort.get(direction).portName(), neighbor, Cell.Port.INPUT_BACTERIUM.portName());
+                    couple(cell, directionToCellPort.get(direction).portName(), neighbor, Cell.Port.INPUT_BACTERIUM.portName());
                 }
             }
         }
     }
 
+    //Creates and couples the cell of a square in a sparse experiment. The random stream of a cell starts at a position that is given by the
+    //time it is created, so that a new cell in a square does not repeat the draws of the cells that were there before it: a square gets at
+    //most one cell per unit of time, and no agent draws anywhere near 2^32 values.
+    private Cell createCell(int row, int column, Bacterium bacterium, double time) {
+        int square = (row * columns) + column;
+        RandomStream random = new RandomStream(parameters.getSeed(), square);
+        random.reset(random.getKey(), ((long) time) << 32);
+
+        Cell cell = new Cell(row, column, nutrientAt(column), bacterium, random, parameters.getMutation(), observers, genotypes, lineage, field);
+        Arbiter arbiter = arbiters[tiling.tileOf(row, column)];
+
+        if(bacterium != null) {
+            couplings.add(this, Port.START.portName(), cell, Cell.Port.START.portName());
+        }
+        couplings.add(cell, Cell.Port.CELL_STATUS.portName(), arbiter, Arbiter.Port.IN.portName());
+        couplings.add(cell, Cell.Port.QUERY.portName(), arbiter, Arbiter.Port.IN.portName());
+        addResponseDestination(cell);
+        couplings.add(cell, Cell.Port.FEED_STATUS.portName(), transducer, Transducer.Port.IN.portName());
+
+        for(Direction direction : deltaToDirection.keySet()) {
+            Cell neighbor = sparseCells.get(neighborOf(row, column, direction));
+            if(neighbor != null) {
+                couplings.add(cell, directionToCellPort.get(direction).portName(), neighbor, Cell.Port.INPUT_BACTERIUM.portName());
+                couplings.add(neighbor, directionToCellPort.get(opposite.get(direction)).portName(), cell, Cell.Port.INPUT_BACTERIUM.portName());
+            }
+        }
+
+        sparseCells.put(square, cell);
+        return cell;
+    }
+
+    //The rank of the cell that a port of a cell sends children to, or -1 if the port does not lead to another cell. In a sparse experiment,
+    //that cell need not exist yet.
+    int neighborRank(Cell cell, String port) {
+        Direction direction = cellPortToDirection.get(port);
+        if(direction == null) {
+            return -1;
+        }
+
+        return 1 + arbiters.length + neighborOf(cell.getAddress().getRow(), cell.getAddress().getColumn(), direction);
+    }
+
+    //Removes a cell from a sparse experiment, along with every coupling to and from it
+    void removeCell(Cell cell) {
+        int row = cell.getAddress().getRow();
+        int column = cell.getAddress().getColumn();
+
+        removedInternalEvents += cell.getInternalEvents();
+        removedExternalEvents += cell.getExternalEvents();
+        removedLifecycleSteps += cell.getLifecycleSteps();
+
+        couplings.removeSource(cell);
+        couplings.removeDestination(this, Port.START.portName(), cell);
+        responseDestinations.remove(cell.getAddress());
+        for(Direction direction : deltaToDirection.keySet()) {
+            Cell neighbor = sparseCells.get(neighborOf(row, column, direction));
+            if(neighbor != null) {
+                couplings.removeDestination(neighbor, directionToCellPort.get(opposite.get(direction)).portName(), cell);
+            }
+        }
+
+        sparseCells.remove((row * columns) + column);
+    }
+
+    //Row-major index of the neighbor of a square in a direction
+    private int neighborOf(int row, int column, Direction direction) {
+        Delta delta = deltaToDirection.get(direction);
+        return (wrap(row + delta.getDr(), rows) * columns) + wrap(column + delta.getDc(), columns);
+    }
+
+    //The nutrient in a column of the grid. The first nutrient is in the left half, and the target nutrient in the right half.
+    private Nutrient nutrientAt(int column) {
+        return column >= columns / 2 ? parameters.getTargetNutrient() : parameters.getFirstNutrient();
+    }
+
+    //The rank of a model: its index in the models of a dense experiment with the same parameters. The transducer comes first, then the
+    //arbiters, then the cells in row-major order.
+    int getRank(ViewableAtomic model) {
+        if(model instanceof Cell) {
+            CellAddress address = ((Cell) model).getAddress();
+            return 1 + arbiters.length + (address.getRow() * columns) + address.getColumn();
+        }
+
+        return models.indexOf(model);
+    }
+
+    //Number of models in a dense experiment with the same parameters
+    int getRankCount() {
+        return 1 + arbiters.length + (rows * columns);
+    }
+
+    //The model of a rank. In a sparse experiment, a cell is created for the rank if it has none.
+    ViewableAtomic modelOfRank(int rank, double time) {
+        int square = rank - 1 - arbiters.length;
+        if(!parameters.isSparse() || square < 0) {
+            return models.get(rank);
+        }
+
+        Cell cell = sparseCells.get(square);
+        return cell != null ? cell : createCell(square / columns, square % columns, null, time);
+    }
+
+    private void addModel(ViewableAtomic model) {
+        add(model);
+        models.add(model);
+    }
+
+    private void couple(IODevs source, String sourcePort, ViewableAtomic destination, String destinationPort) {
+        addCoupling(source, sourcePort, destination, destinationPort);
+        couplings.add(source, sourcePort, destination, destinationPort);
+    }
+
+    private void addResponseDestination(Cell cell) {
+        responseDestinations.put(cell.getAddress(), Collections.singletonList(Couplings.destination(cell, Cell.Port.QUERY_RESPONSE.portName())));
+    }
+
+    //Opens a window that renders the grid and the average efficiencies as the simulation progresses.
+    public void attachVisualization() {
+        attachVisualization(Visualization.DEFAULT_FRAME_RATE);
+    }
+
+    //Opens the window, redrawing it at most the given number of times per second.
+    public void attachVisualization(int framesPerSecond) {
+        if(parameters.isSparse()) {
+            throw new IllegalStateException("A sparse experiment cannot be visualized");
+        }
+
+        EfficiencyStatistics statistics = transducer.getStatistics();
+        addObserver(Visualization.show(statistics.getMaximumSamples(), transducer.getVisualizationContext(), framesPerSecond));
+    }
+
+    public void addObserver(SimulationObserver observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(SimulationObserver observer) {
+        observers.remove(observer);
+    }
+
+    public GenotypeRegistry getGenotypes() {
+        return genotypes;
+    }
+
+    //The lineage of the experiment, or null if it is not recorded
+    public LineageRecorder getLineage() {
+        return lineage;
+    }
+
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    //How much nutrient is left in each square, or null if nutrients never run out
+    public NutrientField getNutrientField() {
+        return field;
+    }
+
+    public long getSeed() {
+        return parameters.getSeed();
+    }
+
+    public ExperimentParameters getParameters() {
+        return parameters;
+    }
+
+    //Number of cells that currently have a live agent
+    public int getPopulation() {
+        return (int) sum(cell -> cell.getBacterium() != null ? 1 : 0);
+    }
+
+    //Number of cells in each phase, indexed by the ordinal of the phase in Cell.Phase
+    public int[] countCellsByPhase() {
+        int[] counts = new int[Cell.Phase.values().length];
+        for(ViewableAtomic model : models) {
+            if(model instanceof Cell) {
+                countPhase((Cell) model, counts);
+            }
+        }
+
+        for(Cell cell : sparseCells.values()) {
+            countPhase(cell, counts);
+        }
+
+        return counts;
+    }
+
+    private static void countPhase(Cell cell, int[] counts) {
+        for(Cell.Phase phase : Cell.Phase.values()) {
+            if(cell.phaseIs(phase.phaseName())) {
+                counts[phase.ordinal()]++;
+                return;
+            }
+        }
+    }
+
+    //Number of internal and external transitions that the cells have made, and number of lifecycle steps that their agents have taken
+    public long getInternalCellEvents() {
+        return removedInternalEvents + sum(Cell::getInternalEvents);
+    }
+
+    public long getExternalCellEvents() {
+        return removedExternalEvents + sum(Cell::getExternalEvents);
+    }
+
+    public long getLifecycleSteps() {
+        return removedLifecycleSteps + sum(Cell::getLifecycleSteps);
+    }
+
+    //Sums a value over the cells that currently exist
+    private long sum(ToLongFunction<Cell> value) {
+        long sum = 0;
+        for(ViewableAtomic model : models) {
+            if(model instanceof Cell) {
+                sum += value.applyAsLong((Cell) model);
+            }
+        }
+
+        for(Cell cell : sparseCells.values()) {
+            sum += value.applyAsLong(cell);
+        }
+
+        return sum;
+    }
+
+    //The cells that are occupied by an agent or reserved for a child
+    public OccupancyBitboard getOccupancy() {
+        return occupancy;
+    }
+
+    public Transducer getTransducer() {
+        return transducer;
+    }
+
+    public Arbiter[] getArbiters() {
+        return arbiters;
+    }
+
+    //The atomic models of the experiment. In a sparse experiment, these are only the transducer and the arbiters.
+    public List<ViewableAtomic> getModels() {
+        return models;
+    }
+
+    //The cells of a sparse experiment that currently exist
+    public Collection<Cell> getSparseCells() {
+        return sparseCells.values();
+    }
+
+    public Couplings getCouplings() {
+        return couplings;
+    }
+
     //Helper function to implement the wrapping of indices.
     private int wrap(int index, int size) {
         if(index < 0) {
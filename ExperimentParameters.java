@@ -0,0 +1,418 @@
+package VivinPaliath;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The configuration of a single experiment: the size of the grid, the initial bacterial agents, the nutrients, how mutations happen and the
+ * seed of the run. The defaults are the values that Evolution has always used.
+ *
+ * A sparse experiment only has cell models for the squares of the grid that hold an agent, which lets grids far larger than the population
+ * be simulated. It needs the ParallelCoordinator, and cannot be visualized.
+ *
+ * The nutrients never run out unless an uptake is given, in which case the experiment has a NutrientField that agents deplete as they feed
+ * and that diffusion and inflow replenish.
+ */
+public final class ExperimentParameters {
+
+    //Size of the grid and the size of the tiles that the arbiters are responsible for
+    private final int rows;
+    private final int columns;
+    private final int tileRows;
+    private final int tileColumns;
+    private final boolean sparse;
+
+    //Number and properties of the initial bacterial agents
+    private final int numBacteria;
+    private final int lifespan;
+    private final int freeEnergy;
+    private final int reproductionThreshold;
+    private final int metabolicEnergy;
+    private final List<Enzyme> enzymes;
+
+    //The nutrient in the left half of the grid, where the initial agents live, and the target nutrient in the right half
+    private final Nutrient firstNutrient;
+    private final Nutrient targetNutrient;
+
+    //Sampling interval and samples for the efficiency statistics
+    private final int maximumSamples;
+    private final double samplingInterval;
+
+    //How nutrients are depleted and replenished. A nutrient uptake of 0 means that nutrients never run out.
+    private final double nutrientUptake;
+    private final double nutrientDiffusion;
+    private final double nutrientInflow;
+
+    private final MutationParameters mutation;
+    private final long seed;
+
+    private ExperimentParameters(Builder builder) {
+        this.rows = builder.rows;
+        this.columns = builder.columns;
+        this.tileRows = builder.tileRows;
+        this.tileColumns = builder.tileColumns;
+        this.sparse = builder.sparse;
+        this.numBacteria = builder.numBacteria;
+        this.lifespan = builder.lifespan;
+        this.freeEnergy = builder.freeEnergy;
+        this.reproductionThreshold = builder.reproductionThreshold;
+        this.metabolicEnergy = builder.metabolicEnergy;
+        this.enzymes = Collections.unmodifiableList(new ArrayList<>(builder.enzymes));
+        this.firstNutrient = builder.firstNutrient;
+        this.targetNutrient = builder.targetNutrient;
+        this.maximumSamples = builder.maximumSamples;
+        this.samplingInterval = builder.samplingInterval;
+        this.nutrientUptake = builder.nutrientUptake;
+        this.nutrientDiffusion = builder.nutrientDiffusion;
+        this.nutrientInflow = builder.nutrientInflow;
+        this.mutation = new MutationParameters(builder.mutationRate, builder.mutationSizes);
+        this.seed = builder.seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    //Creates one of the initial bacterial agents
+    public Bacterium createFounder() {
+        return new Bacterium(lifespan, freeEnergy, reproductionThreshold, metabolicEnergy, enzymes);
+    }
+
+    //Writes the parameters to a checkpoint, so that the experiment can be recreated when the checkpoint is restored
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(rows);
+        out.writeInt(columns);
+        out.writeInt(tileRows);
+        out.writeInt(tileColumns);
+        out.writeBoolean(sparse);
+        out.writeInt(numBacteria);
+        out.writeInt(lifespan);
+        out.writeInt(freeEnergy);
+        out.writeInt(reproductionThreshold);
+        out.writeInt(metabolicEnergy);
+
+        out.writeInt(enzymes.size());
+        for(Enzyme enzyme : enzymes) {
+            out.writeInt(enzyme.getValue());
+            out.writeByte(enzyme.getSize());
+        }
+
+        out.writeInt(firstNutrient.getValue());
+        out.writeByte(firstNutrient.getSize());
+        out.writeInt(targetNutrient.getValue());
+        out.writeByte(targetNutrient.getSize());
+
+        out.writeInt(maximumSamples);
+        out.writeDouble(samplingInterval);
+
+        int[] mutationSizes = mutation.getSizeDistribution();
+        out.writeDouble(mutation.getRate());
+        out.writeInt(mutationSizes.length);
+        for(int mutationSize : mutationSizes) {
+            out.writeInt(mutationSize);
+        }
+
+        out.writeLong(seed);
+
+        out.writeDouble(nutrientUptake);
+        out.writeDouble(nutrientDiffusion);
+        out.writeDouble(nutrientInflow);
+    }
+
+    public static ExperimentParameters readFrom(ByteBuffer in) {
+        Builder builder = builder()
+                .rows(in.getInt())
+                .columns(in.getInt())
+                .tileRows(in.getInt())
+                .tileColumns(in.getInt())
+                .sparse(in.get() != 0)
+                .bacteria(in.getInt())
+                .lifespan(in.getInt())
+                .freeEnergy(in.getInt())
+                .reproductionThreshold(in.getInt())
+                .metabolicEnergy(in.getInt());
+
+        List<Enzyme> enzymes = new ArrayList<>();
+        int numEnzymes = in.getInt();
+        for(int i = 0; i < numEnzymes; i++) {
+            enzymes.add(new Enzyme(in.getInt(), in.get()));
+        }
+
+        builder.enzymes(enzymes)
+                .firstNutrient(new Nutrient(in.getInt(), in.get()))
+                .targetNutrient(new Nutrient(in.getInt(), in.get()))
+                .maximumSamples(in.getInt())
+                .samplingInterval(in.getDouble())
+                .mutationRate(in.getDouble());
+
+        int[] mutationSizes = new int[in.getInt()];
+        for(int i = 0; i < mutationSizes.length; i++) {
+            mutationSizes[i] = in.getInt();
+        }
+
+        return builder.mutationSizes(mutationSizes)
+                .seed(in.getLong())
+                .nutrientUptake(in.getDouble())
+                .nutrientDiffusion(in.getDouble())
+                .nutrientInflow(in.getDouble())
+                .build();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getTileRows() {
+        return tileRows;
+    }
+
+    public int getTileColumns() {
+        return tileColumns;
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    public int getNumBacteria() {
+        return numBacteria;
+    }
+
+    public int getLifespan() {
+        return lifespan;
+    }
+
+    public int getFreeEnergy() {
+        return freeEnergy;
+    }
+
+    public int getReproductionThreshold() {
+        return reproductionThreshold;
+    }
+
+    public int getMetabolicEnergy() {
+        return metabolicEnergy;
+    }
+
+    public List<Enzyme> getEnzymes() {
+        return enzymes;
+    }
+
+    public Nutrient getFirstNutrient() {
+        return firstNutrient;
+    }
+
+    public Nutrient getTargetNutrient() {
+        return targetNutrient;
+    }
+
+    public int getMaximumSamples() {
+        return maximumSamples;
+    }
+
+    public double getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    //Whether nutrients are depleted by feeding, so that the experiment needs a NutrientField
+    public boolean hasNutrientField() {
+        return nutrientUptake > 0;
+    }
+
+    public double getNutrientUptake() {
+        return nutrientUptake;
+    }
+
+    public double getNutrientDiffusion() {
+        return nutrientDiffusion;
+    }
+
+    public double getNutrientInflow() {
+        return nutrientInflow;
+    }
+
+    public MutationParameters getMutation() {
+        return mutation;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public static final class Builder {
+
+        private int rows = 30;
+        private int columns = 30;
+        private int tileRows = 10;
+        private int tileColumns = 10;
+        private boolean sparse = false;
+        private int numBacteria = 50;
+        private int lifespan = 20;
+        private int freeEnergy = 20000;
+        private int reproductionThreshold = 50000;
+        private int metabolicEnergy = 255;
+        private List<Enzyme> enzymes = Collections.singletonList(new Enzyme("0011 1001 0011 1000"));
+        private Nutrient firstNutrient = new Nutrient("1100 0110 1100 0111");
+        private Nutrient targetNutrient = new Nutrient("0011 1001 0011 1000");
+        private int maximumSamples = 50;
+        private double samplingInterval = 10;
+        private double nutrientUptake = 0;
+        private double nutrientDiffusion = 0;
+        private double nutrientInflow = 0;
+        private double mutationRate = MutationParameters.DEFAULT.getRate();
+        private int[] mutationSizes = MutationParameters.DEFAULT.getSizeDistribution();
+        private long seed = Double.doubleToLongBits(Math.random());
+
+        private Builder() {}
+
+        public Builder rows(int rows) {
+            this.rows = rows;
+            return this;
+        }
+
+        public Builder columns(int columns) {
+            this.columns = columns;
+            return this;
+        }
+
+        public Builder tileRows(int tileRows) {
+            this.tileRows = tileRows;
+            return this;
+        }
+
+        public Builder tileColumns(int tileColumns) {
+            this.tileColumns = tileColumns;
+            return this;
+        }
+
+        public Builder sparse(boolean sparse) {
+            this.sparse = sparse;
+            return this;
+        }
+
+        public Builder bacteria(int numBacteria) {
+            this.numBacteria = numBacteria;
+            return this;
+        }
+
+        public Builder lifespan(int lifespan) {
+            this.lifespan = lifespan;
+            return this;
+        }
+
+        public Builder freeEnergy(int freeEnergy) {
+            this.freeEnergy = freeEnergy;
+            return this;
+        }
+
+        public Builder reproductionThreshold(int reproductionThreshold) {
+            this.reproductionThreshold = reproductionThreshold;
+            return this;
+        }
+
+        public Builder metabolicEnergy(int metabolicEnergy) {
+            this.metabolicEnergy = metabolicEnergy;
+            return this;
+        }
+
+        public Builder enzymes(List<Enzyme> enzymes) {
+            this.enzymes = enzymes;
+            return this;
+        }
+
+        public Builder firstNutrient(Nutrient firstNutrient) {
+            this.firstNutrient = firstNutrient;
+            return this;
+        }
+
+        public Builder targetNutrient(Nutrient targetNutrient) {
+            this.targetNutrient = targetNutrient;
+            return this;
+        }
+
+        public Builder maximumSamples(int maximumSamples) {
+            this.maximumSamples = maximumSamples;
+            return this;
+        }
+
+        public Builder samplingInterval(double samplingInterval) {
+            this.samplingInterval = samplingInterval;
+            return this;
+        }
+
+        //Fraction of the nutrient in its square that an agent takes up when it feeds
+        public Builder nutrientUptake(double nutrientUptake) {
+            this.nutrientUptake = nutrientUptake;
+            return this;
+        }
+
+        //Fraction of the difference in concentration with each of the four neighbors of a square that is exchanged per unit of time
+        public Builder nutrientDiffusion(double nutrientDiffusion) {
+            this.nutrientDiffusion = nutrientDiffusion;
+            return this;
+        }
+
+        //Fraction of the shortfall from fresh medium that flows into each square per unit of time
+        public Builder nutrientInflow(double nutrientInflow) {
+            this.nutrientInflow = nutrientInflow;
+            return this;
+        }
+
+        public Builder mutationRate(double mutationRate) {
+            this.mutationRate = mutationRate;
+            return this;
+        }
+
+        //Percentage of mutations that modify 1, 2, 3 ... bits
+        public Builder mutationSizes(int[] mutationSizes) {
+            this.mutationSizes = mutationSizes;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public ExperimentParameters build() {
+            if(rows <= 0 || columns <= 0) {
+                throw new IllegalArgumentException("The grid needs at least one row and one column");
+            }
+
+            if(tileRows <= 0 || tileColumns <= 0) {
+                throw new IllegalArgumentException("Tiles need at least one row and one column");
+            }
+
+            if(firstNutrient.equals(targetNutrient)) {
+                throw new IllegalArgumentException("The first nutrient and the target nutrient need to be different");
+            }
+
+            if(maximumSamples <= 0 || samplingInterval <= 0) {
+                throw new IllegalArgumentException("The number of samples and the sampling interval need to be greater than 0");
+            }
+
+            if(nutrientUptake < 0 || nutrientUptake > 1 || nutrientInflow < 0 || nutrientInflow > 1) {
+                throw new IllegalArgumentException("The nutrient uptake and inflow need to be between 0 and 1");
+            }
+
+            //A square cannot give away more than it has, or diffusion becomes unstable
+            if(nutrientDiffusion < 0 || nutrientDiffusion > 0.25) {
+                throw new IllegalArgumentException("The nutrient diffusion needs to be between 0 and 0.25");
+            }
+
+            //Validates the properties of the initial agents and the mutations
+            new Bacterium(lifespan, freeEnergy, reproductionThreshold, metabolicEnergy, enzymes);
+            new MutationParameters(mutationRate, mutationSizes);
+
+            return new ExperimentParameters(this);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package VivinPaliath;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class represents the genome of a bacterial agent as a packed bit-vector. Bits are stored in the same order as they appear in the
+ * bit-string form of the genome: bit 0 is the first bit of the genome, and is held in the most-significant bit of the first word.
+ */
+public final class Genome {
+
+    private static final int WORD_SIZE = 64;
+
+    //Packed bits of the genome. Bits past the length of the genome are always zero.
+    private final long[] words;
+    private final int length;
+
+    //Cached hash code, since genomes are used as keys of the genotype registry. Zero until it is first computed.
+    private int hash;
+
+    private Genome(long[] words, int length) {
+        this.words = words;
+        this.length = length;
+    }
+
+    //Creates a genome from a string of '0' and '1' characters. Spaces are ignored so that patterns can be grouped for readability.
+    public static Genome fromBitPattern(String bitPattern) {
+        Builder builder = new Builder(bitPattern.length());
+
+        for(int i = 0; i < bitPattern.length(); i++) {
+            char c = bitPattern.charAt(i);
+            if(c == '1') {
+                builder.append(true);
+            } else if(c == '0') {
+                builder.append(false);
+            } else if(c != ' ') {
+                throw new IllegalArgumentException("Genome must only contain the characters 0 and 1");
+            }
+        }
+
+        return builder.build();
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean bit(int index) {
+        if(index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Bit " + index + " is outside a genome of length " + length);
+        }
+
+        return (words[index >>> 6] & (1L << (WORD_SIZE - 1 - (index & 63)))) != 0;
+    }
+
+    //Returns up to 32 bits starting at the offset as an unsigned integer, with the bit at the offset being the most-significant bit. If the
+    //genome ends before offset + size, only the remaining bits are decoded.
+    public int bits(int offset, int size) {
+        if(size < 0 || size > 32) {
+            throw new IllegalArgumentException("Can only decode between 0 and 32 bits at a time");
+        }
+
+        int available = Math.min(size, length - offset);
+        if(available <= 0) {
+            return 0;
+        }
+
+        return (int) (word(offset) >>> (WORD_SIZE - available));
+    }
+
+    //Returns the 64 bits starting at the offset, left-aligned. Bits past the end of the genome are returned as zeroes.
+    private long word(int offset) {
+        int index = offset >>> 6;
+        int shift = offset & 63;
+
+        long word = words[index] << shift;
+        if(shift != 0 && index + 1 < words.length) {
+            word |= words[index + 1] >>> (WORD_SIZE - shift);
+        }
+
+        return word;
+    }
+
+    public String toBitPattern() {
+        char[] bitPattern = new char[length];
+        for(int i = 0; i < length; i++) {
+            bitPattern[i] = bit(i) ? '1' : '0';
+        }
+
+        return new String(bitPattern);
+    }
+
+    //Writes the genome as its length followed by its packed words
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(length);
+        int usedWords = (length + WORD_SIZE - 1) / WORD_SIZE;
+        for(int i = 0; i < usedWords; i++) {
+            out.writeLong(words[i]);
+        }
+    }
+
+    public static Genome readFrom(ByteBuffer in) {
+        int length = in.getInt();
+        long[] words = new long[(length + WORD_SIZE - 1) / WORD_SIZE];
+        for(int i = 0; i < words.length; i++) {
+            words[i] = in.getLong();
+        }
+
+        return new Genome(words, length);
+    }
+
+    @Override
+    public String toString() {
+        return toBitPattern();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Genome genome = (Genome) o;
+
+        if (length != genome.length) return false;
+
+        int usedWords = (length + WORD_SIZE - 1) / WORD_SIZE;
+        for(int i = 0; i < usedWords; i++) {
+            if(words[i] != genome.words[i]) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if(result != 0) {
+            return result;
+        }
+
+        result = length;
+        int usedWords = (length + WORD_SIZE - 1) / WORD_SIZE;
+        for(int i = 0; i < usedWords; i++) {
+            result = 31 * result + (int) (words[i] ^ (words[i] >>> 32));
+        }
+
+        hash = result;
+        return result;
+    }
+
+    /**
+     * Builds up a genome bit by bit. The append methods double as the mutation operators used during reproduction.
+     */
+    public static final class Builder {
+
+        private long[] words;
+        private int length = 0;
+
+        public Builder() {
+            this(WORD_SIZE);
+        }
+
+        public Builder(int expectedLength) {
+            this.words = new long[Math.max(1, (expectedLength + WORD_SIZE - 1) / WORD_SIZE)];
+        }
+
+        public Builder append(boolean bit) {
+            ensureCapacity(length + 1);
+            if(bit) {
+                words[length >>> 6] |= 1L << (WORD_SIZE - 1 - (length & 63));
+            }
+
+            length++;
+            return this;
+        }
+
+        //Appends the lowest `size` bits of the value, most-significant bit first.
+        public Builder appendBits(int value, int size) {
+            if(size < 0 || size > 32) {
+                throw new IllegalArgumentException("Can only append between 0 and 32 bits at a time");
+            }
+
+            if(size > 0) {
+                appendLeftAligned(((long) value) << (WORD_SIZE - size), size);
+            }
+
+            return this;
+        }
+
+        //Copies the bits in [from, to) from the source genome.
+        public Builder appendRange(Genome source, int from, int to) {
+            while(from < to) {
+                int size = Math.min(WORD_SIZE, to - from);
+                appendLeftAligned(source.word(from), size);
+                from += size;
+            }
+
+            return this;
+        }
+
+        //INVERSION: copies the bits in [from, to) from the source genome, flipping each one.
+        public Builder appendInverted(Genome source, int from, int to) {
+            while(from < to) {
+                int size = Math.min(WORD_SIZE, to - from);
+                appendLeftAligned(~source.word(from), size);
+                from += size;
+            }
+
+            return this;
+        }
+
+        //REPETITION: appends the same bit a number of times.
+        public Builder appendRepeated(boolean bit, int count) {
+            while(count > 0) {
+                int size = Math.min(WORD_SIZE, count);
+                appendLeftAligned(bit ? -1L : 0L, size);
+                count -= size;
+            }
+
+            return this;
+        }
+
+        //INSERTION: appends a number of random bits.
+        public Builder appendRandom(Random random, int count) {
+            for(int i = 0; i < count; i++) {
+                append(random.nextInt(2) == 1);
+            }
+
+            return this;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public Genome build() {
+            return new Genome(Arrays.copyOf(words, (length + WORD_SIZE - 1) / WORD_SIZE), length);
+        }
+
+        //Appends the top `size` bits of a left-aligned word.
+        private void appendLeftAligned(long bits, int size) {
+            if(size == 0) {
+                return;
+            }
+
+            ensureCapacity(length + size);
+            bits &= -1L << (WORD_SIZE - size);
+
+            int index = length >>> 6;
+            int shift = length & 63;
+
+            words[index] |= bits >>> shift;
+            if(shift != 0 && shift + size > WORD_SIZE) {
+                words[index + 1] |= bits << (WORD_SIZE - shift);
+            }
+
+            length += size;
+        }
+
+        private void ensureCapacity(int bits) {
+            int required = (bits + WORD_SIZE - 1) / WORD_SIZE;
+            if(required > words.length) {
+                words = Arrays.copyOf(words, Math.max(required, words.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package VivinPaliath;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A genome together with the phenotype that is decoded from it. Genotypes are immutable and are shared by every agent with the same genome,
+ * so a genome is only decoded once however many agents carry it.
+ *
+ * Genotypes that are interned in a GenotypeRegistry have an id that is unique within the registry and count the agents that carry them.
+ * The id is handed out by the registry the first time it is asked for, so ids follow the order in which they are first asked for rather than
+ * the order in which genotypes are decoded, which may be on several threads at once. Genotypes that are created on their own, for agents
+ * that are not part of an experiment, have an id of -1.
+ */
+public final class Genotype {
+
+    static final int UNREGISTERED = -1;
+
+    //The ids of the registry that this genotype belongs to, or null if it belongs to none, and the id once it has been handed out
+    private final AtomicInteger ids;
+    private volatile int id = UNREGISTERED;
+    private final Genome genome;
+
+    //The decoded phenotype
+    private final int maximumLifespan;
+    private final double maximumFreeEnergy;
+    private final double reproductionThreshold;
+    private final double metabolicEnergy;
+    private final Enzyme[] enzymes;
+    private final List<Enzyme> enzymeList;
+
+    //Number of agents that carry this genotype. Only changed by the registry that the genotype belongs to.
+    private final AtomicInteger population = new AtomicInteger();
+
+    //The outcome of feeding on the nutrients that agents of this genotype have fed on so far. The array is replaced, never modified, when a
+    //nutrient is added. Two threads that add a nutrient at the same time may lose one of the two, which only means it is worked out again.
+    private static final int MAXIMUM_YIELDS = 8;
+    private volatile Yield[] yields = new Yield[0];
+
+    Genotype(AtomicInteger ids, Genome genome) {
+        this.ids = ids;
+        this.genome = genome;
+
+        //Each field is decoded straight out of the packed genome. If the genome ends partway through a field, the field is decoded from the
+        //bits that are available. Fields that are missing altogether are zero.
+        this.maximumLifespan = decode(genome, Bacterium.LIFESPAN_OFFSET, Bacterium.LIFESPAN_SIZE);
+        this.maximumFreeEnergy = decode(genome, Bacterium.FREE_ENERGY_OFFSET, Bacterium.FREE_ENERGY_SIZE);
+        this.reproductionThreshold = decode(genome, Bacterium.REPRODUCTION_THRESHOLD_OFFSET, Bacterium.REPRODUCTION_THRESHOLD_SIZE);
+        this.metabolicEnergy = decode(genome, Bacterium.METABOLIC_ENERGY_OFFSET, Bacterium.METABOLIC_ENERGY_SIZE);
+
+        //Enzymes are 16 bits long. If the genome does not end on an enzyme boundary, the remaining bits form a shorter enzyme.
+        int enzymeBits = Math.max(0, genome.length() - Bacterium.ENZYMES_OFFSET);
+        this.enzymes = new Enzyme[(enzymeBits + Bacterium.ENZYME_SIZE - 1) / Bacterium.ENZYME_SIZE];
+        for(int i = 0; i < enzymes.length; i++) {
+            int offset = Bacterium.ENZYMES_OFFSET + (i * Bacterium.ENZYME_SIZE);
+            int size = Math.min(Bacterium.ENZYME_SIZE, genome.length() - offset);
+            enzymes[i] = new Enzyme(genome.bits(offset, size), size);
+        }
+        this.enzymeList = Collections.unmodifiableList(Arrays.asList(enzymes));
+    }
+
+    //Decodes a genome that is not interned in any registry
+    public static Genotype decode(Genome genome) {
+        return new Genotype(null, genome);
+    }
+
+    private static int decode(Genome genome, int offset, int size) {
+        return genome.length() > offset ? genome.bits(offset, size) : 0;
+    }
+
+    public int getId() {
+        int assigned = id;
+        if(assigned == UNREGISTERED && ids != null) {
+            synchronized(this) {
+                if(id == UNREGISTERED) {
+                    id = ids.getAndIncrement();
+                }
+                assigned = id;
+            }
+        }
+
+        return assigned;
+    }
+
+    public Genome getGenome() {
+        return genome;
+    }
+
+    public int getMaximumLifespan() {
+        return maximumLifespan;
+    }
+
+    public double getMaximumFreeEnergy() {
+        return maximumFreeEnergy;
+    }
+
+    public double getReproductionThreshold() {
+        return reproductionThreshold;
+    }
+
+    public double getMetabolicEnergy() {
+        return metabolicEnergy;
+    }
+
+    public List<Enzyme> getEnzymes() {
+        return enzymeList;
+    }
+
+    //The enzymes as an array, for the feeding loop. Must not be modified.
+    Enzyme[] enzymes() {
+        return enzymes;
+    }
+
+    //Returns the outcome of feeding on a nutrient
+    Yield yield(Nutrient nutrient) {
+        Yield known = knownYield(nutrient);
+        if(known != null) {
+            return known;
+        }
+
+        Yield[] yields = new Yield[1];
+        yields(new Genotype[] {this}, new Nutrient[] {nutrient}, 1, yields);
+        return yields[0];
+    }
+
+    //Returns the outcome of feeding on each of a number of nutrients
+    Yield[] yields(Nutrient[] nutrients) {
+        Genotype[] genotypes = new Genotype[nutrients.length];
+        Arrays.fill(genotypes, this);
+
+        Yield[] yields = new Yield[nutrients.length];
+        yields(genotypes, nutrients, nutrients.length, yields);
+        return yields;
+    }
+
+    //Writes the outcome of feeding on the first count nutrients, each by the genotype at the same index, to yields. This is the batch form of
+    //yield, for all the agents that feed at once. Outcomes that are already known are looked up, and the others are worked out together in a
+    //single pass of the batch metabolism kernel.
+    static void yields(Genotype[] genotypes, Nutrient[] nutrients, int count, Yield[] yields) {
+        int segments = 0;
+        int pairs = 0;
+        for(int i = 0; i < count; i++) {
+            yields[i] = genotypes[i].knownYield(nutrients[i]);
+            if(yields[i] == null) {
+                segments++;
+                pairs += genotypes[i].enzymes.length;
+            }
+        }
+
+        if(segments == 0) {
+            return;
+        }
+
+        //Each agent that has to metabolize its nutrient contributes a pair for each of its enzymes
+        int[] nutrientBits = new int[pairs];
+        int[] enzymeBits = new int[pairs];
+        int[] offsets = new int[segments + 1];
+        int[] unknown = new int[segments];
+        int segment = 0;
+        for(int i = 0; i < count; i++) {
+            if(yields[i] == null) {
+                unknown[segment] = i;
+                offsets[segment + 1] = genotypes[i].pack(nutrients[i], nutrientBits, enzymeBits, offsets[segment]);
+                segment++;
+            }
+        }
+
+        int[] ones = new int[pairs];
+        int[] best = new int[segments];
+        BatchMetabolism.get().metabolize(nutrientBits, enzymeBits, offsets, segments, ones, best);
+
+        for(segment = 0; segment < segments; segment++) {
+            int i = unknown[segment];
+            yields[i] = genotypes[i].remember(genotypes[i].yield(nutrients[i], ones, offsets[segment], best[segment]));
+        }
+    }
+
+    //The outcome of feeding on a nutrient, if it has been worked out already
+    private Yield knownYield(Nutrient nutrient) {
+        Yield[] yields = this.yields;
+        for(int i = 0; i < yields.length; i++) {
+            if(yields[i].nutrient == nutrient || yields[i].nutrient.equals(nutrient)) {
+                return yields[i];
+            }
+        }
+
+        return null;
+    }
+
+    //Adds an outcome to the ones that are known, unless it is known already or there is no more room. Returns the known outcome.
+    private Yield remember(Yield yield) {
+        Yield[] yields = this.yields;
+        Yield known = knownYield(yield.nutrient);
+        if(known != null) {
+            return known;
+        }
+
+        if(yields.length < MAXIMUM_YIELDS) {
+            Yield[] added = Arrays.copyOf(yields, yields.length + 1);
+            added[yields.length] = yield;
+            this.yields = added;
+        }
+
+        return yield;
+    }
+
+    //Packs a pair of the nutrient and each enzyme, starting at a given pair, and returns the pair after the last one. If an enzyme is shorter
+    //than the nutrient, only the matching number of bits of the nutrient are used, starting with the LSB. The nutrient stays truncated for the
+    //enzymes that follow.
+    private int pack(Nutrient nutrient, int[] nutrientBits, int[] enzymeBits, int pair) {
+        int bits = nutrient.getValue();
+        int size = nutrient.getSize();
+
+        for(Enzyme enzyme : enzymes) {
+            if(size > enzyme.getSize()) {
+                size = enzyme.getSize();
+                bits &= (1 << size) - 1;
+            }
+
+            nutrientBits[pair] = bits;
+            enzymeBits[pair] = enzyme.getValue();
+            pair++;
+        }
+
+        return pair;
+    }
+
+    //The outcome of feeding on a nutrient, given the number of differing bits of each enzyme and the pair of the most efficient one. The
+    //energy extracted by an enzyme grows with its efficiency, unless the nutrient has no energy at all, in which case the first enzyme is used.
+    private Yield yield(Nutrient nutrient, int[] ones, int first, int best) {
+        if(best < 0) {
+            //An agent without enzymes still loses a unit of energy when it feeds
+            return new Yield(nutrient, -1, null);
+        }
+
+        if(nutrient.energyContent() == 0) {
+            best = first;
+        }
+
+        double efficiency = ones[best] / 16.0;
+        return new Yield(nutrient, efficiency * nutrient.energyContent(), new MetabolysisResult(nutrient, enzymes[best - first], efficiency));
+    }
+
+    //Number of live agents that carry this genotype
+    public int getPopulation() {
+        return population.get();
+    }
+
+    AtomicInteger population() {
+        return population;
+    }
+
+    /**
+     * The outcome of feeding on a nutrient: the energy gained, and the enzyme that was used and its efficiency. The result is null if the
+     * genotype has no enzymes.
+     */
+    static final class Yield {
+
+        private final Nutrient nutrient;
+        private final double energy;
+        private final MetabolysisResult metabolysisResult;
+
+        private Yield(Nutrient nutrient, double energy, MetabolysisResult metabolysisResult) {
+            this.nutrient = nutrient;
+            this.energy = energy;
+            this.metabolysisResult = metabolysisResult;
+        }
+
+        double getEnergy() {
+            return energy;
+        }
+
+        MetabolysisResult getMetabolysisResult() {
+            return metabolysisResult;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Genotype " + id + " (" + population.get() + "): " + genome;
+    }
+}
@@ -0,0 +1,173 @@
+package VivinPaliath;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns the genotypes of an experiment, so that all agents with the same genome share one decoded Genotype. Each genotype counts the
+ * agents that carry it: an agent acquires its genotype when it is born and releases it when it dies, and a genotype is dropped from the
+ * registry once nobody carries it any more. Memory therefore grows with the number of distinct genotypes alive, not with the population.
+ *
+ * Genotypes that are dropped are kept, up to a limit, in a cache of recently dropped genotypes, evicting the least recently dropped first.
+ * A genome that reappears after its last carrier died, which happens often with lineages that keep recreating the same genome, gets its
+ * genotype back from the cache under its old id, along with its decoded phenotype and everything it has already worked out about feeding.
+ *
+ * The registry may be used from several threads at once. Ids are only handed out when they are first asked for, which a coordinator that
+ * makes transitions on several threads does serially, between steps. Such a coordinator also defers evictions from the cache to the end of
+ * each step, so that which genotypes come back under their old ids does not depend on the order in which threads dropped them either.
+ */
+public class GenotypeRegistry {
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final ConcurrentHashMap<Genome, Genotype> genotypes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    //Recently dropped genotypes, least recently dropped first. Only used when a genotype is dropped or a genome is not in the registry, and
+    //always while holding the lock of the genome's entry in the registry.
+    private final Map<Genome, Genotype> dropped;
+    private final int cacheSize;
+
+    //Whether genotypes are only evicted from the cache by trimCache
+    private volatile boolean evictionDeferred = false;
+
+    //The genotype of a child that was not mutated, for each parent genotype. A child is never an exact copy of its parent, because bit 47
+    //is not inherited, but the children of a genotype without mutations all share the same genome.
+    private final ConcurrentHashMap<Genotype, Genotype> unmutatedChildren = new ConcurrentHashMap<>();
+
+    public GenotypeRegistry() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    //Creates a registry that keeps up to the given number of dropped genotypes
+    public GenotypeRegistry(final int cacheSize) {
+        if(cacheSize < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative");
+        }
+
+        this.cacheSize = cacheSize;
+        this.dropped = Collections.synchronizedMap(new LinkedHashMap<Genome, Genotype>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Genome, Genotype> eldest) {
+                return !evictionDeferred && size() > cacheSize;
+            }
+        });
+    }
+
+    //Acquires the genotype with the given genome, interning it if it is not in the registry
+    public Genotype acquire(Genome genome) {
+        return genotypes.compute(genome, (key, existing) -> {
+            Genotype genotype = existing != null ? existing : revive(key);
+            genotype.population().incrementAndGet();
+            return genotype;
+        });
+    }
+
+    //Acquires a genotype that was handed out by this registry before. If it has been dropped since, because nobody carried it any more, it
+    //is interned again under the same id.
+    public Genotype acquire(Genotype genotype) {
+        AtomicInteger population = genotype.population();
+
+        //As long as somebody carries the genotype it cannot be dropped, so there is no need to go through the map
+        for(int count = population.get(); count > 0; count = population.get()) {
+            if(population.compareAndSet(count, count + 1)) {
+                return genotype;
+            }
+        }
+
+        return genotypes.compute(genotype.getGenome(), (key, existing) -> {
+            if(existing == null) {
+                dropped.remove(key);
+            }
+
+            Genotype acquired = existing != null ? existing : genotype;
+            acquired.population().incrementAndGet();
+            return acquired;
+        });
+    }
+
+    //Acquires the genotype of a child from the genotype of its parent and the mutations that the child underwent
+    public Genotype inherit(Genotype parent, MutationDelta mutations) {
+        if(!mutations.isEmpty()) {
+            return acquire(Bacterium.apply(parent.getGenome(), mutations));
+        }
+
+        Genotype child = unmutatedChildren.get(parent);
+        if(child != null) {
+            return acquire(child);
+        }
+
+        child = acquire(Bacterium.apply(parent.getGenome(), MutationDelta.NONE));
+        unmutatedChildren.put(parent, child);
+        return child;
+    }
+
+    //Releases a genotype when an agent that carries it dies
+    public void release(Genotype genotype) {
+        AtomicInteger population = genotype.population();
+
+        //Only the last carrier needs to go through the map, so that dropping the genotype cannot race with acquiring it
+        for(int count = population.get(); count > 1; count = population.get()) {
+            if(population.compareAndSet(count, count - 1)) {
+                return;
+            }
+        }
+
+        genotypes.computeIfPresent(genotype.getGenome(), (key, existing) -> {
+            if(existing != genotype) {
+                throw new IllegalArgumentException("Genotype " + genotype.getId() + " does not belong to this registry");
+            }
+
+            if(existing.population().decrementAndGet() > 0) {
+                return existing;
+            }
+
+            unmutatedChildren.remove(existing);
+            dropped.put(key, existing);
+            return null;
+        });
+    }
+
+    //Takes a genome's genotype back out of the cache of dropped genotypes, or decodes the genome if it is not there
+    private Genotype revive(Genome genome) {
+        Genotype genotype = dropped.remove(genome);
+        return genotype != null ? genotype : new Genotype(nextId, genome);
+    }
+
+    //Leaves the cache to grow past its size until trimCache is called. Used by a coordinator that makes transitions on several threads, which
+    //trims the cache after every step.
+    void deferEviction() {
+        evictionDeferred = true;
+    }
+
+    //Evicts the least recently dropped genotypes until the cache is back within its size
+    void trimCache() {
+        synchronized(dropped) {
+            Iterator<Genotype> eldest = dropped.values().iterator();
+            for(int excess = dropped.size() - cacheSize; excess > 0; excess--) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    //Number of dropped genotypes in the cache
+    public int getCachedCount() {
+        return dropped.size();
+    }
+
+    //Number of distinct genotypes that are carried by at least one agent
+    public int size() {
+        return genotypes.size();
+    }
+
+    //The genotypes that are carried by at least one agent. The view is live, and each genotype knows how many agents carry it.
+    public Collection<Genotype> getGenotypes() {
+        return Collections.unmodifiableCollection(genotypes.values());
+    }
+}
@@ -0,0 +1,382 @@
+package VivinPaliath;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the lineage of every agent in an experiment: who its parent was, when and where it was born, which genotype it carried and a
+ * summary of the mutations it underwent. From this it answers questions such as which ancestor of an agent first carried a functional enzyme
+ * for the target nutrient, and what the most recent common ancestor of the living population is.
+ *
+ * Records have a fixed size and are appended, in order of their ids, to an off-heap buffer. A record is kept for as long as its agent is
+ * alive or it has a living descendant, which is tracked with a reference count: one for the agent itself while it lives, and one for each
+ * child whose record is kept. Once the count drops to zero the record is pruned, and so is every ancestor that was only kept because of it.
+ * Pruned records are removed when the buffer fills up, so the buffer only grows with the living population and the ancestry that it shares.
+ *
+ * Every record has the following layout:
+ *
+ *     long    id of the agent
+ *     long    id of its parent, or -1 for a founder
+ *     double  time of birth
+ *     int     row of the cell it was born in
+ *     int     column of the cell it was born in
+ *     int     id of its genotype
+ *     int     reference count
+ *     short   number of mutations
+ *     byte    the types of mutations, one bit per type
+ *     byte    flags (ALIVE, FUNCTIONAL)
+ *     int     number of bits modified by the mutations
+ *
+ * When the DEVS model is simulated in parallel, cells hold on to the births and deaths of a step, and the ParallelCoordinator records them
+ * after the step, one cell at a time in the order of their ranks. Ids are therefore handed out in the same order however many threads are
+ * used. The methods are synchronized all the same, so that the lineage can be read from another thread while the experiment runs.
+ */
+public class LineageRecorder {
+
+    static final int RECORD_SIZE = 48;
+
+    private static final int ID = 0;
+    private static final int PARENT = 8;
+    private static final int TIME = 16;
+    private static final int ROW = 24;
+    private static final int COLUMN = 28;
+    private static final int GENOTYPE = 32;
+    private static final int REFERENCES = 36;
+    private static final int MUTATIONS = 40;
+    private static final int MUTATION_TYPES = 42;
+    private static final int FLAGS = 43;
+    private static final int MUTATED_BITS = 44;
+
+    private static final byte ALIVE = 1;
+    private static final byte FUNCTIONAL = 2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //Founders have no parent
+    public static final long NONE = -1;
+
+    //The nutrient that a functional enzyme metabolizes
+    private final Nutrient targetNutrient;
+
+    private ByteBuffer records = allocate(INITIAL_CAPACITY);
+    private int count = 0;
+    private int pruned = 0;
+    private long nextId = 0;
+
+    public LineageRecorder(Nutrient targetNutrient) {
+        this.targetNutrient = targetNutrient;
+    }
+
+    //Records an agent that was placed in the grid, rather than born from a parent in it. Returns the id of the agent.
+    public synchronized long recordFounder(double time, int row, int column, Genotype genotype) {
+        return append(NONE, time, row, column, genotype, MutationDelta.NONE);
+    }
+
+    //Records the birth of a child. Returns the id of the child. A child whose parent is not recorded here, for example because the parent
+    //lived in a cell that was wired up with a recorder of its own, is recorded as a founder.
+    public synchronized long recordBirth(long parent, double time, int row, int column, Genotype genotype, MutationDelta mutations) {
+        int parentSlot = slot(parent);
+        if(parentSlot < 0) {
+            return append(NONE, time, row, column, genotype, mutations);
+        }
+
+        addReferences(parentSlot, 1);
+        return append(parent, time, row, column, genotype, mutations);
+    }
+
+    //Records the death of an agent. Its record, and those of its ancestors, are pruned if they have no living descendants left.
+    public synchronized void recordDeath(long id) {
+        int slot = slot(id);
+        if(slot < 0 || (records.get(offset(slot) + FLAGS) & ALIVE) == 0) {
+            throw new IllegalArgumentException("Agent " + id + " is not alive");
+        }
+
+        records.put(offset(slot) + FLAGS, (byte) (records.get(offset(slot) + FLAGS) & ~ALIVE));
+        release(slot);
+    }
+
+    private long append(long parent, double time, int row, int column, Genotype genotype, MutationDelta mutations) {
+        if(count * RECORD_SIZE == records.capacity()) {
+            makeRoom();
+        }
+
+        int mutationTypes = 0;
+        int mutatedBits = 0;
+        for(int i = 0; i < mutations.size(); i++) {
+            mutationTypes |= 1 << mutations.type(i);
+            mutatedBits += mutations.size(i);
+        }
+
+        long id = nextId++;
+        int offset = offset(count++);
+        records.putLong(offset + ID, id);
+        records.putLong(offset + PARENT, parent);
+        records.putDouble(offset + TIME, time);
+        records.putInt(offset + ROW, row);
+        records.putInt(offset + COLUMN, column);
+        records.putInt(offset + GENOTYPE, genotype.getId());
+        records.putInt(offset + REFERENCES, 1);
+        records.putShort(offset + MUTATIONS, (short) Math.min(Short.MAX_VALUE, mutations.size()));
+        records.put(offset + MUTATION_TYPES, (byte) mutationTypes);
+        records.put(offset + FLAGS, (byte) (ALIVE | (isFunctional(genotype) ? FUNCTIONAL : 0)));
+        records.putInt(offset + MUTATED_BITS, mutatedBits);
+
+        return id;
+    }
+
+    //An agent carries a functional enzyme if it metabolizes the target nutrient with an efficiency above zero
+    private boolean isFunctional(Genotype genotype) {
+        MetabolysisResult metabolysisResult = genotype.yield(targetNutrient).getMetabolysisResult();
+        return metabolysisResult != null && metabolysisResult.getEfficiency() > 0;
+    }
+
+    //The records are never written out, so they are kept in the byte order of the machine
+    private static ByteBuffer allocate(int records) {
+        return ByteBuffer.allocateDirect(records * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    //Drops a reference to a record, pruning it and then its ancestors for as long as their counts drop to zero
+    private void release(int slot) {
+        while(slot >= 0 && addReferences(slot, -1) == 0) {
+            pruned++;
+            slot = slot(records.getLong(offset(slot) + PARENT));
+        }
+    }
+
+    private int addReferences(int slot, int delta) {
+        int references = records.getInt(offset(slot) + REFERENCES) + delta;
+        records.putInt(offset(slot) + REFERENCES, references);
+        return references;
+    }
+
+    //Removes the pruned records if that frees up at least a quarter of the buffer, and grows the buffer otherwise. The records that are kept
+    //stay in order of their ids.
+    private void makeRoom() {
+        if(pruned * 4 < count) {
+            ByteBuffer grown = allocate((records.capacity() / RECORD_SIZE) * 2);
+            records.clear();
+            grown.put(records);
+            records = grown;
+            return;
+        }
+
+        int kept = 0;
+        for(int slot = 0; slot < count; slot++) {
+            if(references(slot) > 0) {
+                if(kept != slot) {
+                    ByteBuffer record = records.duplicate();
+                    record.limit(offset(slot) + RECORD_SIZE).position(offset(slot));
+                    records.position(offset(kept));
+                    records.put(record);
+                }
+                kept++;
+            }
+        }
+
+        count = kept;
+        pruned = 0;
+    }
+
+    //Finds the slot of a record that has not been pruned, by a binary search on the ids. Returns -1 if there is no such record.
+    private int slot(long id) {
+        int low = 0;
+        int high = count - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = records.getLong(offset(middle) + ID);
+            if(middleId < id) {
+                low = middle + 1;
+            } else if(middleId > id) {
+                high = middle - 1;
+            } else {
+                return references(middle) > 0 ? middle : -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private int references(int slot) {
+        return records.getInt(offset(slot) + REFERENCES);
+    }
+
+    private static int offset(int slot) {
+        return slot * RECORD_SIZE;
+    }
+
+    //Returns the record of an agent that is alive or has living descendants, or null if it has been pruned.
+    public synchronized Record get(long id) {
+        int slot = slot(id);
+        return slot < 0 ? null : new Record(records, offset(slot));
+    }
+
+    //Returns the ids of the living agents
+    public synchronized long[] getLivingAgents() {
+        List<Long> living = new ArrayList<>();
+        for(int slot = 0; slot < count; slot++) {
+            if((records.get(offset(slot) + FLAGS) & ALIVE) != 0) {
+                living.add(records.getLong(offset(slot) + ID));
+            }
+        }
+
+        return living.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    //Returns the ancestry of an agent: the agent itself, its parent, and so on up to a founder. Empty if the agent has been pruned.
+    public synchronized List<Record> getAncestry(long id) {
+        List<Record> ancestry = new ArrayList<>();
+        for(int slot = slot(id); slot >= 0; slot = slot(records.getLong(offset(slot) + PARENT))) {
+            ancestry.add(new Record(records, offset(slot)));
+        }
+
+        return ancestry;
+    }
+
+    //Returns the earliest ancestor of an agent, possibly the agent itself, that carried a functional enzyme. The mutations that led to it
+    //can be read from the ancestry of that ancestor. Returns null if no ancestor carried one.
+    public synchronized Record getFirstFunctionalAncestor(long id) {
+        Record first = null;
+        for(Record record : getAncestry(id)) {
+            if(record.isFunctional()) {
+                first = record;
+            }
+        }
+
+        return first;
+    }
+
+    //Returns the most recent common ancestor of the living population, which may be a living agent itself. Returns null if the population
+    //has died out or descends from more than one founder.
+    public synchronized Record getMostRecentCommonAncestor() {
+        //Every record that is kept has a living descendant, so the population shares an ancestor only if exactly one founder is kept
+        int common = -1;
+        for(int slot = 0; slot < count; slot++) {
+            if(references(slot) > 0 && records.getLong(offset(slot) + PARENT) == NONE) {
+                if(common >= 0) {
+                    return null;
+                }
+                common = slot;
+            }
+        }
+
+        if(common < 0) {
+            return null;
+        }
+
+        //Walk down from the founder for as long as the current ancestor is dead and all living agents descend from a single child of it.
+        //Children always come after their parents, so a single pass in order of the ids finds that child.
+        long commonId = records.getLong(offset(common) + ID);
+        for(int slot = common + 1; slot < count && children(common) == 1; slot++) {
+            if(references(slot) > 0 && records.getLong(offset(slot) + PARENT) == commonId) {
+                common = slot;
+                commonId = records.getLong(offset(slot) + ID);
+            }
+        }
+
+        return new Record(records, offset(common));
+    }
+
+    //Number of kept children of a record. A living agent is its own descendant, so it has no single child that everybody descends from.
+    private int children(int slot) {
+        boolean alive = (records.get(offset(slot) + FLAGS) & ALIVE) != 0;
+        return alive ? -1 : references(slot);
+    }
+
+    //Number of records that are kept, not counting pruned records that have not been removed yet
+    public synchronized int size() {
+        return count - pruned;
+    }
+
+    //Number of agents recorded since the start of the experiment
+    public synchronized long getRecorded() {
+        return nextId;
+    }
+
+    /**
+     * A copy of a single lineage record.
+     */
+    public static final class Record {
+
+        private final long id;
+        private final long parent;
+        private final double time;
+        private final int row;
+        private final int column;
+        private final int genotype;
+        private final int mutations;
+        private final int mutationTypes;
+        private final int mutatedBits;
+        private final boolean alive;
+        private final boolean functional;
+
+        private Record(ByteBuffer records, int offset) {
+            this.id = records.getLong(offset + ID);
+            this.parent = records.getLong(offset + PARENT);
+            this.time = records.getDouble(offset + TIME);
+            this.row = records.getInt(offset + ROW);
+            this.column = records.getInt(offset + COLUMN);
+            this.genotype = records.getInt(offset + GENOTYPE);
+            this.mutations = records.getShort(offset + MUTATIONS);
+            this.mutationTypes = records.get(offset + MUTATION_TYPES);
+            this.mutatedBits = records.getInt(offset + MUTATED_BITS);
+            this.alive = (records.get(offset + FLAGS) & ALIVE) != 0;
+            this.functional = (records.get(offset + FLAGS) & FUNCTIONAL) != 0;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        //Id of the parent, or NONE for a founder
+        public long getParent() {
+            return parent;
+        }
+
+        public double getTime() {
+            return time;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public int getGenotype() {
+            return genotype;
+        }
+
+        //Number of mutations that the agent underwent at birth
+        public int getMutations() {
+            return mutations;
+        }
+
+        //The types of those mutations, one bit per type as numbered by Bacterium
+        public int getMutationTypes() {
+            return mutationTypes;
+        }
+
+        //Number of bits that those mutations modified
+        public int getMutatedBits() {
+            return mutatedBits;
+        }
+
+        public boolean isAlive() {
+            return alive;
+        }
+
+        public boolean isFunctional() {
+            return functional;
+        }
+
+        @Override
+        public String toString() {
+            return "Agent " + id + " born at " + time + " in (" + row + "," + column + ") from " + (parent == NONE ? "no parent" : "agent " + parent) +
+                    ", genotype " + genotype + ", " + mutations + " mutations modifying " + mutatedBits + " bits" + (functional ? ", functional" : "");
+        }
+    }
+}
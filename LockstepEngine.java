@@ -0,0 +1,467 @@
+package VivinPaliath;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A fixed-step alternative to the DEVS model in Evolution. Instead of one atomic model per cell, the whole grid is kept in primitive arrays
+ * and every live cell advances by one phase per tick.
+ *
+ * The lifecycle is the one implemented by Cell.deltint and Cell.deltext. Because every timed phase of a cell lasts stateTransitionTime (1),
+ * a live cell acts on every tick:
+ *
+ *  REST:      the agent rests. If it dies the cell is vacated. If it has enough free energy to reproduce, a vacant neighbor is reserved the
+ *             same way the arbiters do it (a random choice amongst the vacant neighbors, marked occupied at once)
+ *             and the cell moves to REPRODUCE, or back to REST if there is no room. Otherwise the cell moves to FEED.
+ *  FEED:      the agent feeds on the nutrient in its cell and the cell moves to REST.
+ *  REPRODUCE: the agent reproduces into the reserved cell and moves to REST. The child arrives in the same tick and rests immediately, just
+ *             like a cell that receives a BacteriumMessage transitions to REST with a time-advance of zero.
+ *
+ * Cells are processed in row-major order within a tick, and the children that arrive during a tick are processed after all other cells.
+ * If the nutrients of the experiment run out, its NutrientField is diffused at the start of every tick, on the common fork/join pool.
+ */
+public class LockstepEngine {
+
+    //Phase codes
+    static final byte DEAD = 0;
+    static final byte REST = 1;
+    static final byte FEED = 2;
+    static final byte REPRODUCE = 3;
+
+    //Offsets of the neighbors of a cell, in the same order as the deltas in the arbiters.
+    private static final int[] NEIGHBOR_DR = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] NEIGHBOR_DC = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    //Heap used by the state of a single cell: a byte each for the phase and the two nutrients, an int each for the lifespan, reserved
+    //neighbor and arrivals, a reference to the feed table, which takes as much as an int with compressed pointers, and a double or long each for the free energy and random counter. The occupancy bitboard adds a bit,
+    //which is rounded up to a byte. Recording the lineage adds a long per cell for the agent id, and the records themselves off the heap.
+    static final int BYTES_PER_CELL = (3 * Byte.BYTES) + (4 * Integer.BYTES) + (2 * Long.BYTES) + 1;
+
+    private final int rows;
+    private final int columns;
+
+    //Per-cell state. Cells are indexed in row-major order.
+    private final byte[] phase;
+    private final int[] lifespan;
+    private final double[] freeEnergy;
+    private final FeedTable[] feedTable;
+    private final OccupancyBitboard occupancy;
+    private final int[] reservedNeighbor;
+    private final byte[] nutrient;
+    private final byte[] parentCellNutrient;
+
+    //The distinct nutrients in the grid. Cells refer to these by index.
+    private final Nutrient[] nutrients;
+    private final int targetNutrient;
+
+    //The genotypes of the agents, and the feed table of each genotype that is alive. Cells refer to the feed table of their agent, so agents
+    //with the same genome share a single decoded phenotype, and a table is dropped with the last agent that carries its genotype.
+    private final GenotypeRegistry genotypes = new GenotypeRegistry();
+    private final Map<Genotype, FeedTable> feedTables = new IdentityHashMap<>();
+
+    //The lineage of the agents, and the id of the agent in each cell within it. Both are null if the lineage is not recorded.
+    private final LineageRecorder lineage;
+    private final long[] agentId;
+
+    //Cells that received a child during the current tick
+    private final int[] arrivals;
+    private int arrivalCount = 0;
+
+    //Random streams. Each cell has a stream of its own, derived from the seed, whose position is kept in randomCounter. The agent in a cell
+    //draws its reservations and mutations from the stream of its cell, which is loaded into the shared random instance before use.
+    private final long seed;
+    private final long[] randomCounter;
+
+    //How the genomes of children are mutated
+    private final MutationParameters mutation;
+    private final RandomStream random;
+
+    private long tick = 0;
+    private long agentSteps = 0;
+    private int population = 0;
+
+    //Statistics about the efficiency with which the target nutrient is metabolized
+    private final EfficiencyStatistics statistics;
+
+    private final SimulationObservers observers = new SimulationObservers();
+
+    //How much nutrient is left in each cell, or null if nutrients never run out
+    private final NutrientField field;
+
+    /**
+     * A genotype together with everything the engine needs from its decoded phenotype, including the outcome of feeding on each nutrient.
+     */
+    private static final class FeedTable {
+
+        private final Genotype genotype;
+        private final double restCost;
+
+        //Energy gained, efficiency and enzyme used when feeding on each nutrient. The enzyme is null if the agent has no enzymes.
+        private final double[] feedEnergy;
+        private final double[] feedEfficiency;
+        private final Enzyme[] feedEnzyme;
+
+        private FeedTable(Genotype genotype, Nutrient[] nutrients) {
+            this.genotype = genotype;
+            this.restCost = Math.max(1, genotype.getEnzymes().size()) * genotype.getMetabolicEnergy();
+
+            this.feedEnergy = new double[nutrients.length];
+            this.feedEfficiency = new double[nutrients.length];
+            this.feedEnzyme = new Enzyme[nutrients.length];
+            Genotype.Yield[] yields = genotype.yields(nutrients);
+            for(int i = 0; i < nutrients.length; i++) {
+                MetabolysisResult metabolysisResult = yields[i].getMetabolysisResult();
+
+                feedEnergy[i] = yields[i].getEnergy();
+                if(metabolysisResult != null) {
+                    feedEfficiency[i] = metabolysisResult.getEfficiency();
+                    feedEnzyme[i] = metabolysisResult.getEnzyme();
+                }
+            }
+        }
+    }
+
+    //Creates an engine for a grid of nutrients. The target nutrient, the sampling of the statistics, the mutations and the seed are taken
+    //from the parameters. The grid itself is not.
+    public LockstepEngine(Nutrient[][] grid, ExperimentParameters parameters) {
+        this(grid, parameters, false);
+    }
+
+    //Creates an engine for a grid of nutrients, recording the lineage of every agent if asked to
+    public LockstepEngine(Nutrient[][] grid, ExperimentParameters parameters, boolean recordLineage) {
+        Nutrient targetNutrient = parameters.getTargetNutrient();
+
+        this.rows = grid.length;
+        this.columns = grid[0].length;
+        this.seed = parameters.getSeed();
+        this.mutation = parameters.getMutation();
+        this.random = new RandomStream(seed, RandomStream.PLACEMENT_STREAM);
+        this.statistics = new EfficiencyStatistics(targetNutrient, parameters.getMaximumSamples(), parameters.getSamplingInterval(), observers);
+        this.field = !parameters.hasNutrientField() ? null : new NutrientField(rows, columns, parameters.getNutrientUptake(),
+                parameters.getNutrientDiffusion(), parameters.getNutrientInflow());
+
+        int cells = rows * columns;
+        this.phase = new byte[cells];
+        this.lifespan = new int[cells];
+        this.freeEnergy = new double[cells];
+        this.feedTable = new FeedTable[cells];
+        this.occupancy = new OccupancyBitboard(rows, columns);
+        this.reservedNeighbor = new int[cells];
+        this.nutrient = new byte[cells];
+        this.parentCellNutrient = new byte[cells];
+        this.arrivals = new int[cells];
+        this.randomCounter = new long[cells];
+        this.agentId = recordLineage ? new long[cells] : null;
+        this.lineage = recordLineage ? new LineageRecorder(targetNutrient) : null;
+
+        List<Nutrient> distinctNutrients = new ArrayList<>();
+        for(int i = 0; i < rows; i++) {
+            for(int j = 0; j < columns; j++) {
+                int index = distinctNutrients.indexOf(grid[i][j]);
+                if(index < 0) {
+                    index = distinctNutrients.size();
+                    distinctNutrients.add(grid[i][j]);
+                }
+
+                nutrient[(i * columns) + j] = (byte) index;
+                parentCellNutrient[(i * columns) + j] = (byte) index;
+            }
+        }
+
+        if(distinctNutrients.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("The grid can hold at most " + Byte.MAX_VALUE + " distinct nutrients");
+        }
+
+        this.nutrients = distinctNutrients.toArray(new Nutrient[distinctNutrients.size()]);
+        this.targetNutrient = distinctNutrients.indexOf(targetNutrient);
+    }
+
+    //Sets up the same experiment as Evolution, on a grid of the given size.
+    public static LockstepEngine createDefaultExperiment(int rows, int columns, int numBacteria, long seed) {
+        return createExperiment(ExperimentParameters.builder().rows(rows).columns(columns).bacteria(numBacteria).seed(seed).build());
+    }
+
+    //Sets up the experiment described by the parameters the same way Evolution does.
+    public static LockstepEngine createExperiment(ExperimentParameters parameters) {
+        return createExperiment(parameters, false);
+    }
+
+    public static LockstepEngine createExperiment(ExperimentParameters parameters, boolean recordLineage) {
+        int rows = parameters.getRows();
+        int columns = parameters.getColumns();
+        int numBacteria = parameters.getNumBacteria();
+
+        Nutrient[][] grid = new Nutrient[rows][columns];
+        for(int i = 0; i < rows; i++) {
+            for(int j = 0; j < columns; j++) {
+                grid[i][j] = (j >= (columns / 2)) ? parameters.getTargetNutrient() : parameters.getFirstNutrient();
+            }
+        }
+
+        LockstepEngine engine = new LockstepEngine(grid, parameters, recordLineage);
+        RandomStream placement = new RandomStream(parameters.getSeed(), RandomStream.PLACEMENT_STREAM);
+        Genome founder = parameters.createFounder().getGenome();
+
+        //Seed the first nutrient region the way Evolution does: each cell gets an agent with a probability of 1/4 until we run out
+        for(int i = 0; i < rows && numBacteria > 0; i++) {
+            for(int j = 0; j < columns / 2 && numBacteria > 0; j++) {
+                if(placement.nextInt(4) == 3) {
+                    engine.addBacterium(i, j, founder);
+                    numBacteria--;
+                }
+            }
+        }
+
+        return engine;
+    }
+
+    //Places an agent in a cell. Its lifecycle starts with the first tick, just like a cell that receives a START message.
+    public void addBacterium(int row, int column, Genome genome) {
+        int cell = (row * columns) + column;
+        if(occupancy.isOccupied(row, column)) {
+            throw new IllegalStateException("Cell (" + row + "," + column + ") is already occupied");
+        }
+
+        occupancy.occupy(row, column);
+        Genotype g = genotypes.acquire(genome);
+        if(lineage != null) {
+            agentId[cell] = lineage.recordFounder(tick, row, column, g);
+        }
+        birth(cell, g);
+        phase[cell] = REST;
+    }
+
+    public void addObserver(SimulationObserver observer) {
+        observers.add(observer);
+    }
+
+    //Advances every live cell by one tick.
+    public void step() {
+        tick++;
+        if(field != null) {
+            field.advanceTo(tick, ForkJoinPool.commonPool());
+        }
+
+        for(int cell = 0; cell < phase.length; cell++) {
+            switch(phase[cell]) {
+                case REST:
+                    rest(cell);
+                    break;
+
+                case FEED:
+                    feed(cell);
+                    break;
+
+                case REPRODUCE:
+                    reproduce(cell);
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        //Children that arrived during this tick rest immediately
+        for(int i = 0; i < arrivalCount; i++) {
+            rest(arrivals[i]);
+        }
+        arrivalCount = 0;
+    }
+
+    //Runs until the given time, or until the population dies out.
+    public void run(long endTime) {
+        while(tick < endTime && population > 0) {
+            step();
+        }
+    }
+
+    private void rest(int cell) {
+        FeedTable g = feedTable[cell];
+
+        agentSteps++;
+        freeEnergy[cell] -= g.restCost;
+        lifespan[cell]--;
+
+        if(Bacterium.isDead(lifespan[cell], freeEnergy[cell])) {
+            death(cell, g);
+            phase[cell] = DEAD;
+            occupancy.vacate(cell / columns, cell % columns);
+            population--;
+            notifyCellChanged(cell);
+            if(!observers.isEmpty()) {
+                observers.bacteriumDied(tick, cell / columns, cell % columns);
+            }
+        } else if(freeEnergy[cell] >= g.genotype.getReproductionThreshold()) {
+            int neighbor = reserveEmptyNeighbor(cell);
+            if(neighbor >= 0) {
+                reservedNeighbor[cell] = neighbor;
+                phase[cell] = REPRODUCE;
+            } else {
+                phase[cell] = REST;
+            }
+        } else {
+            phase[cell] = FEED;
+        }
+    }
+
+    private void feed(int cell) {
+        FeedTable g = feedTable[cell];
+        int n = nutrient[cell];
+
+        agentSteps++;
+        freeEnergy[cell] += field == null ? g.feedEnergy[n] : Bacterium.energyAt(g.feedEnergy[n], field.consume(cell / columns, cell % columns));
+        phase[cell] = REST;
+
+        if(n == targetNutrient) {
+            statistics.record(tick, nutrients[n], g.feedEnzyme[n], g.feedEfficiency[n], nutrients[parentCellNutrient[cell]]);
+        }
+    }
+
+    private void reproduce(int cell) {
+        FeedTable g = feedTable[cell];
+        int child = reservedNeighbor[cell];
+
+        agentSteps++;
+        freeEnergy[cell] -= (0.5 * g.genotype.getReproductionThreshold());
+        phase[cell] = REST;
+
+        MutationDelta mutations = Bacterium.mutations(g.genotype.getGenome(), useStream(cell), mutation);
+        saveStream(cell);
+
+        Genotype childGenotype = genotypes.inherit(g.genotype, mutations);
+        if(lineage != null) {
+            agentId[child] = lineage.recordBirth(agentId[cell], tick, child / columns, child % columns, childGenotype, mutations);
+        }
+        birth(child, childGenotype);
+        parentCellNutrient[child] = nutrient[cell];
+        arrivals[arrivalCount++] = child;
+
+        if(!observers.isEmpty()) {
+            observers.bacteriumBorn(tick, child / columns, child % columns);
+        }
+    }
+
+    //Initializes the agent state of a cell from a genotype that has been acquired for it. The cell must already be marked as occupied.
+    private void birth(int cell, Genotype g) {
+        FeedTable table = feedTables.get(g);
+        if(table == null) {
+            table = new FeedTable(g, nutrients);
+            feedTables.put(g, table);
+        }
+
+        feedTable[cell] = table;
+        lifespan[cell] = g.getMaximumLifespan();
+        freeEnergy[cell] = g.getMaximumFreeEnergy();
+        population++;
+        notifyCellChanged(cell);
+    }
+
+    //Records the death of the agent in a cell and releases its genotype. The feeding outcomes of a genotype are dropped once no agent
+    //carries it any more.
+    private void death(int cell, FeedTable g) {
+        if(lineage != null) {
+            lineage.recordDeath(agentId[cell]);
+        }
+        genotypes.release(g.genotype);
+        if(g.genotype.getPopulation() == 0) {
+            feedTables.remove(g.genotype);
+        }
+    }
+
+    //Chooses a neighbor at random from the vacant neighbors of a cell and reserves it. Returns -1 if there are no vacant neighbors.
+    private int reserveEmptyNeighbor(int cell) {
+        int row = cell / columns;
+        int column = cell % columns;
+
+        int vacant = ~occupancy.occupiedNeighbors(row, column) & 0xFF;
+        if(vacant == 0) {
+            return -1;
+        }
+
+        int i = OccupancyBitboard.select(vacant, useStream(cell).nextInt(Integer.bitCount(vacant)));
+        saveStream(cell);
+
+        int neighborRow = wrap(row + NEIGHBOR_DR[i], rows);
+        int neighborColumn = wrap(column + NEIGHBOR_DC[i], columns);
+        int neighbor = (neighborRow * columns) + neighborColumn;
+        occupancy.occupy(neighborRow, neighborColumn);
+        notifyCellChanged(neighbor);
+        if(!observers.isEmpty()) {
+            observers.cellReserved(tick, neighbor / columns, neighbor % columns);
+        }
+
+        return neighbor;
+    }
+
+    //Loads the random stream of a cell into the shared random instance.
+    private RandomStream useStream(int cell) {
+        random.reset(RandomStream.key(seed, cell), randomCounter[cell]);
+        return random;
+    }
+
+    private void saveStream(int cell) {
+        randomCounter[cell] = random.getCounter();
+    }
+
+    private void notifyCellChanged(int cell) {
+        if(!observers.isEmpty()) {
+            observers.cellChanged(cell / columns, cell % columns);
+        }
+    }
+
+    public GenotypeRegistry getGenotypes() {
+        return genotypes;
+    }
+
+    //The lineage of the agents, or null if it is not recorded
+    public LineageRecorder getLineage() {
+        return lineage;
+    }
+
+    public EfficiencyStatistics getStatistics() {
+        return statistics;
+    }
+
+    //How much nutrient is left in each cell, or null if nutrients never run out
+    public NutrientField getNutrientField() {
+        return field;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    //Total number of lifecycle steps (rest, feed or reproduce) taken by all agents so far.
+    public long getAgentSteps() {
+        return agentSteps;
+    }
+
+    public int getPopulation() {
+        return population;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public boolean isOccupied(int row, int column) {
+        return occupancy.isOccupied(row, column);
+    }
+
+    //The cells that are occupied by an agent or reserved for a child
+    public OccupancyBitboard getOccupancy() {
+        return occupancy;
+    }
+
+    private int wrap(int index, int size) {
+        if(index < 0) {
+            return (size + index) % size;
+        } else {
+            return (index % size);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package VivinPaliath;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The mutations that turn the genome of a parent into the genome of its child. Most children are exact copies of their parent, so the delta
+ * is usually empty, and a child can be sent to its new cell as a reference to its parent's genotype and this delta instead of a genome.
+ *
+ * Each mutation is recorded as the position in the parent genome where it happens, its type and its size. The random bits of insertions are
+ * kept, in order, in a single genome of their own.
+ */
+public final class MutationDelta {
+
+    public static final MutationDelta NONE = new MutationDelta(new int[0], new int[0], new int[0], 0, new Genome.Builder(0).build());
+
+    private final int[] positions;
+    private final int[] types;
+    private final int[] sizes;
+    private final int count;
+    private final Genome insertions;
+
+    private MutationDelta(int[] positions, int[] types, int[] sizes, int count, Genome insertions) {
+        this.positions = positions;
+        this.types = types;
+        this.sizes = sizes;
+        this.count = count;
+        this.insertions = insertions;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    //Number of mutations in the delta
+    public int size() {
+        return count;
+    }
+
+    int position(int mutation) {
+        return positions[mutation];
+    }
+
+    int type(int mutation) {
+        return types[mutation];
+    }
+
+    int size(int mutation) {
+        return sizes[mutation];
+    }
+
+    Genome getInsertions() {
+        return insertions;
+    }
+
+    //Writes the delta as its number of mutations, the position, type and size of each, and the bits of its insertions
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(count);
+        for(int i = 0; i < count; i++) {
+            out.writeInt(positions[i]);
+            out.writeInt(types[i]);
+            out.writeInt(sizes[i]);
+        }
+
+        insertions.writeTo(out);
+    }
+
+    public static MutationDelta readFrom(ByteBuffer in) {
+        int count = in.getInt();
+        int[] positions = new int[count];
+        int[] types = new int[count];
+        int[] sizes = new int[count];
+        for(int i = 0; i < count; i++) {
+            positions[i] = in.getInt();
+            types[i] = in.getInt();
+            sizes[i] = in.getInt();
+        }
+
+        Genome insertions = Genome.readFrom(in);
+        return count == 0 ? NONE : new MutationDelta(positions, types, sizes, count, insertions);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for(int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "" : ", ").append(types[i]).append('@').append(positions[i]).append('x').append(sizes[i]);
+        }
+
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Records mutations in the order of their positions.
+     */
+    static final class Builder {
+
+        private int[] positions = new int[4];
+        private int[] types = new int[4];
+        private int[] sizes = new int[4];
+        private int count = 0;
+        private final Genome.Builder insertions = new Genome.Builder(0);
+
+        Builder add(int position, int type, int size) {
+            if(count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+
+            positions[count] = position;
+            types[count] = type;
+            sizes[count] = size;
+            count++;
+
+            return this;
+        }
+
+        //The bits of insertions are drawn into the builder as they happen
+        Genome.Builder insertions() {
+            return insertions;
+        }
+
+        MutationDelta build() {
+            return count == 0 ? NONE : new MutationDelta(positions, types, sizes, count, insertions.build());
+        }
+    }
+}
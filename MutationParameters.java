@@ -0,0 +1,79 @@
+package VivinPaliath;
+
+/**
+ * The parameters that control how the genome of a child is mutated during reproduction.
+ */
+public final class MutationParameters {
+
+    //1% mutation rate. 1 bit is modified 55% of the time, 2 bits 30% of the time, 3 bits 10% of the time, and 4 bits 5% of the time.
+    public static final MutationParameters DEFAULT = new MutationParameters(0.01, new int[] {55, 30, 10, 5});
+
+    //Probability that a mutation starts at any given bit of the enzymes
+    private final double rate;
+
+    //Percentage of mutations that modify 1, 2, 3 ... bits. The percentages add up to 100.
+    private final int[] sizeDistribution;
+
+    public MutationParameters(double rate, int[] sizeDistribution) {
+        if(rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Mutation rate needs to be between 0 and 1");
+        }
+
+        if(sizeDistribution.length == 0) {
+            throw new IllegalArgumentException("Mutation size distribution needs at least one size");
+        }
+
+        int total = 0;
+        for(int percentage : sizeDistribution) {
+            if(percentage < 0) {
+                throw new IllegalArgumentException("Mutation size percentages cannot be negative");
+            }
+
+            total += percentage;
+        }
+
+        if(total != 100) {
+            throw new IllegalArgumentException("Mutation size percentages need to add up to 100");
+        }
+
+        this.rate = rate;
+        this.sizeDistribution = sizeDistribution.clone();
+    }
+
+    //Parses a size distribution written as percentages separated by slashes, e.g. 55/30/10/5
+    public static int[] parseSizeDistribution(String sizeDistribution) {
+        String[] percentages = sizeDistribution.trim().split("\\s*/\\s*");
+        int[] parsed = new int[percentages.length];
+        for(int i = 0; i < percentages.length; i++) {
+            parsed[i] = Integer.parseInt(percentages[i]);
+        }
+
+        return parsed;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int[] getSizeDistribution() {
+        return sizeDistribution.clone();
+    }
+
+    //Maximum number of bits that a single mutation can modify
+    public int getMaximumSize() {
+        return sizeDistribution.length;
+    }
+
+    //Picks the number of bits to modify from a percentile between 0 and 99.
+    public int size(int percentile) {
+        int cumulative = 0;
+        for(int i = 0; i < sizeDistribution.length; i++) {
+            cumulative += sizeDistribution[i];
+            if(percentile < cumulative) {
+                return i + 1;
+            }
+        }
+
+        return sizeDistribution.length;
+    }
+}
@@ -2,22 +2,73 @@ package VivinPaliath;
 
 public class Nutrient {
 
+    public static final int SIZE = 16;
+
+    //The nutrient in packed form: the bits of the nutrient are the lowest `size` bits of the value.
+    private int value = 0;
+    private int size = 0;
     private String bitPattern = null;
 
     private Nutrient(){}
 
     public Nutrient(String bitPattern) {
-        if(bitPattern.replaceAll(" ", "").length() > 16) {
+        this.bitPattern = bitPattern.replaceAll(" ", "");
+        if(this.bitPattern.length() > SIZE) {
             System.out.println("Nutrient must be a 16-bit string");
         }
-        this.bitPattern = bitPattern.replaceAll(" ", "");
+        this.value = Integer.parseInt(this.bitPattern, 2);
+        this.size = this.bitPattern.length();
+    }
+
+    //Creates a nutrient from the lowest `size` bits of the value
+    public Nutrient(int value, int size) {
+        if(size <= 0 || size > SIZE) {
+            throw new IllegalArgumentException("Nutrient size needs to be between 1 and " + SIZE);
+        }
+
+        this.value = value & ((1 << size) - 1);
+        this.size = size;
+
+        StringBuilder bitPattern = new StringBuilder(Integer.toBinaryString(this.value));
+        while(bitPattern.length() < size) {
+            bitPattern.insert(0, '0');
+        }
+        this.bitPattern = bitPattern.toString();
     }
 
     public int energyContent() {
-        return Integer.parseInt(bitPattern, 2);
+        return value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public int getSize() {
+        return size;
     }
 
     public String getBitPattern() {
         return this.bitPattern;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Nutrient nutrient = (Nutrient) o;
+
+        if (value != nutrient.value) return false;
+        if (size != nutrient.size) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = value;
+        result = 31 * result + size;
+        return result;
+    }
 }
@@ -0,0 +1,190 @@
+package VivinPaliath;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The concentration of the nutrient in each square of the grid, as a fraction of the concentration in fresh medium. The bit pattern of a
+ * square says which nutrient it holds, and the field says how much of it is left.
+ *
+ * An agent that feeds takes up a fixed fraction of the nutrient in its square, and gains energy in proportion to the concentration it found.
+ * Once per unit of time, every square exchanges a fraction of the difference in concentration with each of its four neighbors, and fresh
+ * medium flows in to make up a fraction of what every square is short of. The grid is a torus, like the rest of the model.
+ *
+ * The concentrations are kept in two arrays of floats, one for the current time unit and one for the next, which are swapped after every
+ * step of diffusion. Each square of the next array only depends on the current one, so bands of rows are computed in parallel, and the result
+ * does not depend on the number of threads. Diffusion never runs while agents feed, and an agent only ever touches its own square, so agents
+ * that feed concurrently do not need to synchronize either.
+ */
+public class NutrientField {
+
+    //Below this many rows, a band of the grid is diffused on the calling thread instead of being split any further
+    private static final int BAND_ROWS = 64;
+
+    //Heap used by each square: its concentration in the current time unit and in the next
+    static final int BYTES_PER_SQUARE = 2 * Float.BYTES;
+
+    private final int rows;
+    private final int columns;
+
+    //Fraction of the nutrient in its square that an agent takes up when it feeds, fraction of the difference with each neighbor that is
+    //exchanged per unit of time, and fraction of the shortfall from fresh medium that flows in per unit of time
+    private final float uptake;
+    private final float diffusion;
+    private final float inflow;
+
+    //The concentrations of the current time unit and room for those of the next one, in row-major order
+    private float[] concentration;
+    private float[] next;
+
+    //Number of whole time units that the field has been advanced by
+    private long time = 0;
+
+    public NutrientField(int rows, int columns, double uptake, double diffusion, double inflow) {
+        this.rows = rows;
+        this.columns = columns;
+        this.uptake = (float) uptake;
+        this.diffusion = (float) diffusion;
+        this.inflow = (float) inflow;
+        this.concentration = new float[rows * columns];
+        this.next = new float[rows * columns];
+
+        Arrays.fill(concentration, 1);
+    }
+
+    //Creates the field of an experiment, or returns null if its nutrients never run out
+    public static NutrientField create(ExperimentParameters parameters) {
+        if(!parameters.hasNutrientField()) {
+            return null;
+        }
+
+        return new NutrientField(parameters.getRows(), parameters.getColumns(), parameters.getNutrientUptake(),
+                parameters.getNutrientDiffusion(), parameters.getNutrientInflow());
+    }
+
+    //Takes up nutrient from the square of an agent that feeds, and returns the concentration that the agent found there
+    public double consume(int row, int column) {
+        int square = (row * columns) + column;
+        float found = concentration[square];
+
+        concentration[square] = found - (uptake * found);
+        return found;
+    }
+
+    public double getConcentration(int row, int column) {
+        return concentration[(row * columns) + column];
+    }
+
+    //Diffuses the nutrient once for every whole unit of time up to the given time. Bands of rows are diffused on the pool, or on the calling
+    //thread if the pool is null.
+    public void advanceTo(double time, ForkJoinPool pool) {
+        long until = (long) Math.floor(time);
+
+        while(this.time < until) {
+            if(pool == null || rows <= BAND_ROWS) {
+                diffuse(0, rows);
+            } else {
+                pool.invoke(new Band(0, rows));
+            }
+
+            float[] swapped = concentration;
+            concentration = next;
+            next = swapped;
+            this.time++;
+        }
+    }
+
+    //Works out the concentrations of the next time unit for the rows from firstRow up to, but not including, lastRow
+    private void diffuse(int firstRow, int lastRow) {
+        float[] current = concentration;
+        float[] updated = next;
+
+        for(int row = firstRow; row < lastRow; row++) {
+            int middle = row * columns;
+            int above = (row == 0 ? rows - 1 : row - 1) * columns;
+            int below = (row == rows - 1 ? 0 : row + 1) * columns;
+
+            //The first and last columns wrap around the edge of the row. The columns in between have both neighbors in the row, so the loop
+            //over them has no branches.
+            updated[middle] = update(current[middle], current[above] + current[below] + current[middle + columns - 1] +
+                    current[middle + (columns > 1 ? 1 : 0)]);
+
+            for(int column = 1; column < columns - 1; column++) {
+                updated[middle + column] = update(current[middle + column], current[above + column] + current[below + column] +
+                        current[middle + column - 1] + current[middle + column + 1]);
+            }
+
+            if(columns > 1) {
+                int last = columns - 1;
+                updated[middle + last] = update(current[middle + last], current[above + last] + current[below + last] +
+                        current[middle + last - 1] + current[middle]);
+            }
+        }
+    }
+
+    //The concentration of a square after a unit of time, given its concentration and the sum of the concentrations of its four neighbors
+    private float update(float square, float neighbors) {
+        float diffused = square + (diffusion * (neighbors - (4 * square)));
+        return diffused + (inflow * (1 - diffused));
+    }
+
+    //Writes the concentrations to a checkpoint
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(time);
+        for(float value : concentration) {
+            out.writeFloat(value);
+        }
+    }
+
+    public void readFrom(ByteBuffer in) {
+        time = in.getLong();
+        in.asFloatBuffer().get(concentration);
+        in.position(in.position() + (concentration.length * Float.BYTES));
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    //Mean concentration over the whole grid
+    public double getMeanConcentration() {
+        double sum = 0;
+        for(float value : concentration) {
+            sum += value;
+        }
+
+        return sum / concentration.length;
+    }
+
+    /**
+     * Diffuses a band of rows, splitting it in half until it is small enough to diffuse directly.
+     */
+    private class Band extends RecursiveAction {
+
+        private final int firstRow;
+        private final int lastRow;
+
+        Band(int firstRow, int lastRow) {
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+        }
+
+        @Override
+        protected void compute() {
+            if(lastRow - firstRow <= BAND_ROWS) {
+                diffuse(firstRow, lastRow);
+            } else {
+                int middle = (firstRow + lastRow) >>> 1;
+                invokeAll(new Band(firstRow, middle), new Band(middle, lastRow));
+            }
+        }
+    }
+}
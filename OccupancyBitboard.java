@@ -0,0 +1,197 @@
+package VivinPaliath;
+
+/**
+ * The occupancy of the cells of the grid, packed one bit per cell. Each row takes up a whole number of longs, so the three cells of a row
+ * around a cell usually sit next to each other in one word and are read with a single shift. The grid is a torus, so the first and last rows
+ * and columns are neighbors.
+ *
+ * The eight neighbors of a cell are numbered like the deltas of the arbiters: NW, N, NE, W, E, SW, S, SE. A bitmask of neighbors has bit i
+ * set for neighbor i, and a neighbor is picked out of a bitmask with a table of the positions of the set bits of every byte.
+ *
+ * A cell is occupied from the moment it is reserved for a child until its agent dies. Population counts and density maps are taken with
+ * popcounts.
+ *
+ * The board is not thread-safe. A word holds up to 64 columns, so cells that belong to different tiles can share a word, and occupy and
+ * vacate are plain read-modify-writes of that word. All writes must come from one thread at a time; the arbiters and the lockstep engine
+ * only ever write to the board serially.
+ */
+public class OccupancyBitboard {
+
+    //For each bitmask of neighbors, the positions of its set bits, lowest first, packed four bits per position
+    private static final long[] SET_BITS = new long[256];
+
+    static {
+        for(int mask = 0; mask < SET_BITS.length; mask++) {
+            int count = 0;
+            for(int bit = 0; bit < 8; bit++) {
+                if((mask & (1 << bit)) != 0) {
+                    SET_BITS[mask] |= (long) bit << (4 * count++);
+                }
+            }
+        }
+    }
+
+    private final int rows;
+    private final int columns;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public OccupancyBitboard(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.wordsPerRow = (columns + 63) >>> 6;
+        this.words = new long[rows * wordsPerRow];
+    }
+
+    //Creates a bitboard with the occupancy of a grid of CellStatus instances
+    public OccupancyBitboard(CellStatus[][] grid) {
+        this(grid.length, grid[0].length);
+
+        for(int i = 0; i < rows; i++) {
+            for(int j = 0; j < columns; j++) {
+                set(i, j, grid[i][j].isOccupied());
+            }
+        }
+    }
+
+    public boolean isOccupied(int row, int column) {
+        return (words[(row * wordsPerRow) + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    public void occupy(int row, int column) {
+        words[(row * wordsPerRow) + (column >>> 6)] |= 1L << column;
+    }
+
+    public void vacate(int row, int column) {
+        words[(row * wordsPerRow) + (column >>> 6)] &= ~(1L << column);
+    }
+
+    //Vacates the columns from firstColumn up to, but not including, lastColumn of a row
+    public void vacate(int row, int firstColumn, int lastColumn) {
+        for(int column = firstColumn; column < lastColumn; column++) {
+            vacate(row, column);
+        }
+    }
+
+    public void set(int row, int column, boolean occupied) {
+        if(occupied) {
+            occupy(row, column);
+        } else {
+            vacate(row, column);
+        }
+    }
+
+    //Bitmask of the occupied neighbors of a cell
+    public int occupiedNeighbors(int row, int column) {
+        int above = row == 0 ? rows - 1 : row - 1;
+        int below = row == rows - 1 ? 0 : row + 1;
+
+        int top = window(above, column);
+        int middle = window(row, column);
+        int bottom = window(below, column);
+
+        //The middle row contributes its left and right cells as W and E. The cell itself is not one of its neighbors.
+        return top | ((middle & 1) << 3) | ((middle & 4) << 2) | (bottom << 5);
+    }
+
+    //The occupancy of the cells to the left of, at and to the right of a column in a row, as the three lowest bits
+    private int window(int row, int column) {
+        int left = column == 0 ? columns - 1 : column - 1;
+        int right = column == columns - 1 ? 0 : column + 1;
+        int first = row * wordsPerRow;
+
+        if(left < right && (left >>> 6) == (right >>> 6)) {
+            return (int) (words[first + (left >>> 6)] >>> left) & 7;
+        }
+
+        //The window wraps around the edge of the row or straddles two words
+        return bit(first, left) | (bit(first, column) << 1) | (bit(first, right) << 2);
+    }
+
+    private int bit(int first, int column) {
+        return (int) (words[first + (column >>> 6)] >>> column) & 1;
+    }
+
+    //Returns the neighbor of the nth set bit of a bitmask of neighbors, counting from 0
+    public static int select(int neighbors, int n) {
+        return (int) (SET_BITS[neighbors] >>> (4 * n)) & 0xF;
+    }
+
+    //Number of occupied cells in the grid
+    public int count() {
+        int count = 0;
+        for(long word : words) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    //Number of occupied cells in the columns from firstColumn up to, but not including, lastColumn of a row
+    public int count(int row, int firstColumn, int lastColumn) {
+        int first = row * wordsPerRow;
+        int count = 0;
+
+        for(int word = firstColumn >>> 6; word <= (lastColumn - 1) >>> 6 && firstColumn < lastColumn; word++) {
+            long bits = words[first + word];
+            if(word == firstColumn >>> 6) {
+                bits &= -1L << firstColumn;
+            }
+            if(word == (lastColumn - 1) >>> 6) {
+                bits &= -1L >>> (63 - ((lastColumn - 1) & 63));
+            }
+
+            count += Long.bitCount(bits);
+        }
+
+        return count;
+    }
+
+    //The first occupied column of a row from column up to, but not including, lastColumn. Returns lastColumn if there is none.
+    public int nextOccupied(int row, int column, int lastColumn) {
+        int first = row * wordsPerRow;
+
+        while(column < lastColumn) {
+            long bits = words[first + (column >>> 6)] & (-1L << column);
+            if(bits != 0) {
+                return Math.min(lastColumn, (column & ~63) + Long.numberOfTrailingZeros(bits));
+            }
+
+            column = (column & ~63) + 64;
+        }
+
+        return lastColumn;
+    }
+
+    //Fraction of the cells that are occupied in each block of the grid. Blocks at the bottom and right edges may be smaller than the others.
+    public double[][] densityMap(int blockRows, int blockColumns) {
+        double[][] density = new double[(rows + blockRows - 1) / blockRows][(columns + blockColumns - 1) / blockColumns];
+
+        for(int i = 0; i < density.length; i++) {
+            int firstRow = i * blockRows;
+            int lastRow = Math.min(rows, firstRow + blockRows);
+
+            for(int j = 0; j < density[i].length; j++) {
+                int firstColumn = j * blockColumns;
+                int lastColumn = Math.min(columns, firstColumn + blockColumns);
+
+                int occupied = 0;
+                for(int row = firstRow; row < lastRow; row++) {
+                    occupied += count(row, firstColumn, lastColumn);
+                }
+
+                density[i][j] = (double) occupied / ((lastRow - firstRow) * (lastColumn - firstColumn));
+            }
+        }
+
+        return density;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+}
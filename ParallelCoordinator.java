@@ -0,0 +1,652 @@
+package VivinPaliath;
+
+import GenCol.entity;
+import model.modeling.content;
+import model.modeling.message;
+import view.modeling.ViewableAtomic;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Parallel DEVS coordinator for the Evolution model that executes the transitions of simultaneous cells on multiple cores.
+ *
+ * Each step of the simulation runs in three stages:
+ *
+ *  1. The outputs of all imminent models are computed. Cells do this in parallel.
+ *  2. The outputs are routed serially, in the order in which the models were added to Evolution, so that every model receives its inputs in
+ *     the same order no matter how many threads are used.
+ *  3. Every imminent model and every model that received input makes its internal, external or confluent transition. Cells do this in
+ *     parallel, because a cell only ever touches its own state. The transducer and the arbiters share state with observers and with each
+ *     other, so they make their transitions one at a time, in order, on the calling thread.
+ *
+ * The next events of the models are kept in a TimingWheel, and the models that receive input are collected as they are delivered to, so a
+ * step only ever touches the models that take part in it, however many models are passive.
+ *
+ * In a sparse experiment, cells come and go. A cell is created when a child is sent to a square that has none, and is removed as soon as its
+ * agent dies. The index of a removed model is given to the next model that is created, so models are put in order by their rank in
+ * Evolution instead, which is the index that they would have in a dense experiment.
+ *
+ * A sparse experiment can also be split between several processes, each of which runs a coordinator for the models of its Partition. The
+ * coordinators take every step together. The outputs that are meant for the models of other partitions are swapped with them before they
+ * are delivered, and all of the inputs of a step are delivered in the order of the ranks of the models that sent them, as they would be in a
+ * single process.
+ *
+ * If the nutrients of the experiment run out, its NutrientField is diffused at the start of every step that reaches a new unit of time,
+ * before any cell feeds, with the bands of rows of the grid split between the same threads.
+ */
+public class ParallelCoordinator {
+
+    //Below this many models, a batch of outputs or transitions is executed on the calling thread instead of being split any further.
+    private static final int BATCH_SIZE = 256;
+
+    private final Evolution evolution;
+    private final boolean sparse;
+    private final Map<ViewableAtomic, Integer> modelIndices = new IdentityHashMap<>();
+    private final Couplings couplings;
+
+    //The models, and the number of indices that have been handed out. The indices of removed models are null until they are handed out again.
+    private ViewableAtomic[] models;
+    private int modelCount = 0;
+    private int[] freeModels = new int[16];
+    private int freeModelCount = 0;
+
+    //The rank of each model in Evolution, and room to sort models by rank
+    private int[] ranks;
+    private long[] rankOrder;
+
+    //Whether each model can make its transitions concurrently with other models
+    private boolean[] concurrent;
+
+    //Time of the last and next event of each model
+    private double[] timeOfLastEvent;
+    private double[] timeOfNextEvent;
+
+    //The next events of the models, in time order. Rebuilt from the times of the next events after a checkpoint has been restored.
+    private final TimingWheel schedule;
+    private boolean scheduleStale = false;
+
+    //Inputs and outputs of each model for the current step. Null if a model has none.
+    private message[] inputs;
+    private message[] outputs;
+
+    //Models that received input in the current step, in the order in which they first received it
+    private int[] receivers;
+    private int receiverCount = 0;
+
+    //Models that take part in the current step, split into those that can make their transitions concurrently and those that cannot
+    private int[] imminent;
+    private int[] concurrentActive;
+    private int[] serialActive;
+    private boolean[] active;
+
+    //Whether each model has made a transition since the last full checkpoint
+    private boolean[] changed;
+
+    //The partition of the experiment that this coordinator runs, or null if it runs all of it. The time of the next event in any partition is
+    //agreed on after every step.
+    private final Partition partition;
+    private double nextTime = 0;
+
+    //Outputs of the current step that are delivered to models of this partition, with the rank of the model that sent them. They are put in
+    //order with the outputs that other partitions send before they are delivered.
+    private Couplings.Destination[] localDestinations = new Couplings.Destination[16];
+    private content[] localContents = new content[16];
+    private int[] localSources = new int[16];
+    private int localCount = 0;
+
+    //How much nutrient is left in each square, or null if nutrients never run out
+    private final NutrientField field;
+
+    //The genotypes of the experiment. Genotypes that are dropped during a step are only evicted from the cache of the registry after it.
+    private final GenotypeRegistry genotypes;
+
+    private final ForkJoinPool pool;
+    private double clock = 0;
+    private long transitions = 0;
+
+    public ParallelCoordinator(Evolution evolution, int threads) {
+        this(evolution, threads, null);
+    }
+
+    //Creates a coordinator for the models that a partition owns
+    public ParallelCoordinator(Evolution evolution, int threads, Partition partition) {
+        this.evolution = evolution;
+        this.sparse = evolution.getParameters().isSparse();
+        this.couplings = evolution.getCouplings();
+        this.partition = partition;
+        this.field = evolution.getNutrientField();
+        this.genotypes = evolution.getGenotypes();
+        genotypes.deferEviction();
+
+        List<ViewableAtomic> initialModels = new ArrayList<>(evolution.getModels());
+        initialModels.addAll(evolution.getSparseCells());
+
+        int capacity = Math.max(16, initialModels.size());
+        this.models = new ViewableAtomic[capacity];
+        this.ranks = new int[capacity];
+        this.rankOrder = new long[capacity];
+        this.concurrent = new boolean[capacity];
+        this.timeOfLastEvent = new double[capacity];
+        this.timeOfNextEvent = new double[capacity];
+        this.inputs = new message[capacity];
+        this.outputs = new message[capacity];
+        this.schedule = new TimingWheel(capacity);
+        this.receivers = new int[capacity];
+        this.imminent = new int[capacity];
+        this.concurrentActive = new int[capacity];
+        this.serialActive = new int[capacity];
+        this.active = new boolean[capacity];
+        this.changed = new boolean[capacity];
+
+        for(ViewableAtomic model : initialModels) {
+            if(partition == null || partition.owns(evolution.getRank(model))) {
+                add(model);
+            }
+        }
+
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    //Adds a model at the current time, and returns its index
+    private int add(ViewableAtomic model) {
+        int index = freeModelCount > 0 ? freeModels[--freeModelCount] : modelCount++;
+        if(index == models.length) {
+            grow(models.length * 2);
+        }
+
+        models[index] = model;
+        modelIndices.put(model, index);
+        ranks[index] = evolution.getRank(model);
+        concurrent[index] = model instanceof Cell;
+        if(concurrent[index]) {
+            ((Cell) model).deferLineage();
+        }
+        timeOfLastEvent[index] = clock;
+        timeOfNextEvent[index] = clock + model.ta();
+        schedule.schedule(index, timeOfNextEvent[index]);
+
+        return index;
+    }
+
+    //Removes a model. Its index is handed out to the next model that is added.
+    private void remove(int model) {
+        schedule.cancel(model);
+        modelIndices.remove(models[model]);
+        models[model] = null;
+        inputs[model] = null;
+        outputs[model] = null;
+        changed[model] = false;
+
+        if(freeModelCount == freeModels.length) {
+            freeModels = Arrays.copyOf(freeModels, freeModels.length * 2);
+        }
+        freeModels[freeModelCount++] = model;
+    }
+
+    private void grow(int capacity) {
+        models = Arrays.copyOf(models, capacity);
+        ranks = Arrays.copyOf(ranks, capacity);
+        rankOrder = Arrays.copyOf(rankOrder, capacity);
+        concurrent = Arrays.copyOf(concurrent, capacity);
+        timeOfLastEvent = Arrays.copyOf(timeOfLastEvent, capacity);
+        timeOfNextEvent = Arrays.copyOf(timeOfNextEvent, capacity);
+        inputs = Arrays.copyOf(inputs, capacity);
+        outputs = Arrays.copyOf(outputs, capacity);
+        schedule.grow(capacity);
+        receivers = Arrays.copyOf(receivers, capacity);
+        imminent = Arrays.copyOf(imminent, capacity);
+        concurrentActive = Arrays.copyOf(concurrentActive, capacity);
+        serialActive = Arrays.copyOf(serialActive, capacity);
+        active = Arrays.copyOf(active, capacity);
+        changed = Arrays.copyOf(changed, capacity);
+    }
+
+    //Schedules every model according to its initial time-advance.
+    public void initialize() {
+        clock = 0;
+        for(int i = 0; i < modelCount; i++) {
+            if(models[i] != null) {
+                timeOfLastEvent[i] = 0;
+                timeOfNextEvent[i] = models[i].ta();
+            }
+        }
+
+        rebuildSchedule();
+        synchronize();
+    }
+
+    private void rebuildSchedule() {
+        schedule.reset(clock);
+        for(int i = 0; i < modelCount; i++) {
+            if(models[i] != null) {
+                schedule.schedule(i, timeOfNextEvent[i]);
+            }
+        }
+
+        scheduleStale = false;
+    }
+
+    //Injects a value on an input port of Evolution at the current time. The receiving models make their transitions immediately.
+    public void inject(String port, entity value) {
+        for(Couplings.Destination destination : couplings.destinations(evolution, port)) {
+            deliver(destination, destination.contentFor(value));
+        }
+
+        transition(clock, 0);
+        synchronize();
+    }
+
+    //Executes the given number of steps, stopping early if no model has anything left to do.
+    public void simulate(int steps) {
+        for(int i = 0; i < steps && step(); i++);
+    }
+
+    //Executes all of the events that happen at the time of the next event. Returns false if there is no next event.
+    public boolean step() {
+        double time = getTN();
+        if(time == ViewableAtomic.INFINITY) {
+            return false;
+        }
+
+        clock = time;
+        if(field != null) {
+            field.advanceTo(time, pool);
+        }
+
+        //The outputs are routed in model order below, so the imminent models are put in that order. A partition may have no imminent models
+        //when another one has.
+        int imminentCount = schedule.nextTime() == time ? schedule.extract(time, imminent) : 0;
+        sortByRank(imminent, imminentCount);
+
+        computeOutputs(imminentCount);
+
+        if(partition != null) {
+            routeAcrossPartitions(imminentCount);
+            transition(time, imminentCount);
+            partition.releaseReceived(evolution.getGenotypes());
+            synchronize();
+            return true;
+        }
+
+        //Route the outputs in model order so that inputs are always assembled in the same order
+        for(int i = 0; i < imminentCount; i++) {
+            int source = imminent[i];
+            message output = outputs[source];
+
+            for(int j = 0; j < output.getLength(); j++) {
+                content c = output.read(j);
+                List<Couplings.Destination> destinations = destinations(source, c);
+                for(int k = 0; k < destinations.size(); k++) {
+                    deliver(destinations.get(k), c);
+                }
+            }
+
+            outputs[source] = null;
+        }
+
+        transition(time, imminentCount);
+        return true;
+    }
+
+    //Puts models in order of their rank
+    private void sortByRank(int[] indices, int count) {
+        for(int i = 0; i < count; i++) {
+            rankOrder[i] = ((long) ranks[indices[i]] << 32) | indices[i];
+        }
+
+        Arrays.sort(rankOrder, 0, count);
+        for(int i = 0; i < count; i++) {
+            indices[i] = (int) rankOrder[i];
+        }
+    }
+
+    //Routes the outputs of a step of a partition. Outputs for models of this partition are held back, and are delivered together with the
+    //outputs that the other partitions send, in the order of the ranks of the models that sent them.
+    private void routeAcrossPartitions(int imminentCount) {
+        localCount = 0;
+
+        for(int i = 0; i < imminentCount; i++) {
+            int source = imminent[i];
+            message output = outputs[source];
+
+            for(int j = 0; j < output.getLength(); j++) {
+                content c = output.read(j);
+                List<Couplings.Destination> destinations = destinations(source, c);
+
+                //A child that is sent to a square of another partition has no destination here
+                if(destinations.isEmpty() && concurrent[source]) {
+                    int neighbor = evolution.neighborRank((Cell) models[source], c.getPortName());
+                    if(neighbor >= 0) {
+                        partition.send(ranks[source], neighbor, c.getValue());
+                    }
+                }
+
+                for(int k = 0; k < destinations.size(); k++) {
+                    Couplings.Destination destination = destinations.get(k);
+                    if(modelIndices.containsKey(destination.getModel())) {
+                        holdBack(ranks[source], destination, c);
+                    } else {
+                        partition.send(ranks[source], evolution.getRank(destination.getModel()), c.getValue());
+                    }
+                }
+            }
+
+            outputs[source] = null;
+        }
+
+        List<Partition.Message> received = partition.exchange(evolution.getGenotypes());
+        for(int i = 0, j = 0; i < localCount || j < received.size(); ) {
+            if(j == received.size() || (i < localCount && localSources[i] < received.get(j).getSource())) {
+                deliver(localDestinations[i], localContents[i]);
+                localDestinations[i] = null;
+                localContents[i] = null;
+                i++;
+            } else {
+                Partition.Message remote = received.get(j++);
+                int index = modelOfRank(remote.getDestination());
+                deliver(index, models[index].makeContent(remote.getPort(), remote.getValue()));
+            }
+        }
+    }
+
+    private void holdBack(int source, Couplings.Destination destination, content c) {
+        if(localCount == localSources.length) {
+            localDestinations = Arrays.copyOf(localDestinations, localCount * 2);
+            localContents = Arrays.copyOf(localContents, localCount * 2);
+            localSources = Arrays.copyOf(localSources, localCount * 2);
+        }
+
+        localDestinations[localCount] = destination;
+        localContents[localCount] = c;
+        localSources[localCount] = source;
+        localCount++;
+    }
+
+    //Agrees on the time of the next event with the other partitions
+    private void synchronize() {
+        if(partition != null) {
+            nextTime = partition.earliest(schedule.nextTime());
+        }
+    }
+
+    //The destinations of a port of a model. In a sparse experiment, a child that is sent to a square without a cell gets a new cell, unless
+    //the square belongs to another partition.
+    private List<Couplings.Destination> destinations(int source, content c) {
+        List<Couplings.Destination> destinations = couplings.destinations(models[source], c.getPortName(), c.getValue());
+
+        if(destinations.isEmpty() && sparse && concurrent[source]) {
+            int neighbor = evolution.neighborRank((Cell) models[source], c.getPortName());
+            if(neighbor >= 0 && (partition == null || partition.owns(neighbor))) {
+                modelOfRank(neighbor);
+                destinations = couplings.destinations(models[source], c.getPortName(), c.getValue());
+            }
+        }
+
+        return destinations;
+    }
+
+    //Computes the outputs of the imminent models.
+    private void computeOutputs(int imminentCount) {
+        if(pool == null || imminentCount <= BATCH_SIZE) {
+            for(int i = 0; i < imminentCount; i++) {
+                outputs[imminent[i]] = models[imminent[i]].out();
+            }
+        } else {
+            pool.invoke(new Batch(imminent, 0, imminentCount) {
+                @Override
+                void execute(int model) {
+                    outputs[model] = models[model].out();
+                }
+            });
+        }
+    }
+
+    //Delivers a content to a destination. A content is only a port name and a value, so it is passed on as it is when the destination port has
+    //the same name as the port it was sent on.
+    private void deliver(Couplings.Destination destination, content c) {
+        deliver(modelIndices.get(destination.getModel()), destination.getPort().equals(c.getPortName()) ? c : destination.contentFor(c.getValue()));
+    }
+
+    private void deliver(int index, content c) {
+        if(inputs[index] == null) {
+            inputs[index] = new message();
+            receivers[receiverCount++] = index;
+        }
+
+        inputs[index].add(c);
+    }
+
+    //Applies the transitions of the imminent models, and of every model that has received input, at the given time.
+    private void transition(final double time, int imminentCount) {
+        int concurrentCount = 0;
+        int serialCount = 0;
+
+        for(int i = 0; i < imminentCount; i++) {
+            active[imminent[i]] = true;
+        }
+
+        //Merge the imminent models with the models that received input, in model order, so that models make their transitions in the same
+        //order as they would if every model were checked in turn
+        sortByRank(receivers, receiverCount);
+        for(int i = 0, j = 0; i < imminentCount || j < receiverCount; ) {
+            int model;
+            if(j == receiverCount || (i < imminentCount && ranks[imminent[i]] <= ranks[receivers[j]])) {
+                model = imminent[i++];
+                if(j < receiverCount && receivers[j] == model) {
+                    j++;
+                }
+            } else {
+                model = receivers[j++];
+            }
+
+            if(concurrent[model]) {
+                concurrentActive[concurrentCount++] = model;
+            } else {
+                serialActive[serialCount++] = model;
+            }
+        }
+        receiverCount = 0;
+
+        if(pool == null || concurrentCount <= BATCH_SIZE) {
+            for(int i = 0; i < concurrentCount; i++) {
+                transition(concurrentActive[i], time);
+            }
+        } else {
+            pool.invoke(new Batch(concurrentActive, 0, concurrentCount) {
+                @Override
+                void execute(int model) {
+                    transition(model, time);
+                }
+            });
+        }
+
+        for(int i = 0; i < serialCount; i++) {
+            transition(serialActive[i], time);
+        }
+
+        //The schedule is not thread-safe, so the models that made their transitions in parallel are rescheduled afterwards. In a sparse
+        //experiment, the cells whose agents have just died are removed instead. The births and deaths that the cells held on to are recorded
+        //here too, in the order of their ranks, so that agents get the same ids however many threads are used.
+        for(int i = 0; i < concurrentCount; i++) {
+            int model = concurrentActive[i];
+            ((Cell) models[model]).recordLineage();
+
+            if(sparse && ((Cell) models[model]).getBacterium() == null) {
+                evolution.removeCell((Cell) models[model]);
+                remove(model);
+            } else {
+                schedule.schedule(model, timeOfNextEvent[model]);
+            }
+        }
+
+        for(int i = 0; i < serialCount; i++) {
+            schedule.schedule(serialActive[i], timeOfNextEvent[serialActive[i]]);
+        }
+
+        genotypes.trimCache();
+
+        transitions += concurrentCount + serialCount;
+    }
+
+    //Applies the internal, external or confluent transition of a single model.
+    private void transition(int model, double time) {
+        ViewableAtomic atomic = models[model];
+        message input = inputs[model];
+        double elapsed = time - timeOfLastEvent[model];
+
+        if(active[model] && input != null) {
+            atomic.deltcon(elapsed, input);
+        } else if(active[model]) {
+            atomic.deltint();
+        } else {
+            atomic.deltext(elapsed, input);
+        }
+
+        inputs[model] = null;
+        active[model] = false;
+        changed[model] = true;
+        timeOfLastEvent[model] = time;
+        timeOfNextEvent[model] = time + atomic.ta();
+    }
+
+    //Time of the next event of any model, or INFINITY if all models are passive. The models of every partition are included.
+    public double getTN() {
+        if(scheduleStale) {
+            rebuildSchedule();
+        }
+
+        return partition == null ? schedule.nextTime() : nextTime;
+    }
+
+    //Whether every event of the current instant has been executed. The models are only checkpointed at such a point, when no messages are
+    //in flight.
+    public boolean isQuiescent() {
+        return getTN() > clock;
+    }
+
+    //Number of model indices that have been handed out. Indices of models that were removed are null.
+    int getModelCount() {
+        return modelCount;
+    }
+
+    ViewableAtomic getModel(int model) {
+        return models[model];
+    }
+
+    int getRank(int model) {
+        return ranks[model];
+    }
+
+    //Number of models in a dense experiment with the same parameters
+    int getRankCount() {
+        return evolution.getRankCount();
+    }
+
+    //Index of the model of a rank. In a sparse experiment, a cell is created if the rank has none.
+    int modelOfRank(int rank) {
+        ViewableAtomic model = evolution.modelOfRank(rank, clock);
+        Integer index = modelIndices.get(model);
+
+        return index != null ? index : add(model);
+    }
+
+    //Drops every cell of a sparse experiment, so that the cells of a checkpoint can be restored in their place
+    void clearCells() {
+        for(int i = 0; i < modelCount; i++) {
+            if(models[i] instanceof Cell) {
+                Cell cell = (Cell) models[i];
+                cell.clear();
+                evolution.removeCell(cell);
+                remove(i);
+            }
+        }
+    }
+
+    double getTimeOfLastEvent(int model) {
+        return timeOfLastEvent[model];
+    }
+
+    double getTimeOfNextEvent(int model) {
+        return timeOfNextEvent[model];
+    }
+
+    boolean isChanged(int model) {
+        return changed[model];
+    }
+
+    void clearChanged() {
+        Arrays.fill(changed, false);
+    }
+
+    //Restores the clock and the number of transitions from a checkpoint. The models are restored one at a time with restoreModel.
+    void restore(double clock, long transitions) {
+        this.clock = clock;
+        this.transitions = transitions;
+        this.scheduleStale = true;
+    }
+
+    void restoreModel(int model, double timeOfLastEvent, double timeOfNextEvent) {
+        this.timeOfLastEvent[model] = timeOfLastEvent;
+        this.timeOfNextEvent[model] = timeOfNextEvent;
+        this.scheduleStale = true;
+    }
+
+    public double getClock() {
+        return clock;
+    }
+
+    //Total number of transitions executed so far
+    public long getTransitions() {
+        return transitions;
+    }
+
+    public void shutdown() {
+        if(pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Executes an action for a range of models, splitting the range in half until it is small enough to execute directly.
+     */
+    private abstract class Batch extends RecursiveAction {
+
+        private final int[] indices;
+        private final int from;
+        private final int to;
+
+        Batch(int[] indices, int from, int to) {
+            this.indices = indices;
+            this.from = from;
+            this.to = to;
+        }
+
+        abstract void execute(int model);
+
+        @Override
+        protected void compute() {
+            if(to - from <= BATCH_SIZE) {
+                for(int i = from; i < to; i++) {
+                    execute(indices[i]);
+                }
+            } else {
+                final Batch outer = this;
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new Batch(indices, from, middle) {
+                    @Override
+                    void execute(int model) {
+                        outer.execute(model);
+                    }
+                }, new Batch(indices, middle, to) {
+                    @Override
+                    void execute(int model) {
+                        outer.execute(model);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package VivinPaliath;
+
+import GenCol.entity;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs one experiment for every combination of values in a parameter grid. The experiments are independent, so they run concurrently on a
+ * work-stealing pool. Each experiment builds its own model from its own ExperimentParameters and shares no state with the others. A summary
+ * of every experiment is appended to a single CSV file as soon as the experiment finishes.
+ *
+ * The parameter grid is a text file with one parameter per line, followed by the comma-separated values to try:
+ *
+ *     # Lines that start with # are comments
+ *     rows = 30, 60
+ *     mutation_rate = 0.005, 0.01, 0.02
+ *     mutation_sizes = 55/30/10/5, 100
+ *     enzymes = 0011100100111000, 0011100100111000+1100011011000111
+ *
+ * The parameters are rows, columns, tile_rows, tile_columns, bacteria, lifespan, free_energy, reproduction_threshold, metabolic_energy,
+ * enzymes (bit patterns joined with +), first_nutrient, target_nutrient, maximum_samples, sampling_interval, mutation_rate, mutation_sizes
+ * (percentages of 1, 2, 3 ... bit mutations, joined with /), nutrient_uptake, nutrient_diffusion, nutrient_inflow and seed. Parameters that
+ * are not in the grid keep their default values. Unless the grid has a seed, each combination is run --replicates times with the seeds
+ * --seed, --seed + 1, and so on.
+ *
+ * The number of experiments that run at the same time is bounded by --threads and by an estimate of the heap that the largest experiment
+ * needs, worked out from the size of its grid, so that a sweep over large grids does not run so many at once that it exhausts the heap. The
+ * estimate only limits concurrency. It is not a bound on what an experiment uses, and a single experiment with an unusually large population
+ * or number of genotypes can still run out of memory.
+ *
+ * Usage: ParameterSweep --grid file [--output file] [--engine lockstep|devs] [--threads n] [--time t] [--replicates r] [--seed s]
+ *                       [--until-functional-enzyme]
+ */
+public class ParameterSweep {
+
+    //Heap used by each cell of the DEVS model: the cell, its ports, its messages and its couplings. Measured at a little over 4 KB per cell
+    //of a dense grid once the population has grown, and doubled as a margin. A sparse grid is estimated as if it were dense.
+    private static final long DEVS_BYTES_PER_CELL = 8 * 1024;
+
+    //Heap used by an experiment regardless of the size of its grid, such as its genotypes and statistics
+    private static final long BYTES_PER_EXPERIMENT = 4 * 1024 * 1024;
+
+    //Fraction of the maximum heap that the experiments may use together
+    private static final double MEMORY_FRACTION = 0.75;
+
+    private File grid = null;
+    private File output = new File("sweep.csv");
+    private String engine = "lockstep";
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private double endTime = 10000;
+    private int replicates = 1;
+    private long seed = 0;
+    private boolean stopOnFunctionalEnzyme = false;
+
+    //Names of the parameters in the grid, in the order in which they appear in the file, and the values of each
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, List<String>> values = new LinkedHashMap<>();
+
+    private PrintWriter results;
+
+    public static void main(String[] args) throws IOException {
+        ParameterSweep sweep = new ParameterSweep();
+        sweep.parseArguments(args);
+        sweep.readGrid();
+        sweep.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for(int i = 0; i < args.length; i++) {
+            String argument = args[i];
+
+            if(argument.equals("--grid")) {
+                grid = new File(value(args, ++i, argument));
+            } else if(argument.equals("--output")) {
+                output = new File(value(args, ++i, argument));
+            } else if(argument.equals("--engine")) {
+                engine = value(args, ++i, argument);
+            } else if(argument.equals("--threads")) {
+                threads = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--time")) {
+                endTime = Double.parseDouble(value(args, ++i, argument));
+            } else if(argument.equals("--replicates")) {
+                replicates = Integer.parseInt(value(args, ++i, argument));
+            } else if(argument.equals("--seed")) {
+                seed = Long.parseLong(value(args, ++i, argument));
+            } else if(argument.equals("--until-functional-enzyme")) {
+                stopOnFunctionalEnzyme = true;
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + argument);
+            }
+        }
+
+        if(grid == null) {
+            throw new IllegalArgumentException("A parameter grid is required (--grid file)");
+        }
+
+        if(!engine.equals("lockstep") && !engine.equals("devs")) {
+            throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    private static String value(String[] args, int index, String argument) {
+        if(index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + argument);
+        }
+
+        return args[index];
+    }
+
+    private void readGrid() throws IOException {
+        for(String line : Files.readAllLines(grid.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int separator = line.indexOf('=');
+            if(separator < 0) {
+                throw new IllegalArgumentException("Expected <parameter> = <values> but found: " + line);
+            }
+
+            String name = line.substring(0, separator).trim();
+            List<String> parameterValues = new ArrayList<>();
+            for(String parameterValue : line.substring(separator + 1).split(",")) {
+                parameterValues.add(parameterValue.trim());
+            }
+
+            if(values.put(name, parameterValues) == null) {
+                names.add(name);
+            }
+        }
+
+        //Validate every value once up front, so that a typo fails the sweep before any experiment runs
+        for(String name : names) {
+            for(String parameterValue : values.get(name)) {
+                set(ExperimentParameters.builder(), name, parameterValue);
+            }
+        }
+    }
+
+    public void run() throws IOException {
+        List<Map<String, String>> combinations = combinations();
+        boolean seeded = values.containsKey("seed");
+
+        List<Experiment> experiments = new ArrayList<>();
+        for(Map<String, String> combination : combinations) {
+            for(int replicate = 0; replicate < (seeded ? 1 : replicates); replicate++) {
+                ExperimentParameters.Builder builder = ExperimentParameters.builder().seed(seed + replicate);
+                for(Map.Entry<String, String> parameter : combination.entrySet()) {
+                    set(builder, parameter.getKey(), parameter.getValue());
+                }
+
+                experiments.add(new Experiment(experiments.size(), combination, builder.build()));
+            }
+        }
+
+        int parallelism = parallelism(experiments);
+        System.out.println("Running " + experiments.size() + " experiments, " + parallelism + " at a time");
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try(PrintWriter results = new PrintWriter(new BufferedWriter(new FileWriter(output)))) {
+            this.results = results;
+            results.println(header());
+            results.flush();
+
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(experiments);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //Every combination of the values of the parameters in the grid
+    private List<Map<String, String>> combinations() {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<String, String>());
+
+        for(String name : names) {
+            List<Map<String, String>> extended = new ArrayList<>();
+            for(Map<String, String> combination : combinations) {
+                for(String parameterValue : values.get(name)) {
+                    Map<String, String> copy = new LinkedHashMap<>(combination);
+                    copy.put(name, parameterValue);
+                    extended.add(copy);
+                }
+            }
+
+            combinations = extended;
+        }
+
+        return combinations;
+    }
+
+    //Number of experiments that can run at the same time without the largest of them exhausting the heap
+    private int parallelism(List<Experiment> experiments) {
+        long largest = 0;
+        for(Experiment experiment : experiments) {
+            largest = Math.max(largest, estimateMemory(experiment.parameters));
+        }
+
+        long budget = (long) (Runtime.getRuntime().maxMemory() * MEMORY_FRACTION);
+        int fits = (int) Math.max(1, budget / Math.max(1, largest));
+        return Math.max(1, Math.min(threads, Math.min(fits, experiments.size())));
+    }
+
+    //Estimates the heap that an experiment needs. The lockstep engine keeps its cells in arrays, so its figure follows from their layout.
+    private long estimateMemory(ExperimentParameters parameters) {
+        long cells = (long) parameters.getRows() * parameters.getColumns();
+        long bytesPerCell = engine.equals("devs") ? DEVS_BYTES_PER_CELL : LockstepEngine.BYTES_PER_CELL;
+        if(parameters.hasNutrientField()) {
+            bytesPerCell += NutrientField.BYTES_PER_SQUARE;
+        }
+
+        return BYTES_PER_EXPERIMENT + (cells * bytesPerCell);
+    }
+
+    private static void set(ExperimentParameters.Builder builder, String name, String value) {
+        switch(name) {
+            case "rows":
+                builder.rows(Integer.parseInt(value));
+                break;
+            case "columns":
+                builder.columns(Integer.parseInt(value));
+                break;
+            case "tile_rows":
+                builder.tileRows(Integer.parseInt(value));
+                break;
+            case "tile_columns":
+                builder.tileColumns(Integer.parseInt(value));
+                break;
+            case "bacteria":
+                builder.bacteria(Integer.parseInt(value));
+                break;
+            case "lifespan":
+                builder.lifespan(Integer.parseInt(value));
+                break;
+            case "free_energy":
+                builder.freeEnergy(Integer.parseInt(value));
+                break;
+            case "reproduction_threshold":
+                builder.reproductionThreshold(Integer.parseInt(value));
+                break;
+            case "metabolic_energy":
+                builder.metabolicEnergy(Integer.parseInt(value));
+                break;
+            case "enzymes":
+                List<Enzyme> enzymes = new ArrayList<>();
+                for(String enzyme : value.split("\\+")) {
+                    enzymes.add(new Enzyme(enzyme.trim()));
+                }
+                builder.enzymes(enzymes);
+                break;
+            case "first_nutrient":
+                builder.firstNutrient(new Nutrient(value));
+                break;
+            case "target_nutrient":
+                builder.targetNutrient(new Nutrient(value));
+                break;
+            case "maximum_samples":
+                builder.maximumSamples(Integer.parseInt(value));
+                break;
+            case "sampling_interval":
+                builder.samplingInterval(Double.parseDouble(value));
+                break;
+            case "mutation_rate":
+                builder.mutationRate(Double.parseDouble(value));
+                break;
+            case "mutation_sizes":
+                builder.mutationSizes(MutationParameters.parseSizeDistribution(value));
+                break;
+            case "nutrient_uptake":
+                builder.nutrientUptake(Double.parseDouble(value));
+                break;
+            case "nutrient_diffusion":
+                builder.nutrientDiffusion(Double.parseDouble(value));
+                break;
+            case "nutrient_inflow":
+                builder.nutrientInflow(Double.parseDouble(value));
+                break;
+            case "seed":
+                builder.seed(Long.parseLong(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown parameter " + name);
+        }
+    }
+
+    private String header() {
+        StringBuilder header = new StringBuilder("experiment,seed");
+        for(String name : names) {
+            if(!name.equals("seed")) {
+                header.append(',').append(name);
+            }
+        }
+
+        return header.append(",end_time,first_functional_enzyme_time,peak_average_efficiency,peak_interval,final_population,elapsed_ms,error").toString();
+    }
+
+    //Appends the summary of an experiment to the results. Experiments finish in any order, so lines are written one at a time.
+    private synchronized void write(Experiment experiment, double time, EfficiencyStatistics statistics, int population, long elapsed,
+                                    Exception error) {
+
+        StringBuilder line = new StringBuilder();
+        line.append(experiment.index).append(',').append(experiment.parameters.getSeed());
+        for(String name : names) {
+            if(!name.equals("seed")) {
+                line.append(',').append(quote(experiment.combination.get(name)));
+            }
+        }
+
+        if(statistics != null) {
+            line.append(',').append(time)
+                .append(',').append(statistics.getFirstFunctionalEnzymeTime())
+                .append(',').append(statistics.getPeakAverageEfficiency())
+                .append(',').append(statistics.getPeakInterval())
+                .append(',').append(population);
+        } else {
+            line.append(",,,,,");
+        }
+
+        line.append(',').append(elapsed).append(',');
+        if(error != null) {
+            line.append(quote(error.toString()));
+        }
+
+        results.println(line);
+        results.flush();
+    }
+
+    private static String quote(String value) {
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * A single experiment of the sweep. Each experiment creates its own model, runs it to completion, and writes its summary.
+     */
+    private class Experiment extends RecursiveAction {
+
+        private final int index;
+        private final Map<String, String> combination;
+        private final ExperimentParameters parameters;
+
+        Experiment(int index, Map<String, String> combination, ExperimentParameters parameters) {
+            this.index = index;
+            this.combination = combination;
+            this.parameters = parameters;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.currentTimeMillis();
+
+            try {
+                if(engine.equals("devs")) {
+                    runDevs(start);
+                } else {
+                    runLockstep(start);
+                }
+            } catch(RuntimeException | OutOfMemoryError e) {
+                write(this, 0, null, 0, System.currentTimeMillis() - start, e instanceof Exception ? (Exception) e : new RuntimeException(e));
+            }
+        }
+
+        private void runLockstep(long start) {
+            LockstepEngine lockstepEngine = LockstepEngine.createExperiment(parameters);
+            EfficiencyStatistics statistics = lockstepEngine.getStatistics();
+
+            while(lockstepEngine.getTick() < endTime && lockstepEngine.getPopulation() > 0 && !stopConditionMet(statistics)) {
+                lockstepEngine.step();
+            }
+
+            write(this, lockstepEngine.getTick(), statistics, lockstepEngine.getPopulation(), System.currentTimeMillis() - start, null);
+        }
+
+        private void runDevs(long start) {
+            Evolution evolution = new Evolution(false, parameters);
+            EfficiencyStatistics statistics = evolution.getTransducer().getStatistics();
+
+            //The experiments already keep the pool busy, so each one is simulated on its own thread
+            ParallelCoordinator coordinator = new ParallelCoordinator(evolution, 1);
+            coordinator.initialize();
+            coordinator.inject(Evolution.Port.START.portName(), new entity("start"));
+
+            while(coordinator.getTN() <= endTime && !stopConditionMet(statistics)) {
+                coordinator.step();
+            }
+
+            write(this, coordinator.getClock(), statistics, evolution.getPopulation(), System.currentTimeMillis() - start, null);
+        }
+
+        private boolean stopConditionMet(EfficiencyStatistics statistics) {
+            return stopOnFunctionalEnzyme && statistics.isFirstFunctionalEnzymeFound();
+        }
+    }
+}
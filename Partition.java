@@ -0,0 +1,340 @@
+package VivinPaliath;
+
+import GenCol.entity;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * One of several processes that simulate a sparse experiment together. The grid is split into horizontal bands of whole rows of tiles. Each
+ * partition owns the arbiters of the tiles in its band and the cells of their squares, and partition 0 also owns the transducer.
+ *
+ * Models are identified across partitions by their rank in Evolution. A message to a model of another partition is written to a frame for
+ * the partition that owns it, and the partitions swap frames over loopback TCP once per step of the ParallelCoordinator. Only three kinds of
+ * messages ever leave a band: children sent to a square of another band, reservations between the arbiters of neighboring tiles, and feed
+ * messages for the transducer.
+ *
+ * The partitions take every step together. Before a step they agree on the time of the earliest event in any of them, so the steps of an
+ * instant line up, and every model receives the same inputs in the same order as it would in a single process. Reservations are answered in
+ * the instant in which they are made, so a partition cannot run ahead of the others.
+ */
+public class Partition implements Closeable {
+
+    //Kinds of messages in a frame
+    private static final byte CHILD = 0;
+    private static final byte RESERVATION = 1;
+    private static final byte CELL_MESSAGE = 2;
+
+    //How long to keep trying to connect to a partition that is not listening yet
+    private static final long CONNECT_TIMEOUT = 60000;
+
+    //Stands in for the frames of a partition whose connection was closed
+    private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+    private final int index;
+    private final int count;
+    private final Tiling tiling;
+
+    //Connections to the other partitions, and the frames received from each of them. The entries of this partition are null.
+    private final Socket[] sockets;
+    private final DataOutputStream[] outputs;
+    private final List<BlockingQueue<ByteBuffer>> inputs = new ArrayList<>();
+
+    //The frame that is being written for each partition
+    private final ByteArrayOutputStream[] frames;
+    private final DataOutputStream[] frameOutputs;
+
+    //Messages received in the last exchange
+    private final List<Message> received = new ArrayList<>();
+
+    /**
+     * A message from a model of another partition to a model of this one.
+     */
+    static final class Message {
+
+        private final int source;
+        private final int destination;
+        private final String port;
+        private final entity value;
+
+        private Message(int source, int destination, String port, entity value) {
+            this.source = source;
+            this.destination = destination;
+            this.port = port;
+            this.value = value;
+        }
+
+        int getSource() {
+            return source;
+        }
+
+        int getDestination() {
+            return destination;
+        }
+
+        String getPort() {
+            return port;
+        }
+
+        entity getValue() {
+            return value;
+        }
+    }
+
+    public Partition(int index, int count, ExperimentParameters parameters) {
+        this.index = index;
+        this.count = count;
+        this.tiling = new Tiling(parameters.getRows(), parameters.getColumns(), parameters.getTileRows(), parameters.getTileColumns());
+
+        if(count < 1 || count > tiling.getTilesPerColumn()) {
+            throw new IllegalArgumentException("There can be between 1 and " + tiling.getTilesPerColumn() + " partitions, one per row of tiles");
+        }
+
+        if(index < 0 || index >= count) {
+            throw new IllegalArgumentException("Partition " + index + " does not exist");
+        }
+
+        this.sockets = new Socket[count];
+        this.outputs = new DataOutputStream[count];
+        this.frames = new ByteArrayOutputStream[count];
+        this.frameOutputs = new DataOutputStream[count];
+        for(int peer = 0; peer < count; peer++) {
+            inputs.add(peer == index ? null : new LinkedBlockingQueue<>());
+            if(peer != index) {
+                frames[peer] = new ByteArrayOutputStream();
+                frameOutputs[peer] = new DataOutputStream(frames[peer]);
+            }
+        }
+    }
+
+    //Connects to the other partitions. Partition i listens on firstPort + i of the loopback interface, connects to every partition before it
+    //and accepts a connection from every partition after it.
+    public void connect(int firstPort) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        try(ServerSocket server = new ServerSocket(firstPort + index, count, loopback)) {
+            for(int peer = 0; peer < index; peer++) {
+                Socket socket = connect(loopback, firstPort + peer);
+                new DataOutputStream(socket.getOutputStream()).writeInt(index);
+                open(peer, socket);
+            }
+
+            for(int accepted = index + 1; accepted < count; accepted++) {
+                Socket socket = server.accept();
+                open(new DataInputStream(socket.getInputStream()).readInt(), socket);
+            }
+        }
+    }
+
+    private static Socket connect(InetAddress address, int port) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+
+        while(true) {
+            try {
+                return new Socket(address, port);
+            } catch(IOException e) {
+                if(System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+            }
+
+            try {
+                Thread.sleep(100);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while connecting to port " + port);
+            }
+        }
+    }
+
+    //Starts reading the frames of a partition on a thread of its own, so that no partition can block another one that is writing to it
+    private void open(int peer, Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        sockets[peer] = socket;
+        outputs[peer] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        BlockingQueue<ByteBuffer> frames = inputs.get(peer);
+        Thread reader = new Thread(() -> {
+            try {
+                while(true) {
+                    byte[] frame = new byte[in.readInt()];
+                    in.readFully(frame);
+                    frames.add(ByteBuffer.wrap(frame));
+                }
+            } catch(IOException e) {
+                frames.add(CLOSED);
+            }
+        }, "Partition " + index + " reading from " + peer);
+
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    //The partition that owns a tile
+    public int ownerOfTile(int tile) {
+        return (int) (((long) tiling.tileRow(tile) * count) / tiling.getTilesPerColumn());
+    }
+
+    //The partition that owns the model of a rank. Ranks are laid out as in Evolution: the transducer, then the arbiters by tile, then the cells
+    //by square.
+    public int ownerOf(int rank) {
+        int tile = rank - 1;
+        if(tile < 0) {
+            return 0;
+        } else if(tile < tiling.tileCount()) {
+            return ownerOfTile(tile);
+        }
+
+        int square = tile - tiling.tileCount();
+        return ownerOfTile(tiling.tileOf(square / tiling.getColumns(), square % tiling.getColumns()));
+    }
+
+    public boolean owns(int rank) {
+        return ownerOf(rank) == index;
+    }
+
+    public boolean ownsSquare(int row, int column) {
+        return ownerOfTile(tiling.tileOf(row, column)) == index;
+    }
+
+    //Writes a message from the model of one rank to the model of another, which belongs to another partition, into the frame for that partition
+    void send(int source, int destination, entity value) {
+        DataOutputStream out = frameOutputs[ownerOf(destination)];
+
+        try {
+            out.writeInt(source);
+            out.writeInt(destination);
+
+            if(value instanceof BacteriumMessage) {
+                out.writeByte(CHILD);
+                ((BacteriumMessage) value).writeTo(out);
+            } else if(value instanceof ReservationMessage) {
+                out.writeByte(RESERVATION);
+                ((ReservationMessage) value).writeTo(out);
+            } else if(value instanceof CellMessage) {
+                out.writeByte(CELL_MESSAGE);
+                ((CellMessage) value).writeTo(out);
+            } else {
+                throw new IllegalArgumentException("A " + value.getClass().getSimpleName() + " cannot be sent to another partition");
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Sends the frames that were written for the other partitions, and reads the messages that they sent to this one. The messages are put in
+    //order of the ranks of the models that sent them, and the messages of a model stay in the order in which it sent them. The parents of
+    //the children amongst them are acquired from the registry until releaseReceived is called.
+    List<Message> exchange(GenotypeRegistry genotypes) {
+        received.clear();
+
+        for(ByteBuffer frame : swapFrames()) {
+            while(frame != null && frame.hasRemaining()) {
+                int source = frame.getInt();
+                int destination = frame.getInt();
+                byte kind = frame.get();
+
+                if(kind == CHILD) {
+                    received.add(new Message(source, destination, Cell.Port.INPUT_BACTERIUM.portName(), BacteriumMessage.readFrom(frame, genotypes)));
+                } else if(kind == RESERVATION) {
+                    received.add(new Message(source, destination, Arbiter.Port.RESERVATION_IN.portName(), ReservationMessage.readFrom(frame)));
+                } else {
+                    received.add(new Message(source, destination, Transducer.Port.IN.portName(), CellMessage.readFrom(frame)));
+                }
+            }
+        }
+
+        received.sort(Comparator.comparingInt(Message::getSource));
+        return received;
+    }
+
+    //Releases the parents of the children that were received in the last exchange, once the children have been delivered
+    void releaseReceived(GenotypeRegistry genotypes) {
+        for(Message message : received) {
+            if(message.value instanceof BacteriumMessage) {
+                genotypes.release(((BacteriumMessage) message.value).getParentGenotype());
+            }
+        }
+
+        received.clear();
+    }
+
+    //The earliest of a time and the times that the other partitions pass in
+    double earliest(double time) {
+        try {
+            for(int peer = 0; peer < count; peer++) {
+                if(peer != index) {
+                    frameOutputs[peer].writeDouble(time);
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for(ByteBuffer frame : swapFrames()) {
+            if(frame != null) {
+                time = Math.min(time, frame.getDouble());
+            }
+        }
+
+        return time;
+    }
+
+    //Sends the frame for every other partition, and waits for a frame from each of them. The frame of this partition is null.
+    private ByteBuffer[] swapFrames() {
+        ByteBuffer[] swapped = new ByteBuffer[count];
+
+        try {
+            for(int peer = 0; peer < count; peer++) {
+                if(peer != index) {
+                    outputs[peer].writeInt(frames[peer].size());
+                    frames[peer].writeTo(outputs[peer]);
+                    outputs[peer].flush();
+                    frames[peer].reset();
+                }
+            }
+
+            for(int peer = 0; peer < count; peer++) {
+                if(peer != index) {
+                    swapped[peer] = inputs.get(peer).take();
+                    if(swapped[peer] == CLOSED) {
+                        throw new EOFException("Partition " + peer + " closed its connection");
+                    }
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the other partitions", e);
+        }
+
+        return swapped;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for(Socket socket : sockets) {
+            if(socket != null) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -4,6 +4,9 @@ import GenCol.entity;
 
 /**
  * This class represents the query response sent by a transducer to a cell that requests information about vacant neighbors.
+ *
+ * Arbiters keep one response for each cell of their tile and update its direction in place for every query. Like a CellMessage, a response
+ * is only valid until the end of the simulation instant in which it was sent.
  */
 public class QueryResponse extends entity {
 
@@ -23,6 +26,12 @@ public class QueryResponse extends entity {
         return direction;
     }
 
+    //Updates the response in place
+    QueryResponse update(Direction direction) {
+        this.direction = direction;
+        return this;
+    }
+
     public boolean emptyCellAvailable() {
         return direction != Direction.NONE;
     }
@@ -0,0 +1,69 @@
+package VivinPaliath;
+
+import java.util.Random;
+
+/**
+ * A deterministic, counter-based stream of random numbers. Every stream is derived from the seed of the run and an identifier for the stream,
+ * so each cell, arbiter or other source of randomness can have a stream of its own. Because a stream is only advanced by the events of its
+ * owner, a run produces the same output whether its models are executed serially or in parallel.
+ *
+ * The n-th value of a stream is a SplitMix64 hash of key + n * GAMMA, so the whole state of a stream is a single counter.
+ */
+public class RandomStream extends Random {
+
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    //Identifiers for streams that do not belong to a cell. Cells use their row-major index as their identifier.
+    public static final long PLACEMENT_STREAM = -1;
+    public static final long ARBITER_STREAMS = -1000000;
+
+    private long key;
+    private long counter;
+
+    public RandomStream(long seed, long stream) {
+        super(0);
+        this.key = key(seed, stream);
+        this.counter = 0;
+    }
+
+    //Derives the key of a stream from the seed of the run and the identifier of the stream.
+    public static long key(long seed, long stream) {
+        return mix(seed ^ mix(stream + GAMMA));
+    }
+
+    //The SplitMix64 finalizer
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        return mix(key + (++counter * GAMMA));
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        //The seed of a stream is fixed when the stream is created. The constructor of Random calls this method, so it cannot throw.
+    }
+
+    //Points this stream at another key and position. This lets a single instance serve streams whose state is held elsewhere.
+    public void reset(long key, long counter) {
+        this.key = key;
+        this.counter = counter;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public long getCounter() {
+        return counter;
+    }
+}
@@ -0,0 +1,79 @@
+package VivinPaliath;
+
+import GenCol.entity;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Message exchanged between arbiters to reserve a cell that lies in another arbiter's tile. The arbiter of the querying cell sends a REQUEST
+ * to the arbiter that owns the target cell. The owner marks the cell as occupied and replies with a GRANT if the cell is vacant, and replies
+ * with a DENY otherwise.
+ */
+public class ReservationMessage extends entity {
+
+    public enum Type {
+        REQUEST, GRANT, DENY
+    }
+
+    private final Type type;
+
+    //Tile of the arbiter that sent the request
+    private final int requestingTile;
+
+    //The cell that wants to reproduce, and the cell it wants to reproduce into
+    private final CellAddress requester;
+    private final CellAddress target;
+
+    private ReservationMessage(Type type, int requestingTile, CellAddress requester, CellAddress target) {
+        this.type = type;
+        this.requestingTile = requestingTile;
+        this.requester = requester;
+        this.target = target;
+    }
+
+    public static ReservationMessage createRequest(int requestingTile, CellAddress requester, CellAddress target) {
+        return new ReservationMessage(Type.REQUEST, requestingTile, requester, target);
+    }
+
+    //Creates the reply to a request
+    public ReservationMessage reply(boolean granted) {
+        return new ReservationMessage(granted ? Type.GRANT : Type.DENY, requestingTile, requester, target);
+    }
+
+    //Writes the message for an arbiter in another partition
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeInt(requestingTile);
+        out.writeInt(requester.getRow());
+        out.writeInt(requester.getColumn());
+        out.writeInt(target.getRow());
+        out.writeInt(target.getColumn());
+    }
+
+    static ReservationMessage readFrom(ByteBuffer in) {
+        Type type = Type.values()[in.get()];
+        int requestingTile = in.getInt();
+        CellAddress requester = new CellAddress(in.getInt(), in.getInt());
+        CellAddress target = new CellAddress(in.getInt(), in.getInt());
+
+        return new ReservationMessage(type, requestingTile, requester, target);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getRequestingTile() {
+        return requestingTile;
+    }
+
+    public CellAddress getRequester() {
+        return requester;
+    }
+
+    public CellAddress getTarget() {
+        return target;
+    }
+}
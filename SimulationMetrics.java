@@ -0,0 +1,263 @@
+package VivinPaliath;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of what goes on inside a running experiment, published through JMX as the VivinPaliath:type=SimulationMetrics MBean.
+ *
+ * The models count messages, reservations, births and deaths as they happen. Cells make their transitions concurrently, so every counter is
+ * a LongAdder, which spreads the updates of different threads over separate cells instead of making them contend for a single one. Counters
+ * are only ever added up when the metrics are sampled or read.
+ *
+ * Everything that has to look at the whole experiment, such as the population, the phases of the cells and the rates, is worked out by
+ * sample, which the thread that drives the simulation calls between steps at most once per SAMPLE_INTERVAL. The results are published through
+ * volatile fields, so JMX never reads the models while they make their transitions.
+ */
+public class SimulationMetrics implements SimulationObserver, SimulationMetricsMBean {
+
+    //Least wall time between two samples
+    static final long SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongAdder queryMessages = new LongAdder();
+    private final LongAdder feedMessages = new LongAdder();
+    private final LongAdder restMessages = new LongAdder();
+    private final LongAdder reservationsGranted = new LongAdder();
+    private final LongAdder reservationsDenied = new LongAdder();
+    private final LongAdder births = new LongAdder();
+    private final LongAdder deaths = new LongAdder();
+
+    //The largest queue of cell messages of any arbiter since the last sample, and since the start
+    private final LongAccumulator queueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator queueHighWaterMark = new LongAccumulator(Math::max, 0);
+
+    //Births and deaths when the last sampling interval of the efficiency statistics was completed, and in that interval
+    private long birthsAtInterval = 0;
+    private long deathsAtInterval = 0;
+    private volatile long birthsInLastInterval = 0;
+    private volatile long deathsInLastInterval = 0;
+
+    //The values of the last sample
+    private long lastSample = System.nanoTime();
+    private long lastQueryMessages = 0;
+    private long lastFeedMessages = 0;
+    private long lastRestMessages = 0;
+    private volatile long sampledQueueDepth = 0;
+    private volatile double queryMessagesPerSecond = 0;
+    private volatile double feedMessagesPerSecond = 0;
+    private volatile double restMessagesPerSecond = 0;
+    private volatile int population = 0;
+    private volatile int[] cellsByPhase = new int[Cell.Phase.values().length];
+    private volatile double simulatedTime = 0;
+    private volatile double simulatedTimePerSecond = 0;
+
+    //Registers the metrics with the platform MBean server
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName("VivinPaliath:type=SimulationMetrics"));
+    }
+
+    //Called by an arbiter with the number of cell messages that it is about to process
+    void arbiterQueue(int depth) {
+        queueDepth.accumulate(depth);
+        queueHighWaterMark.accumulate(depth);
+    }
+
+    void queryMessage() {
+        queryMessages.increment();
+    }
+
+    void feedMessage() {
+        feedMessages.increment();
+    }
+
+    void restMessage() {
+        restMessages.increment();
+    }
+
+    //Called with the outcome of every query, once the arbiter has either reserved a neighbor or run out of vacant ones
+    void reservation(boolean granted) {
+        (granted ? reservationsGranted : reservationsDenied).increment();
+    }
+
+    //Whether SAMPLE_INTERVAL has passed since the last sample
+    public boolean isSampleDue() {
+        return System.nanoTime() - lastSample >= SAMPLE_INTERVAL;
+    }
+
+    //Takes a sample of the experiment at a simulated time. Must be called by the thread that drives the simulation, between steps.
+    public void sample(double time, Evolution evolution) {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastSample) / 1e9;
+
+        long query = queryMessages.sum();
+        long feed = feedMessages.sum();
+        long rest = restMessages.sum();
+        queryMessagesPerSecond = (query - lastQueryMessages) / seconds;
+        feedMessagesPerSecond = (feed - lastFeedMessages) / seconds;
+        restMessagesPerSecond = (rest - lastRestMessages) / seconds;
+        lastQueryMessages = query;
+        lastFeedMessages = feed;
+        lastRestMessages = rest;
+
+        sampledQueueDepth = queueDepth.getThenReset();
+        population = evolution.getPopulation();
+        cellsByPhase = evolution.countCellsByPhase();
+        simulatedTimePerSecond = (time - simulatedTime) / seconds;
+        simulatedTime = time;
+        lastSample = now;
+    }
+
+    @Override
+    public void cellChanged(int row, int column) {
+    }
+
+    //The transducer completes intervals on the thread that drives the simulation, after the cells of the step have made their transitions
+    @Override
+    public void intervalCompleted(int interval, double time, double averageEfficiency) {
+        long born = births.sum();
+        long died = deaths.sum();
+
+        birthsInLastInterval = born - birthsAtInterval;
+        deathsInLastInterval = died - deathsAtInterval;
+        birthsAtInterval = born;
+        deathsAtInterval = died;
+    }
+
+    @Override
+    public void firstFunctionalEnzymeFound(double time, Enzyme enzyme, double efficiency) {
+    }
+
+    @Override
+    public void peakAverageEfficiencyFound(int interval, double time, double averageEfficiency) {
+    }
+
+    @Override
+    public void cellReserved(double time, int row, int column) {
+    }
+
+    @Override
+    public void bacteriumBorn(double time, int row, int column) {
+        births.increment();
+    }
+
+    @Override
+    public void bacteriumDied(double time, int row, int column) {
+        deaths.increment();
+    }
+
+    @Override
+    public long getArbiterQueueDepth() {
+        return sampledQueueDepth;
+    }
+
+    @Override
+    public long getArbiterQueueHighWaterMark() {
+        return queueHighWaterMark.get();
+    }
+
+    @Override
+    public long getQueryMessages() {
+        return queryMessages.sum();
+    }
+
+    @Override
+    public long getFeedMessages() {
+        return feedMessages.sum();
+    }
+
+    @Override
+    public long getRestMessages() {
+        return restMessages.sum();
+    }
+
+    @Override
+    public double getQueryMessagesPerSecond() {
+        return queryMessagesPerSecond;
+    }
+
+    @Override
+    public double getFeedMessagesPerSecond() {
+        return feedMessagesPerSecond;
+    }
+
+    @Override
+    public double getRestMessagesPerSecond() {
+        return restMessagesPerSecond;
+    }
+
+    @Override
+    public long getReservationsGranted() {
+        return reservationsGranted.sum();
+    }
+
+    @Override
+    public long getReservationsDenied() {
+        return reservationsDenied.sum();
+    }
+
+    @Override
+    public int getPopulation() {
+        return population;
+    }
+
+    @Override
+    public long getBirths() {
+        return births.sum();
+    }
+
+    @Override
+    public long getDeaths() {
+        return deaths.sum();
+    }
+
+    @Override
+    public long getBirthsInLastInterval() {
+        return birthsInLastInterval;
+    }
+
+    @Override
+    public long getDeathsInLastInterval() {
+        return deathsInLastInterval;
+    }
+
+    @Override
+    public int getCellsFeeding() {
+        return cellsByPhase[Cell.Phase.FEED.ordinal()];
+    }
+
+    @Override
+    public int getCellsResting() {
+        return cellsByPhase[Cell.Phase.REST.ordinal()];
+    }
+
+    @Override
+    public int getCellsReproducing() {
+        return cellsByPhase[Cell.Phase.REPRODUCE.ordinal()];
+    }
+
+    @Override
+    public int getCellsWaiting() {
+        return cellsByPhase[Cell.Phase.WAIT.ordinal()];
+    }
+
+    @Override
+    public int getCellsDead() {
+        return cellsByPhase[Cell.Phase.DEAD.ordinal()];
+    }
+
+    @Override
+    public double getSimulatedTime() {
+        return simulatedTime;
+    }
+
+    @Override
+    public double getSimulatedTimePerSecond() {
+        return simulatedTimePerSecond;
+    }
+}
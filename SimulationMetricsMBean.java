@@ -0,0 +1,42 @@
+package VivinPaliath;
+
+/**
+ * The attributes that SimulationMetrics publishes through JMX. Rates are per second of wall time, and are worked out over the last sample of
+ * the metrics.
+ */
+public interface SimulationMetricsMBean {
+
+    //Depth of the largest queue of cell messages that an arbiter processed since the last sample, and since the start of the simulation
+    long getArbiterQueueDepth();
+    long getArbiterQueueHighWaterMark();
+
+    //Messages that the arbiters and the transducer have processed, by type
+    long getQueryMessages();
+    long getFeedMessages();
+    long getRestMessages();
+    double getQueryMessagesPerSecond();
+    double getFeedMessagesPerSecond();
+    double getRestMessagesPerSecond();
+
+    //Queries that were answered with a reserved neighbor, and queries that found no vacant neighbor
+    long getReservationsGranted();
+    long getReservationsDenied();
+
+    int getPopulation();
+    long getBirths();
+    long getDeaths();
+
+    //Births and deaths in the last sampling interval of the efficiency statistics that has been completed
+    long getBirthsInLastInterval();
+    long getDeathsInLastInterval();
+
+    //Number of cells in each phase of Cell.Phase. The squares of a sparse experiment that have no cell are not counted.
+    int getCellsFeeding();
+    int getCellsResting();
+    int getCellsReproducing();
+    int getCellsWaiting();
+    int getCellsDead();
+
+    double getSimulatedTime();
+    double getSimulatedTimePerSecond();
+}
@@ -0,0 +1,29 @@
+package VivinPaliath;
+
+/**
+ * Interface for objects that want to follow the progress of a simulation, such as the visualizer or a file that records the efficiency time
+ * series. Observers are registered with the experiment, and are notified by the models that make up the experiment. Cells make their transitions
+ * concurrently under the ParallelCoordinator, so the notifications about births, deaths and reservations can come from several threads at
+ * once.
+ */
+public interface SimulationObserver {
+
+    //Called when the occupancy of a cell, or the lifespan ratio of its agent, changes.
+    void cellChanged(int row, int column);
+
+    //Called when a sampling interval has been closed out and its average efficiency is final.
+    void intervalCompleted(int interval, double time, double averageEfficiency);
+
+    //Called once, the first time an agent metabolizes the target nutrient with an efficiency greater than zero.
+    void firstFunctionalEnzymeFound(double time, Enzyme enzyme, double efficiency);
+
+    //Called when a completed interval has a higher average efficiency than any interval before it.
+    void peakAverageEfficiencyFound(int interval, double time, double averageEfficiency);
+
+    //Called when an agent reserves a vacant cell for its child, and when the child arrives in that cell.
+    void cellReserved(double time, int row, int column);
+    void bacteriumBorn(double time, int row, int column);
+
+    //Called when an agent dies and its cell is vacated.
+    void bacteriumDied(double time, int row, int column);
+}
@@ -0,0 +1,74 @@
+package VivinPaliath;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A list of observers that is itself an observer: every notification is passed on to each registered observer. A single instance is shared
+ * by all of the models that report on the simulation, so an observer only has to be registered once.
+ */
+public class SimulationObservers implements SimulationObserver {
+
+    private final List<SimulationObserver> observers = new CopyOnWriteArrayList<>();
+
+    public void add(SimulationObserver observer) {
+        observers.add(observer);
+    }
+
+    public void remove(SimulationObserver observer) {
+        observers.remove(observer);
+    }
+
+    public boolean isEmpty() {
+        return observers.isEmpty();
+    }
+
+    @Override
+    public void cellChanged(int row, int column) {
+        for(SimulationObserver observer : observers) {
+            observer.cellChanged(row, column);
+        }
+    }
+
+    @Override
+    public void intervalCompleted(int interval, double time, double averageEfficiency) {
+        for(SimulationObserver observer : observers) {
+            observer.intervalCompleted(interval, time, averageEfficiency);
+        }
+    }
+
+    @Override
+    public void firstFunctionalEnzymeFound(double time, Enzyme enzyme, double efficiency) {
+        for(SimulationObserver observer : observers) {
+            observer.firstFunctionalEnzymeFound(time, enzyme, efficiency);
+        }
+    }
+
+    @Override
+    public void peakAverageEfficiencyFound(int interval, double time, double averageEfficiency) {
+        for(SimulationObserver observer : observers) {
+            observer.peakAverageEfficiencyFound(interval, time, averageEfficiency);
+        }
+    }
+
+    @Override
+    public void cellReserved(double time, int row, int column) {
+        for(SimulationObserver observer : observers) {
+            observer.cellReserved(time, row, column);
+        }
+    }
+
+    @Override
+    public void bacteriumBorn(double time, int row, int column) {
+        for(SimulationObserver observer : observers) {
+            observer.bacteriumBorn(time, row, column);
+        }
+    }
+
+    @Override
+    public void bacteriumDied(double time, int row, int column) {
+        for(SimulationObserver observer : observers) {
+            observer.bacteriumDied(time, row, column);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package VivinPaliath;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the telemetry written by a TelemetrySink and replays it, in order, to a SimulationObserver. Run from the command line, it prints the
+ * interval averages, peaks and the first functional enzyme the way the transducer used to, followed by the number of births, deaths and
+ * reservations. The --efficiency-csv option also rebuilds the efficiency time series that BatchRunner writes.
+ *
+ * Usage: TelemetryReplay directory [--efficiency-csv file]
+ */
+public class TelemetryReplay {
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1 && !(args.length == 3 && args[1].equals("--efficiency-csv"))) {
+            throw new IllegalArgumentException("Usage: TelemetryReplay directory [--efficiency-csv file]");
+        }
+
+        ConsoleObserver console = new ConsoleObserver();
+        SimulationObservers observers = new SimulationObservers();
+        observers.add(console);
+
+        EfficiencyTimeSeriesWriter timeSeries = null;
+        if(args.length == 3) {
+            timeSeries = new EfficiencyTimeSeriesWriter(new File(args[2]));
+            observers.add(timeSeries);
+        }
+
+        try {
+            replay(new File(args[0]), observers);
+        } finally {
+            if(timeSeries != null) {
+                timeSeries.close();
+            }
+        }
+
+        System.out.println("Births: " + console.births + ", deaths: " + console.deaths + ", reservations: " + console.reservations);
+    }
+
+    //Replays every telemetry file in the directory, in the order in which they were written. Returns the number of records replayed.
+    public static long replay(File directory, SimulationObserver observer) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("telemetry-") && name.endsWith(".csv.gz"));
+        if(files == null) {
+            throw new FileNotFoundException(directory + " is not a directory");
+        }
+
+        Arrays.sort(files);
+
+        long records = 0;
+        for(File file : files) {
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.US_ASCII))) {
+                String header = reader.readLine();
+                if(!TelemetrySink.HEADER.equals(header)) {
+                    throw new IOException(file + " is not a telemetry file");
+                }
+
+                String line;
+                while((line = reader.readLine()) != null) {
+                    replay(line, observer);
+                    records++;
+                }
+            }
+        }
+
+        return records;
+    }
+
+    private static void replay(String line, SimulationObserver observer) {
+        String[] columns = line.split(",", -1);
+        TelemetrySink.Type type = TelemetrySink.Type.fromTypeName(columns[0]);
+        double time = Double.parseDouble(columns[1]);
+
+        switch(type) {
+            case INTERVAL:
+                observer.intervalCompleted(Integer.parseInt(columns[2]), time, Double.parseDouble(columns[5]));
+                break;
+            case PEAK:
+                observer.peakAverageEfficiencyFound(Integer.parseInt(columns[2]), time, Double.parseDouble(columns[5]));
+                break;
+            case FIRST_FUNCTIONAL_ENZYME:
+                observer.firstFunctionalEnzymeFound(time, new Enzyme(columns[6]), Double.parseDouble(columns[5]));
+                break;
+            case RESERVATION:
+                observer.cellReserved(time, Integer.parseInt(columns[3]), Integer.parseInt(columns[4]));
+                break;
+            case BIRTH:
+                observer.bacteriumBorn(time, Integer.parseInt(columns[3]), Integer.parseInt(columns[4]));
+                break;
+            case DEATH:
+                observer.bacteriumDied(time, Integer.parseInt(columns[3]), Integer.parseInt(columns[4]));
+                break;
+        }
+    }
+
+    /**
+     * Prints the efficiency records and counts the others.
+     */
+    private static class ConsoleObserver implements SimulationObserver {
+
+        private long births = 0;
+        private long deaths = 0;
+        private long reservations = 0;
+
+        @Override
+        public void cellChanged(int row, int column) {
+        }
+
+        @Override
+        public void intervalCompleted(int interval, double time, double averageEfficiency) {
+            System.out.println("###Average efficiency for interval " + interval + ": " + averageEfficiency);
+        }
+
+        @Override
+        public void firstFunctionalEnzymeFound(double time, Enzyme enzyme, double efficiency) {
+            System.out.println("First functional enzyme found at clock " + time + ". Enzyme is " + enzyme.getBitPattern() + " and efficiency was " + efficiency);
+        }
+
+        @Override
+        public void peakAverageEfficiencyFound(int interval, double time, double averageEfficiency) {
+            System.out.println("Peak average efficiency (thus far) of " + averageEfficiency + " at time " + time);
+        }
+
+        @Override
+        public void cellReserved(double time, int row, int column) {
+            reservations++;
+        }
+
+        @Override
+        public void bacteriumBorn(double time, int row, int column) {
+            births++;
+        }
+
+        @Override
+        public void bacteriumDied(double time, int row, int column) {
+            deaths++;
+        }
+    }
+}
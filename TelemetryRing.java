@@ -0,0 +1,110 @@
+package VivinPaliath;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free ring buffer of fixed-size telemetry records, for many producers and a single consumer. A record is four longs: the
+ * type of the record, the simulation time, and two values whose meaning depends on the type.
+ *
+ * Producers claim a slot by advancing the tail with a compare-and-set, write the record, and then publish it by storing its sequence number
+ * in the slot. The consumer only reads a slot once the sequence number it expects has been published there, and hands the slot back by
+ * advancing the head. Producers never wait: if the ring is full the record is dropped and counted, so a slow disk can never hold up the
+ * simulation.
+ */
+public class TelemetryRing {
+
+    static final int RECORD_SIZE = 4;
+
+    private final int capacity;
+    private final int mask;
+
+    //The records, RECORD_SIZE longs each, and the sequence number that has been published in each slot
+    private final long[] records;
+    private final AtomicLongArray published;
+
+    //Sequence numbers of the next record to claim and the next record to consume
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Receives the records that are drained from the ring.
+     */
+    public interface Consumer {
+        void accept(int type, double time, long first, long second);
+    }
+
+    //Creates a ring that holds the given number of records, rounded up to a power of two
+    public TelemetryRing(int capacity) {
+        if(capacity <= 0 || capacity > (1 << 26)) {
+            throw new IllegalArgumentException("Capacity needs to be between 1 and " + (1 << 26));
+        }
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.records = new long[this.capacity * RECORD_SIZE];
+        this.published = new AtomicLongArray(this.capacity);
+
+        //No sequence number has been published yet
+        for(int i = 0; i < this.capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    //Adds a record to the ring. Returns false, and counts the record as dropped, if the ring is full.
+    public boolean offer(int type, double time, long first, long second) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if(sequence - head.get() >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while(!tail.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        int offset = slot * RECORD_SIZE;
+        records[offset] = type;
+        records[offset + 1] = Double.doubleToRawLongBits(time);
+        records[offset + 2] = first;
+        records[offset + 3] = second;
+
+        //The release store publishes the plain writes above to the consumer
+        published.lazySet(slot, sequence);
+        return true;
+    }
+
+    //Passes every record that has been published so far to the consumer, in the order in which the records were claimed. Must only be
+    //called from a single thread. Returns the number of records that were drained.
+    public int drain(Consumer consumer) {
+        long sequence = head.get();
+        int drained = 0;
+
+        while(true) {
+            int slot = (int) (sequence & mask);
+            if(published.get(slot) != sequence) {
+                break;
+            }
+
+            int offset = slot * RECORD_SIZE;
+            consumer.accept((int) records[offset], Double.longBitsToDouble(records[offset + 1]), records[offset + 2], records[offset + 3]);
+
+            //Hand the slot back to the producers
+            sequence++;
+            head.lazySet(sequence);
+            drained++;
+        }
+
+        return drained;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,202 @@
+package VivinPaliath;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Observer that records the events of a simulation as telemetry. Each event is encoded as a fixed-size record and pushed onto a lock-free
+ * TelemetryRing, so the models that report events never block on I/O. A background thread drains the ring into gzip-compressed CSV files in
+ * a directory, starting a new file every recordsPerFile records. TelemetryReplay reads the files back.
+ *
+ * Every file starts with the header type,time,interval,row,column,efficiency,enzyme and holds one line per record. Only the columns that apply
+ * to the type of the record are filled in.
+ */
+public class TelemetrySink implements SimulationObserver, Closeable {
+
+    static final String HEADER = "type,time,interval,row,column,efficiency,enzyme";
+
+    //How long the writer sleeps when the ring is empty
+    private static final long IDLE_NANOS = 1000000;
+
+    //Types of telemetry records
+    public static enum Type {
+
+        INTERVAL("interval"),
+        PEAK("peak"),
+        FIRST_FUNCTIONAL_ENZYME("first_functional_enzyme"),
+        RESERVATION("reservation"),
+        BIRTH("birth"),
+        DEATH("death");
+
+        private String typeName;
+
+        private Type(String typeName) {
+            this.typeName = typeName;
+        }
+
+        public String typeName() {
+            return this.typeName;
+        }
+
+        public static Type fromTypeName(String typeName) {
+            for(Type type : values()) {
+                if(type.typeName.equals(typeName)) {
+                    return type;
+                }
+            }
+
+            throw new IllegalArgumentException("Unknown telemetry record type " + typeName);
+        }
+    }
+
+    private final TelemetryRing ring;
+    private final File directory;
+    private final long recordsPerFile;
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    //State of the writer thread
+    private Writer file = null;
+    private int fileIndex = 0;
+    private long recordsInFile = 0;
+    private IOException failure = null;
+    private final StringBuilder line = new StringBuilder(64);
+
+    public TelemetrySink(File directory) {
+        this(directory, 1 << 16, 1000000);
+    }
+
+    public TelemetrySink(File directory, int capacity, long recordsPerFile) {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create telemetry directory " + directory);
+        }
+
+        this.ring = new TelemetryRing(capacity);
+        this.directory = directory;
+        this.recordsPerFile = recordsPerFile;
+
+        this.writer = new Thread(this::write, "telemetry-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    static String fileName(int index) {
+        return String.format("telemetry-%05d.csv.gz", index);
+    }
+
+    @Override
+    public void cellChanged(int row, int column) {
+    }
+
+    @Override
+    public void intervalCompleted(int interval, double time, double averageEfficiency) {
+        ring.offer(Type.INTERVAL.ordinal(), time, interval, Double.doubleToRawLongBits(averageEfficiency));
+    }
+
+    @Override
+    public void peakAverageEfficiencyFound(int interval, double time, double averageEfficiency) {
+        ring.offer(Type.PEAK.ordinal(), time, interval, Double.doubleToRawLongBits(averageEfficiency));
+    }
+
+    //The enzyme is packed as its size in the upper half of the long, and its bits in the lower half
+    @Override
+    public void firstFunctionalEnzymeFound(double time, Enzyme enzyme, double efficiency) {
+        long packedEnzyme = ((long) enzyme.getSize() << 32) | (enzyme.getValue() & 0xFFFFFFFFL);
+        ring.offer(Type.FIRST_FUNCTIONAL_ENZYME.ordinal(), time, packedEnzyme, Double.doubleToRawLongBits(efficiency));
+    }
+
+    @Override
+    public void cellReserved(double time, int row, int column) {
+        ring.offer(Type.RESERVATION.ordinal(), time, row, column);
+    }
+
+    @Override
+    public void bacteriumBorn(double time, int row, int column) {
+        ring.offer(Type.BIRTH.ordinal(), time, row, column);
+    }
+
+    @Override
+    public void bacteriumDied(double time, int row, int column) {
+        ring.offer(Type.DEATH.ordinal(), time, row, column);
+    }
+
+    //Number of records that were dropped because the writer could not keep up
+    public long getDropped() {
+        return ring.getDropped();
+    }
+
+    //Drains the ring until the sink is closed, then drains whatever is left
+    private void write() {
+        try {
+            while(!closed) {
+                if(ring.drain(this::writeRecord) == 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+
+            ring.drain(this::writeRecord);
+            if(file != null) {
+                file.close();
+            }
+        } catch(UncheckedIOException e) {
+            failure = e.getCause();
+        } catch(IOException e) {
+            failure = e;
+        }
+    }
+
+    private void writeRecord(int type, double time, long first, long second) {
+        try {
+            if(file == null || recordsInFile == recordsPerFile) {
+                rotate();
+            }
+
+            line.setLength(0);
+            line.append(Type.values()[type].typeName).append(',').append(time).append(',');
+
+            if(type == Type.INTERVAL.ordinal() || type == Type.PEAK.ordinal()) {
+                line.append(first).append(",,,").append(Double.longBitsToDouble(second)).append(',');
+            } else if(type == Type.FIRST_FUNCTIONAL_ENZYME.ordinal()) {
+                Enzyme enzyme = new Enzyme((int) first, (int) (first >>> 32));
+                line.append(",,,").append(Double.longBitsToDouble(second)).append(',').append(enzyme.getBitPattern());
+            } else {
+                line.append(',').append(first).append(',').append(second).append(",,");
+            }
+
+            file.write(line.append('\n').toString());
+            recordsInFile++;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        if(file != null) {
+            file.close();
+        }
+
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(directory, fileName(fileIndex++))), 1 << 16);
+        file = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16);
+        file.write(HEADER + "\n");
+        recordsInFile = 0;
+    }
+
+    //Stops the writer once it has written every record that is in the ring
+    @Override
+    public void close() throws IOException {
+        closed = true;
+
+        try {
+            writer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for telemetry to be written");
+        }
+
+        if(failure != null) {
+            throw new IOException("Could not write telemetry", failure);
+        }
+    }
+}
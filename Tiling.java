@@ -0,0 +1,70 @@
+package VivinPaliath;
+
+/**
+ * Divides the grid into rectangular tiles. Tiles are numbered in row-major order. If the size of the grid is not a multiple of the size of a
+ * tile, the tiles in the last row and column of tiles are smaller.
+ */
+public class Tiling {
+
+    private final int rows;
+    private final int columns;
+    private final int tileRows;
+    private final int tileColumns;
+    private final int tilesPerRow;
+    private final int tilesPerColumn;
+
+    public Tiling(int rows, int columns, int tileRows, int tileColumns) {
+        if(tileRows <= 0 || tileColumns <= 0) {
+            throw new IllegalArgumentException("Tiles must have at least one row and one column");
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+        this.tileRows = Math.min(tileRows, rows);
+        this.tileColumns = Math.min(tileColumns, columns);
+        this.tilesPerRow = (columns + this.tileColumns - 1) / this.tileColumns;
+        this.tilesPerColumn = (rows + this.tileRows - 1) / this.tileRows;
+    }
+
+    public int tileCount() {
+        return tilesPerRow * tilesPerColumn;
+    }
+
+    public int tileOf(int row, int column) {
+        return ((row / tileRows) * tilesPerRow) + (column / tileColumns);
+    }
+
+    //The row of tiles that a tile is in, counting from the top
+    public int tileRow(int tile) {
+        return tile / tilesPerRow;
+    }
+
+    public int firstRow(int tile) {
+        return (tile / tilesPerRow) * tileRows;
+    }
+
+    public int firstColumn(int tile) {
+        return (tile % tilesPerRow) * tileColumns;
+    }
+
+    public int rowsIn(int tile) {
+        return Math.min(tileRows, rows - firstRow(tile));
+    }
+
+    public int columnsIn(int tile) {
+        return Math.min(tileColumns, columns - firstColumn(tile));
+    }
+
+    //Number of rows of tiles
+    public int getTilesPerColumn() {
+        return tilesPerColumn;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+}
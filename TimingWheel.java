@@ -0,0 +1,198 @@
+package VivinPaliath;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Schedules the next events of a fixed set of models, identified by index. Every time advance in the Evolution model is 0, 1 or INFINITY,
+ * so next events fall on whole time units a short way ahead of the clock. Such events go into a wheel of buckets, one per time unit, where
+ * each bucket is a doubly linked list threaded through arrays indexed by model. Scheduling, cancelling and taking out the models of the next
+ * bucket take constant time per model, however many models there are, and a bitmask of the buckets in use finds the next one in a single
+ * instruction.
+ *
+ * Events that are not on a whole time unit, or that lie beyond the end of the wheel, go into an overflow queue. Cancelled events are left in
+ * the queue and skipped when they come up. The Evolution model never uses it.
+ */
+public class TimingWheel {
+
+    //Number of buckets in the wheel. A bucket holds the events of one whole time unit.
+    private static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+
+    //Where a model is scheduled, if not in a bucket of the wheel
+    private static final int UNSCHEDULED = -1;
+    private static final int OVERFLOW = -2;
+    private static final int NONE = -1;
+
+    //The time unit of the first bucket. Every event in the wheel is at most SIZE - 1 units after it.
+    private long base = 0;
+
+    //First model in each bucket, and a bit for each bucket that is not empty
+    private final int[] heads = new int[SIZE];
+    private long occupiedBuckets = 0;
+
+    //The bucket of each model, and its neighbors in that bucket
+    private int[] buckets;
+    private int[] next;
+    private int[] previous;
+
+    //Events in the overflow queue, and for each model, the time and a stamp of its latest event in the queue. An event in the queue is only
+    //valid if the model is still in the queue with the same stamp.
+    private final PriorityQueue<Event> overflow = new PriorityQueue<>();
+    private double[] overflowTimes;
+    private long[] stamps;
+
+    private static class Event implements Comparable<Event> {
+
+        private final double time;
+        private final int model;
+        private final long stamp;
+
+        private Event(double time, int model, long stamp) {
+            this.time = time;
+            this.model = model;
+            this.stamp = stamp;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return Double.compare(time, other.time);
+        }
+    }
+
+    public TimingWheel(int models) {
+        this.buckets = new int[models];
+        this.next = new int[models];
+        this.previous = new int[models];
+        this.overflowTimes = new double[models];
+        this.stamps = new long[models];
+
+        reset(0);
+    }
+
+    //Makes room for more models. The new models are not scheduled.
+    public void grow(int models) {
+        int previousModels = buckets.length;
+        if(models <= previousModels) {
+            return;
+        }
+
+        buckets = Arrays.copyOf(buckets, models);
+        next = Arrays.copyOf(next, models);
+        previous = Arrays.copyOf(previous, models);
+        overflowTimes = Arrays.copyOf(overflowTimes, models);
+        stamps = Arrays.copyOf(stamps, models);
+        Arrays.fill(buckets, previousModels, models, UNSCHEDULED);
+    }
+
+    //Cancels every event and moves the wheel to the given time
+    public void reset(double now) {
+        Arrays.fill(heads, NONE);
+        Arrays.fill(buckets, UNSCHEDULED);
+        occupiedBuckets = 0;
+        overflow.clear();
+        base = (long) Math.floor(now);
+    }
+
+    //Schedules the next event of a model, replacing the event it had. A model with a next event at INFINITY is not scheduled at all.
+    public void schedule(int model, double time) {
+        cancel(model);
+
+        if(time == Double.POSITIVE_INFINITY) {
+            return;
+        }
+
+        if(time >= base && time < base + SIZE && time == Math.rint(time)) {
+            int bucket = (int) ((long) time & MASK);
+            int head = heads[bucket];
+
+            next[model] = head;
+            previous[model] = NONE;
+            if(head != NONE) {
+                previous[head] = model;
+            }
+
+            heads[bucket] = model;
+            buckets[model] = bucket;
+            occupiedBuckets |= 1L << bucket;
+        } else {
+            buckets[model] = OVERFLOW;
+            overflowTimes[model] = time;
+            overflow.add(new Event(time, model, ++stamps[model]));
+        }
+    }
+
+    //Cancels the next event of a model, if it has one
+    public void cancel(int model) {
+        int bucket = buckets[model];
+        buckets[model] = UNSCHEDULED;
+
+        if(bucket < 0) {
+            return;
+        }
+
+        if(previous[model] != NONE) {
+            next[previous[model]] = next[model];
+        } else {
+            heads[bucket] = next[model];
+        }
+
+        if(next[model] != NONE) {
+            previous[next[model]] = previous[model];
+        }
+
+        if(heads[bucket] == NONE) {
+            occupiedBuckets &= ~(1L << bucket);
+        }
+    }
+
+    //Time of the earliest event, or INFINITY if no model is scheduled
+    public double nextTime() {
+        double time = Double.POSITIVE_INFINITY;
+
+        if(occupiedBuckets != 0) {
+            //Rotate the bitmask so that the bucket of the base is the lowest bit. The lowest bit that is set is then the earliest bucket.
+            time = base + Long.numberOfTrailingZeros(Long.rotateRight(occupiedBuckets, (int) (base & MASK)));
+        }
+
+        Event event = firstOverflow();
+        return event != null ? Math.min(time, event.time) : time;
+    }
+
+    //Takes out every model whose next event is at the given time, which must be the time of the earliest event, and moves the wheel up to
+    //that time. The models are written to the array in no particular order, and their number is returned.
+    public int extract(double time, int[] models) {
+        int count = 0;
+
+        if(time >= base && time < base + SIZE && time == Math.rint(time)) {
+            int bucket = (int) ((long) time & MASK);
+            for(int model = heads[bucket]; model != NONE; model = next[model]) {
+                buckets[model] = UNSCHEDULED;
+                models[count++] = model;
+            }
+
+            heads[bucket] = NONE;
+            occupiedBuckets &= ~(1L << bucket);
+        }
+
+        for(Event event = firstOverflow(); event != null && event.time == time; event = firstOverflow()) {
+            overflow.poll();
+            buckets[event.model] = UNSCHEDULED;
+            models[count++] = event.model;
+        }
+
+        base = (long) Math.floor(time);
+        return count;
+    }
+
+    //The earliest valid event in the overflow queue. Events that were cancelled or replaced are dropped on the way.
+    private Event firstOverflow() {
+        Event event = overflow.peek();
+        while(event != null && (buckets[event.model] != OVERFLOW || stamps[event.model] != event.stamp || overflowTimes[event.model] != event.time)) {
+            overflow.poll();
+            event = overflow.peek();
+        }
+
+        return event;
+    }
+}
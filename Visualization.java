@@ -4,19 +4,19 @@ package VivinPaliath;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * GUI for the model. Shows a 2-D graph with a cellular-automata like display and a graph and some textual information on the right side of the screen.
  */
-public class Visualization extends JPanel {
+public class Visualization extends JPanel implements SimulationObserver {
 
     //Rows and columns of the grid
     private int rows;
     private int columns;
-    private Rectangle[][] cells;
     private Graphics2D graphics2D;
     private int numSamples = 100;
 
@@ -26,63 +26,248 @@ public class Visualization extends JPanel {
     private static int GRID_WIDTH = 1465;
     private static int GRID_HEIGHT = 1172;
 
+    //Grid lines are only drawn once cells are at least this many pixels wide and high
+    private static final int MINIMUM_OUTLINED_CELL_SIZE = 4;
+
+    public static final int DEFAULT_FRAME_RATE = 30;
+
+    private static final int OCCUPIED_COLOR = Color.RED.getRGB() & 0xFFFFFF;
+    private static final Color GRAPH_COLOR = new Color(0, 127, 0);
+    private static final Font FONT = new Font("Sans Serif", Font.BOLD, 16);
+    private static final Font VERTICAL_FONT = FONT.deriveFont(AffineTransform.getRotateInstance(-Math.PI / 2));
+
+    //The grid is rendered into an image with one pixel per cell, up to the size of the grid in the GUI. On grids that are larger than that,
+    //the cells are mapped onto the pixels in blocks, and a pixel shows the occupied cell of its block whose agent has the most of its lifespan
+    //left, or its nutrient if none is occupied, so that an agent is never hidden by a vacant neighbor.
+    private final BufferedImage raster;
+    private final int[] pixels;
+    private final int rasterWidth;
+    private final int rasterHeight;
+
+    //Colour of the nutrient in each cell, which never changes
+    private final int[] nutrientColors;
+
+    //Cells that have changed since the last frame, one bit per cell. Cells are marked from the simulation threads and redrawn into the
+    //raster on the event dispatch thread.
+    private final AtomicLongArray dirtyCells;
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+
+    //Repaints are coalesced and happen at most once per tick of this timer
+    private final Timer frameTimer;
+
+    //The intervals and average efficiencies that the graph is drawn from, copied out of the efficiency history for each frame
+    private final long[] graphIntervals;
+    private final double[] graphAverages;
+
     public Visualization(int numSamples, VisualizationContext visualizationContext) {
+        this(numSamples, visualizationContext, DEFAULT_FRAME_RATE);
+    }
+
+    public Visualization(int numSamples, VisualizationContext visualizationContext, int framesPerSecond) {
+        if(framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate needs to be positive");
+        }
+
         this.visualizationContext = visualizationContext;
 
-        this.cells = new Rectangle[visualizationContext.getCellStatus().length][visualizationContext.getCellStatus()[0].length];
         this.rows = visualizationContext.getCellStatus().length;
         this.columns = visualizationContext.getCellStatus()[0].length;
         this.numSamples = numSamples;
+        this.graphIntervals = new long[numSamples];
+        this.graphAverages = new double[numSamples];
+
+        this.rasterWidth = Math.min(columns, GRID_WIDTH);
+        this.rasterHeight = Math.min(rows, GRID_HEIGHT);
+        this.raster = new BufferedImage(rasterWidth, rasterHeight, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) raster.getRaster().getDataBuffer()).getData();
+
+        CellStatus[][] cellStatus = visualizationContext.getCellStatus();
+        this.nutrientColors = new int[rows * columns];
+        for(int i = 0; i < rows; i++) {
+            for(int j = 0; j < columns; j++) {
+                nutrientColors[i * columns + j] = nutrientToColor(cellStatus[i][j].getNutrient());
+            }
+        }
+
+        //Every cell starts out dirty so that the first frame draws the whole grid
+        int cells = rows * columns;
+        this.dirtyCells = new AtomicLongArray((cells + 63) >>> 6);
+        for(int i = 0; i < dirtyCells.length(); i++) {
+            int remaining = cells - (i << 6);
+            dirtyCells.set(i, remaining >= 64 ? -1L : (1L << remaining) - 1);
+        }
+
+        this.frameTimer = new Timer(1000 / framesPerSecond, e -> renderFrame());
+        this.frameTimer.start();
+    }
+
+    //Creates a visualizer and shows it in its own window.
+    public static Visualization show(int numSamples, VisualizationContext visualizationContext) {
+        return show(numSamples, visualizationContext, DEFAULT_FRAME_RATE);
+    }
+
+    public static Visualization show(int numSamples, VisualizationContext visualizationContext, int framesPerSecond) {
+        Visualization visualization = new Visualization(numSamples, visualizationContext, framesPerSecond);
+
+        JFrame canvas = new JFrame("Evolution");
+        canvas.add(visualization);
+        canvas.setSize(new Dimension(1920, 1080));
+        canvas.setVisible(true);
+
+        return visualization;
     }
 
     @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    public void cellChanged(int row, int column) {
+        int cell = row * columns + column;
+        long bit = 1L << (cell & 63);
+
+        //Avoid the atomic update when the cell is already waiting to be redrawn
+        int word = cell >>> 6;
+        long current = dirtyCells.get(word);
+        if((current & bit) == 0) {
+            dirtyCells.getAndUpdate(word, w -> w | bit);
+        }
 
-        graphics2D = (Graphics2D) g.create();
+        dirty.lazySet(true);
+    }
+
+    @Override
+    public void intervalCompleted(int interval, double time, double averageEfficiency) {
+        dirty.lazySet(true);
+    }
+
+    @Override
+    public void firstFunctionalEnzymeFound(double time, Enzyme enzyme, double efficiency) {
+        dirty.lazySet(true);
+    }
+
+    //Births, deaths and reservations are also reported through cellChanged, which already marks the cell for redrawing
+
+    @Override
+    public void peakAverageEfficiencyFound(int interval, double time, double averageEfficiency) {
+    }
+
+    @Override
+    public void cellReserved(double time, int row, int column) {
+    }
+
+    @Override
+    public void bacteriumBorn(double time, int row, int column) {
+    }
 
-        int width = GRID_WIDTH;
-        int height = GRID_HEIGHT;
+    @Override
+    public void bacteriumDied(double time, int row, int column) {
+    }
 
-        int cellWidth = width / columns;
-        int cellHeight = height / rows;
+    //Stops rendering. The panel keeps showing the last frame.
+    public void stop() {
+        frameTimer.stop();
+    }
 
-        int xOffset = ((width - (columns * cellWidth)) / 2);
-        int yOffset = (height - (rows * cellHeight)) / 2;
+    //Redraws the cells that changed since the last frame into the raster and repaints the panel, if anything changed at all. Runs on the
+    //event dispatch thread.
+    private void renderFrame() {
+        if(!dirty.getAndSet(false)) {
+            return;
+        }
 
         CellStatus[][] cellStatus = visualizationContext.getCellStatus();
+        for(int word = 0; word < dirtyCells.length(); word++) {
+            if(dirtyCells.get(word) == 0) {
+                continue;
+            }
 
-        //Draw the grid and fill it with appropriate colors based on the nutrients in the cell
-        //and whether the cell is occupied or not.
-        for(int i = 0; i < rows; i++) {
-            for(int j = 0; j < columns; j++) {
-                Rectangle cell;
-
-                if(cells[i][j] == null) {
-                    cell = new Rectangle(
-                            xOffset + (j * cellWidth),
-                            yOffset + (i * cellHeight),
-                            cellWidth,
-                            cellHeight
-                    );
-                } else {
-                    cell = cells[i][j];
-                }
+            long bits = dirtyCells.getAndSet(word, 0);
+            while(bits != 0) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                int x = (int) (((long) (cell % columns) * rasterWidth) / columns);
+                int y = (int) (((long) (cell / columns) * rasterHeight) / rows);
 
-                cells[i][j] = cell;
+                pixels[y * rasterWidth + x] = pixelColor(x, y, cellStatus);
+            }
+        }
 
-                graphics2D.setColor(nutrientToColor(cellStatus[i][j].getNutrient()));
-                graphics2D.fill(cell);
+        repaint();
+    }
 
-                if(cellStatus[i][j].isOccupied()) {
-                    graphics2D.setColor(Color.RED);
-                    graphics2D.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) cellStatus[i][j].getRatio()));
-                    graphics2D.fill(cell);
-                    graphics2D.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1));
+    //Works out the colour of a pixel from the block of cells that is mapped onto it. The block is a single cell unless the grid is larger
+    //than the raster.
+    private int pixelColor(int x, int y, CellStatus[][] cellStatus) {
+        int firstRow = firstCell(y, rows, rasterHeight);
+        int lastRow = firstCell(y + 1, rows, rasterHeight);
+        int firstColumn = firstCell(x, columns, rasterWidth);
+        int lastColumn = firstCell(x + 1, columns, rasterWidth);
+
+        int color = nutrientColors[(firstRow * columns) + firstColumn];
+        double mostLifespan = -1;
+        for(int row = firstRow; row < lastRow; row++) {
+            for(int column = firstColumn; column < lastColumn; column++) {
+                CellStatus status = cellStatus[row][column];
+                if(status.isOccupied() && status.getRatio() > mostLifespan) {
+                    mostLifespan = status.getRatio();
+                    color = cellColor((row * columns) + column, status);
                 }
+            }
+        }
+
+        return color;
+    }
 
-                graphics2D.setColor(Color.BLACK);
-                graphics2D.draw(cell);
+    //The first of the cells along a side of the grid that are mapped onto a pixel, which is one past the last cell of the pixel before it
+    private static int firstCell(int pixel, int cells, int pixels) {
+        return (int) ((((long) pixel * cells) + pixels - 1) / pixels);
+    }
+
+    //Blends red over the colour of the nutrient, with an opacity of the remaining lifespan of the bacterium in the cell
+    private int cellColor(int cell, CellStatus status) {
+        int nutrientColor = nutrientColors[cell];
+        if(!status.isOccupied()) {
+            return nutrientColor;
+        }
+
+        double alpha = Math.max(0, Math.min(1, status.getRatio()));
+        int red = blend((nutrientColor >> 16) & 0xFF, (OCCUPIED_COLOR >> 16) & 0xFF, alpha);
+        int green = blend((nutrientColor >> 8) & 0xFF, (OCCUPIED_COLOR >> 8) & 0xFF, alpha);
+        int blue = blend(nutrientColor & 0xFF, OCCUPIED_COLOR & 0xFF, alpha);
+
+        return (red << 16) | (green << 8) | blue;
+    }
+
+    private static int blend(int background, int foreground, double alpha) {
+        return (int) Math.round(background + ((foreground - background) * alpha));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        graphics2D = (Graphics2D) g.create();
+
+        //Small grids are scaled up by a whole number of pixels per cell, and large grids are scaled down to fit
+        int cellWidth = Math.max(1, GRID_WIDTH / columns);
+        int cellHeight = Math.max(1, GRID_HEIGHT / rows);
+
+        int width = rasterWidth == columns ? columns * cellWidth : GRID_WIDTH;
+        int height = rasterHeight == rows ? rows * cellHeight : GRID_HEIGHT;
+
+        int xOffset = (GRID_WIDTH - width) / 2;
+        int yOffset = (GRID_HEIGHT - height) / 2;
+
+        graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        graphics2D.drawImage(raster, xOffset, yOffset, width, height, null);
+
+        //Outline the cells when they are large enough for the outlines to be seen
+        graphics2D.setColor(Color.BLACK);
+        if(cellWidth >= MINIMUM_OUTLINED_CELL_SIZE && cellHeight >= MINIMUM_OUTLINED_CELL_SIZE) {
+            for(int i = 0; i <= rows; i++) {
+                graphics2D.drawLine(xOffset, yOffset + (i * cellHeight), xOffset + width, yOffset + (i * cellHeight));
+            }
+
+            for(int j = 0; j <= columns; j++) {
+                graphics2D.drawLine(xOffset + (j * cellWidth), yOffset, xOffset + (j * cellWidth), yOffset + height);
             }
         }
 
@@ -95,75 +280,61 @@ public class Visualization extends JPanel {
         final int GRAPH_TOP_BOUNDARY = 500;
         final int GRAPH_BOTTOM_BOUNDARY = GRAPH_TOP_BOUNDARY + GRAPH_HEIGHT;
 
-        Map<Integer, Double> averageEfficiencies = visualizationContext.getAverageEfficiencies();
+        //The graph shows the finest resolution of the history
+        int points = visualizationContext.getHistory().latest(0, graphIntervals, graphAverages);
 
         graphics2D.drawLine(GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY, GRAPH_LEFT_BOUNDARY, GRAPH_BOTTOM_BOUNDARY);
         graphics2D.drawLine(GRAPH_LEFT_BOUNDARY, GRAPH_BOTTOM_BOUNDARY, GRAPH_RIGHT_BOUNDARY, GRAPH_BOTTOM_BOUNDARY);
 
         graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        Font font = new Font("Sans Serif", Font.BOLD, 16);
-        graphics2D.setFont(font);
+        graphics2D.setFont(FONT);
 
         graphics2D.drawString("Time", GRAPH_LEFT_BOUNDARY + 180, GRAPH_BOTTOM_BOUNDARY + 25);
 
-        AffineTransform transform = new AffineTransform();
-        transform.rotate(-Math.PI / 2);
-
-        Font vertical = font.deriveFont(transform);
-        graphics2D.setFont(vertical);
-
+        graphics2D.setFont(VERTICAL_FONT);
         graphics2D.drawString("Average Efficiency (%)", GRAPH_LEFT_BOUNDARY - 10, GRAPH_BOTTOM_BOUNDARY - 25);
-        graphics2D.setFont(font);
-
-        List<Integer> keyList = new ArrayList<>();
+        graphics2D.setFont(FONT);
 
-        synchronized (averageEfficiencies) {
-            keyList.addAll(averageEfficiencies.keySet());
+        for(int i = 0; i < points - 1; i++) {
+            int first = (int) Math.round(graphAverages[i] * 100);
+            int second = (int) Math.round(graphAverages[i + 1] * 100);
 
-            for(int i = 0; i < keyList.size() - 1; i++) {
-                int first = (int) Math.round(averageEfficiencies.get(keyList.get(i)) * 100);
-                int second = (int) Math.round(averageEfficiencies.get(keyList.get(i + 1)) * 100);
+            int firstY = (int) Math.round(GRAPH_BOTTOM_BOUNDARY - (2.5 * first));
+            int secondY = (int) Math.round(GRAPH_BOTTOM_BOUNDARY - + (2.5 * second));
 
-                int firstY = (int) Math.round(GRAPH_BOTTOM_BOUNDARY - (2.5 * first));
-                int secondY = (int) Math.round(GRAPH_BOTTOM_BOUNDARY - + (2.5 * second));
+            int firstX = GRAPH_LEFT_BOUNDARY + (i * (GRAPH_WIDTH / numSamples));
+            int secondX = GRAPH_LEFT_BOUNDARY + ((i + 1) * (GRAPH_WIDTH / numSamples));
 
-                int firstX = GRAPH_LEFT_BOUNDARY + (i * (GRAPH_WIDTH / numSamples));
-                int secondX = GRAPH_LEFT_BOUNDARY + ((i + 1) * (GRAPH_WIDTH / numSamples));
+            graphics2D.setColor(GRAPH_COLOR);
+            graphics2D.drawLine(firstX, firstY, secondX, secondY);
+        }
 
-                graphics2D.setColor(new Color(0, 127, 0));
-                graphics2D.drawLine(firstX, firstY, secondX, secondY);
-            }
+        double latestAverageEfficiency = points > 0 ? graphAverages[points - 1] : 0;
 
-            double latestAverageEfficiency = 0;
-            if(keyList.size() > 0) {
-                latestAverageEfficiency = averageEfficiencies.get(keyList.get(keyList.size() - 1));
-            }
+        graphics2D.setColor(Color.BLACK);
 
-            graphics2D.setColor(Color.BLACK);
-
-            graphics2D.drawString("Target nutrient: " + visualizationContext.getTargetNutrient().getBitPattern(), GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 150);
-            graphics2D.drawString("Most efficient enzyme: " + (visualizationContext.getMaxEfficientEnzyme() == null? "n/a" : visualizationContext.getMaxEfficientEnzyme().getBitPattern()), GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 125);
-            graphics2D.drawString("Enzyme efficiency: " + String.format("%.2f", (visualizationContext.getEnzymeEfficiency() * 100)) + "%", GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 100);
-            graphics2D.drawString("Current average efficiency: " + String.format("%.2f", (latestAverageEfficiency * 100)) + "%", GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 75);
-        }
+        graphics2D.drawString("Target nutrient: " + visualizationContext.getTargetNutrient().getBitPattern(), GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 150);
+        graphics2D.drawString("Most efficient enzyme: " + (visualizationContext.getMaxEfficientEnzyme() == null? "n/a" : visualizationContext.getMaxEfficientEnzyme().getBitPattern()), GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 125);
+        graphics2D.drawString("Enzyme efficiency: " + String.format("%.2f", (visualizationContext.getEnzymeEfficiency() * 100)) + "%", GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 100);
+        graphics2D.drawString("Current average efficiency: " + String.format("%.2f", (latestAverageEfficiency * 100)) + "%", GRAPH_LEFT_BOUNDARY, GRAPH_TOP_BOUNDARY - 75);
 
 
         graphics2D.dispose();
     }
 
-    //A helped function that converts a 16-bit nutrient value into a 24-bit color. This is basically a conversion of
-    //a 5-6-5 16-bit RGB color into a 24-bit RGB color.
-    private Color nutrientToColor(Nutrient nutrient) {
-        String bitPattern = nutrient.getBitPattern();
+    //A helper function that converts a 16-bit nutrient value into a 24-bit color. This is basically a conversion of
+    //a 5-6-5 16-bit RGB color into a 24-bit RGB color. Shorter nutrients are padded to 16 bits on the right, like their bit patterns.
+    private static int nutrientToColor(Nutrient nutrient) {
+        int value = nutrient.getValue() << (Nutrient.SIZE - nutrient.getSize());
 
-        int red = Integer.parseInt(bitPattern.substring(0, 5), 2);
-        int green = Integer.parseInt(bitPattern.substring(5, 11), 2);
-        int blue = Integer.parseInt(bitPattern.substring(11), 2);
+        int red = (value >>> 11) & 0x1F;
+        int green = (value >>> 5) & 0x3F;
+        int blue = value & 0x1F;
 
         int red24bit = (red << 3) | red;
         int green24bit = (green << 2) | green;
         int blue24bit = (blue << 3) | blue;
 
-        return new Color(red24bit, green24bit, blue24bit);
+        return (red24bit << 16) | (green24bit << 8) | blue24bit;
     }
 }
@@ -1,21 +1,19 @@
 package VivinPaliath;
 
-import java.util.Map;
-
 /**
  * This class holds information that the visualizer uses to render the GUI. An instance is shared between the transducer and the visualizer. The transducer
  * updates values in this class and the visualizer renders the updated values.
  */
 public class VisualizationContext {
     private CellStatus[][] cellStatus;
-    private Map<Integer, Double> averageEfficiencies;
+    private EfficiencyHistory history;
     private Nutrient targetNutrient;
     private Enzyme maxEfficientEnzyme;
     private double enzymeEfficiency;
 
-    public VisualizationContext(CellStatus[][] cellStatus, Map<Integer, Double> averageEfficiencies, Nutrient targetNutrient, Enzyme maxEfficientEnzyme, double enzymeEfficiency) {
+    public VisualizationContext(CellStatus[][] cellStatus, EfficiencyHistory history, Nutrient targetNutrient, Enzyme maxEfficientEnzyme, double enzymeEfficiency) {
         this.cellStatus = cellStatus;
-        this.averageEfficiencies = averageEfficiencies;
+        this.history = history;
         this.targetNutrient = targetNutrient;
         this.maxEfficientEnzyme = maxEfficientEnzyme;
         this.enzymeEfficiency = enzymeEfficiency;
@@ -25,8 +23,8 @@ public class VisualizationContext {
         return cellStatus;
     }
 
-    public Map<Integer, Double> getAverageEfficiencies() {
-        return averageEfficiencies;
+    public EfficiencyHistory getHistory() {
+        return history;
     }
 
     public Nutrient getTargetNutrient() {
@@ -45,8 +43,8 @@ public class VisualizationContext {
         this.cellStatus = cellStatus;
     }
 
-    public void setAverageEfficiencies(Map<Integer, Double> averageEfficiencies) {
-        this.averageEfficiencies = averageEfficiencies;
+    public void setHistory(EfficiencyHistory history) {
+        this.history = history;
     }
 
     public void setTargetNutrient(Nutrient targetNutrient) {
@@ -0,0 +1,92 @@
+package VivinPaliath;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the behaviors of a single agent: feeding, reproducing, and decoding an agent from its genome. The number of enzymes sets the
+ * length of the genome, which is 48 bits plus 16 bits per enzyme.
+ *
+ * A genotype only metabolizes a nutrient the first time it feeds on it, and looks the outcome up after that. Feeding and reproducing are
+ * therefore timed as single shots of AGENTS invocations each, one per fresh agent that is built before the iteration, with a genotype of its
+ * own that has not fed yet and with all of its free energy. Feeding measures the metabolism of all of the enzymes, and every agent has the
+ * energy to pay for its child. The times are per batch of AGENTS. MetabolismBenchmark measures the batch kernel on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BacteriumBenchmark {
+
+    static final int AGENTS = 4096;
+
+    @Param({"1", "4", "32", "128"})
+    private int enzymes;
+
+    private Bacterium bacterium;
+    private Bacterium[] fresh;
+    private int next;
+    private String bitPattern;
+    private Nutrient nutrient;
+    private RandomStream random;
+
+    @Setup
+    public void setUp() {
+        RandomStream setupRandom = new RandomStream(0, 0);
+
+        List<Enzyme> enzymeList = new ArrayList<>();
+        for(int i = 0; i < enzymes; i++) {
+            enzymeList.add(new Enzyme(setupRandom.nextInt(1 << Enzyme.MAXIMUM_SIZE), Enzyme.MAXIMUM_SIZE));
+        }
+
+        bacterium = new Bacterium(20, 20000, 50000, 255, enzymeList);
+        bitPattern = bacterium.getGenome().toBitPattern();
+        nutrient = new Nutrient("0011 1001 0011 1000");
+        random = new RandomStream(0, 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        fresh = new Bacterium[AGENTS];
+        for(int i = 0; i < AGENTS; i++) {
+            fresh[i] = new Bacterium(Genotype.decode(bacterium.getGenome()));
+        }
+
+        next = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = AGENTS)
+    @Measurement(iterations = 10, batchSize = AGENTS)
+    public MetabolysisResult feed() {
+        return fresh[next++].feed(nutrient);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = AGENTS)
+    @Measurement(iterations = 10, batchSize = AGENTS)
+    public Genome reproduce() {
+        return fresh[next++].reproduce(random);
+    }
+
+    @Benchmark
+    public Bacterium decode() {
+        return new Bacterium(bitPattern);
+    }
+
+    @Benchmark
+    public void decodeAndFeed(Blackhole blackhole) {
+        Bacterium decoded = new Bacterium(bacterium.getGenome());
+        blackhole.consume(decoded.feed(nutrient));
+    }
+}
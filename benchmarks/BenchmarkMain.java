@@ -0,0 +1,28 @@
+package VivinPaliath;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which reports the allocation rate next to the throughput of each benchmark. Any arguments are
+ * passed on to JMH, so a subset of the benchmarks can be selected with a regular expression, e.g. BenchmarkMain Bacterium
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class);
+
+        if(args.length == 0) {
+            options.include("VivinPaliath\\..*Benchmark");
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,37 @@
+package VivinPaliath;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the recording of feed outcomes by the transducer. The clock advances by one time unit every thousand samples, so intervals are
+ * completed and evicted at the rate of a busy simulation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EfficiencyStatisticsBenchmark {
+
+    private EfficiencyStatistics statistics;
+    private Nutrient target;
+    private Enzyme enzyme;
+    private long samples = 0;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        target = new Nutrient("0011 1001 0011 1000");
+        enzyme = new Enzyme("0011 1001 0011 1001");
+        statistics = new EfficiencyStatistics(target, 50, 10, new SimulationObservers());
+        samples = 0;
+    }
+
+    @Benchmark
+    public void record() {
+        double clock = (samples++) / 1000;
+        statistics.record(clock, target, enzyme, 0.0625, target);
+    }
+}
@@ -0,0 +1,50 @@
+package VivinPaliath;
+
+import GenCol.entity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the whole DEVS model, headless, for a number of simulated time units on grids of different sizes. The model is rebuilt before
+ * every invocation so that each invocation starts from the same state. The founding population grows with the area of the grid.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class EvolutionBenchmark {
+
+    @Param({"30", "100", "300"})
+    private int size;
+
+    @Param({"50"})
+    private double time;
+
+    private ParallelCoordinator coordinator;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        ExperimentParameters parameters = ExperimentParameters.builder()
+                .rows(size)
+                .columns(size)
+                .bacteria((50 * size * size) / 900)
+                .seed(0)
+                .build();
+
+        coordinator = new ParallelCoordinator(new Evolution(false, parameters), 1);
+        coordinator.initialize();
+        coordinator.inject(Evolution.Port.START.portName(), new entity("start"));
+    }
+
+    @Benchmark
+    public long run() {
+        while(coordinator.getTN() <= time) {
+            coordinator.step();
+        }
+
+        return coordinator.getTransitions();
+    }
+}
@@ -0,0 +1,51 @@
+package VivinPaliath;
+
+import GenCol.entity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the messages that cells exchange with their arbiter and the transducer over the lifecycle of their agents. Every square of a
+ * 30x30 grid is given a founder, so there is never room for a child, and the agents only rest, feed and query until they die of old age.
+ * Each iteration starts from a new model and runs for fewer steps than the agents live, so that no agent is born or dies while it is
+ * measured. Run it through BenchmarkMain to see the allocation rate per step, which is roughly 25 KB. Most of it is contents: a coupling
+ * only reuses its content while the same value keeps coming through it, and the coupling into an arbiter carries the messages of every cell
+ * of its tile in turn. The rest is the message that ParallelCoordinator.deliver creates for every model that receives input, and the
+ * reservation messages of queries that reach into a neighboring tile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = MessagePathBenchmark.STEPS)
+@Measurement(iterations = 10, batchSize = MessagePathBenchmark.STEPS)
+@Fork(1)
+public class MessagePathBenchmark {
+
+    static final int STEPS = 300;
+    private static final int SIZE = 30;
+
+    private ParallelCoordinator coordinator;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ExperimentParameters parameters = ExperimentParameters.builder()
+                .rows(SIZE)
+                .columns(SIZE)
+                .lifespan(255)
+                .seed(0)
+                .build();
+
+        coordinator = new ParallelCoordinator(Evolution.filled(parameters), 1);
+        coordinator.initialize();
+        coordinator.inject(Evolution.Port.START.portName(), new entity("start"));
+
+        //Let the first round of messages settle, so that every cell has created its messages and every arbiter its responses
+        coordinator.simulate(8);
+    }
+
+    @Benchmark
+    public boolean step() {
+        return coordinator.step();
+    }
+}
@@ -0,0 +1,69 @@
+package VivinPaliath;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the batch metabolism kernel on the packed pairs of a step in which every agent feeds. Each agent has the given number of
+ * enzymes. The scalar kernel is compared with the shared one, which is the vectorized kernel when the incubator module is added, as it is for
+ * the forked JVM here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class MetabolismBenchmark {
+
+    private static final int AGENTS = 1024;
+
+    @Param({"1", "4", "32", "128"})
+    private int enzymes;
+
+    private int[] nutrients;
+    private int[] enzymeBits;
+    private int[] offsets;
+    private int[] ones;
+    private int[] best;
+
+    private BatchMetabolism scalar;
+    private BatchMetabolism shared;
+
+    @Setup
+    public void setUp() {
+        RandomStream random = new RandomStream(0, 0);
+        int pairs = AGENTS * enzymes;
+
+        nutrients = new int[pairs];
+        enzymeBits = new int[pairs];
+        offsets = new int[AGENTS + 1];
+        ones = new int[pairs];
+        best = new int[AGENTS];
+
+        for(int pair = 0; pair < pairs; pair++) {
+            nutrients[pair] = 0x3938;
+            enzymeBits[pair] = random.nextInt(1 << Enzyme.MAXIMUM_SIZE);
+        }
+
+        for(int agent = 0; agent <= AGENTS; agent++) {
+            offsets[agent] = agent * enzymes;
+        }
+
+        scalar = new BatchMetabolism();
+        shared = BatchMetabolism.get();
+    }
+
+    @Benchmark
+    public int[] scalar() {
+        scalar.metabolize(nutrients, enzymeBits, offsets, AGENTS, ones, best);
+        return best;
+    }
+
+    @Benchmark
+    public int[] shared() {
+        shared.metabolize(nutrients, enzymeBits, offsets, AGENTS, ones, best);
+        return best;
+    }
+}
@@ -0,0 +1,47 @@
+package VivinPaliath;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks how an arbiter picks a vacant neighbor for a cell that wants to reproduce, at different densities of occupied cells. A single
+ * arbiter owns the whole grid, so every neighbor is checked locally.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighborSelectionBenchmark {
+
+    private static final int SIZE = 30;
+
+    @Param({"0.0", "0.25", "0.5", "0.75", "0.875", "1.0"})
+    private double density;
+
+    private Arbiter arbiter;
+    private int cell = 0;
+
+    @Setup
+    public void setUp() {
+        RandomStream random = new RandomStream(0, 0);
+        Nutrient nutrient = new Nutrient("0011 1001 0011 1000");
+
+        CellStatus[][] grid = new CellStatus[SIZE][SIZE];
+        for(int i = 0; i < SIZE; i++) {
+            for(int j = 0; j < SIZE; j++) {
+                grid[i][j] = new CellStatus(random.nextDouble() < density, nutrient);
+            }
+        }
+
+        arbiter = new Arbiter(0, new Tiling(SIZE, SIZE, SIZE, SIZE), grid, new SimulationObservers(), new RandomStream(0, 1));
+    }
+
+    @Benchmark
+    public int getEmptyNeighborDelta() {
+        cell = (cell + 1) % (SIZE * SIZE);
+        return arbiter.getEmptyNeighborDelta(cell / SIZE, cell % SIZE, 0);
+    }
+}
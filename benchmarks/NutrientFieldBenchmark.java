@@ -0,0 +1,47 @@
+package VivinPaliath;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a single unit of time of diffusion of the nutrient field on square grids of the given size, on the calling thread and with the
+ * bands of rows split between the threads of the common pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NutrientFieldBenchmark {
+
+    @Param({"300", "1000", "2000"})
+    private int size;
+
+    private NutrientField field;
+    private long time;
+
+    @Setup
+    public void setUp() {
+        field = new NutrientField(size, size, 0.3, 0.1, 0.02);
+        for(int i = 0; i < size; i += 3) {
+            field.consume(i, (i * 7) % size);
+        }
+
+        time = 0;
+    }
+
+    @Benchmark
+    public NutrientField serial() {
+        field.advanceTo(++time, null);
+        return field;
+    }
+
+    @Benchmark
+    public NutrientField parallel() {
+        field.advanceTo(++time, ForkJoinPool.commonPool());
+        return field;
+    }
+}
@@ -0,0 +1,47 @@
+package VivinPaliath;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The batch metabolism kernel written with the Vector API, which needs --add-modules jdk.incubator.vector both to compile and to run. It is
+ * kept in a source directory of its own, so that the rest of the model compiles without the module, and is only ever loaded by
+ * BatchMetabolism.
+ *
+ * The incubator module of Java 17 has no lanewise popcount, so the bits are counted with the usual shifts and masks, which work on every lane
+ * at once. Pairs that do not fill a whole vector are counted by the scalar kernel.
+ */
+public class VectorizedMetabolism extends BatchMetabolism {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    public VectorizedMetabolism() {
+    }
+
+    @Override
+    protected void countOnes(int[] nutrients, int[] enzymes, int[] ones, int count) {
+        int bound = SPECIES.loopBound(count);
+
+        for(int pair = 0; pair < bound; pair += SPECIES.length()) {
+            IntVector bits = IntVector.fromArray(SPECIES, nutrients, pair)
+                    .lanewise(VectorOperators.XOR, IntVector.fromArray(SPECIES, enzymes, pair));
+
+            bits = bits.sub(bits.lanewise(VectorOperators.LSHR, 1).and(0x55555555));
+            bits = bits.and(0x33333333).add(bits.lanewise(VectorOperators.LSHR, 2).and(0x33333333));
+            bits = bits.add(bits.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F);
+            bits = bits.mul(0x01010101).lanewise(VectorOperators.LSHR, 24);
+
+            bits.intoArray(ones, pair);
+        }
+
+        for(int pair = bound; pair < count; pair++) {
+            ones[pair] = Bacterium.metabolize(nutrients[pair], enzymes[pair]);
+        }
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+}